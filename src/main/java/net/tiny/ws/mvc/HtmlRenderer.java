@@ -19,6 +19,7 @@ import com.sun.net.httpserver.HttpExchange;
 import net.tiny.ws.Constants.MIME_TYPE;
 import net.tiny.ws.cache.CacheFunction;
 import net.tiny.ws.rs.ApplicationException;
+import net.tiny.ws.rs.Compression;
 import net.tiny.ws.HttpHandlerHelper;
 import net.tiny.ws.ResponseHeaderHelper;
 
@@ -30,12 +31,20 @@ public class HtmlRenderer implements ViewRenderer {
     private TemplateParser parser;
     private CacheFunction cache = null;
     private int cacheSize = -1;
+    private int compressThreshold = Compression.DEFAULT_THRESHOLD;
 
     @Override
     public void setCache(CacheFunction cache) {
         this.cache = cache;
     }
 
+    /**
+     * @param bytes The minimum bytes of html compressed by 'Accept-Encoding', negative is disabled
+     */
+    public void setCompressThreshold(int bytes) {
+        this.compressThreshold = bytes;
+    }
+
     @Override
     public void render(HttpExchange he, ModelAndView modelView, Annotation[] annotations, MediaType mediaType, Headers httpHeaders) {
         String resource = String.format("%s/%s", prefix, modelView.getViewPath());
@@ -64,8 +73,7 @@ public class HtmlRenderer implements ViewRenderer {
             final byte[] rawResponse = render(resource, args);
             final ResponseHeaderHelper header = HttpHandlerHelper.getHeaderHelper(he);
             header.setContentType(MIME_TYPE.HTML);
-            he.sendResponseHeaders(HttpURLConnection.HTTP_OK, rawResponse.length);
-            he.getResponseBody().write(rawResponse);
+            Compression.send(he, HttpURLConnection.HTTP_OK, rawResponse, compressThreshold);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
             throw new ApplicationException(e.getMessage(), e, HttpURLConnection.HTTP_NOT_FOUND);
@@ -0,0 +1,387 @@
+package net.tiny.ws.rs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+
+import javax.net.ssl.SSLSession;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import com.sun.net.httpserver.HttpsExchange;
+
+/**
+ * 可挂起的HTTP交换 (HTTP exchange can be suspended until an asynchronous result completes)
+ * <p>
+ * The web service closes the exchange after its handler returned. Once {@link #suspend()} was called,
+ * the closing of exchange and of response body is deferred, and the exchange is closed by {@link #resume()}
+ * after the response was written by another thread.
+ * An HTTPS exchange is wrapped by {@link Https}, so it is still an {@link HttpsExchange}.
+ * The response body is looked up from the wrapped exchange on each call, so the streams
+ * replaced by {@link #setStreams(InputStream, OutputStream)} are used too.
+ */
+final class AsyncExchange extends HttpExchange implements Suspendable {
+
+    private final HttpExchange exchange;
+    private final Suspension suspension;
+
+    AsyncExchange(final HttpExchange exchange) {
+        this.exchange = exchange;
+        this.suspension = new Suspension(exchange);
+    }
+
+    /**
+     * @return The exchange can be suspended, an HTTPS exchange is still an {@link HttpsExchange}
+     */
+    static HttpExchange of(final HttpExchange exchange) {
+        if (exchange instanceof Suspendable) {
+            return exchange;
+        }
+        if (exchange instanceof HttpsExchange) {
+            return new Https((HttpsExchange)exchange);
+        }
+        return new AsyncExchange(exchange);
+    }
+
+    @Override
+    public HttpExchange getExchange() {
+        return exchange;
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return suspension.isSuspended();
+    }
+
+    @Override
+    public void suspend() {
+        suspension.suspend();
+    }
+
+    @Override
+    public void resume() {
+        suspension.resume();
+    }
+
+    @Override
+    public boolean onResume(final Runnable task) {
+        return suspension.onResume(task);
+    }
+
+    @Override
+    public void close() {
+        suspension.close();
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return exchange.getRequestHeaders();
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return exchange.getResponseHeaders();
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return exchange.getRequestURI();
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return exchange.getRequestMethod();
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return exchange.getHttpContext();
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return exchange.getRequestBody();
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return suspension.body();
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        exchange.sendResponseHeaders(rCode, responseLength);
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return exchange.getRemoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return exchange.getResponseCode();
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return exchange.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return exchange.getProtocol();
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return exchange.getAttribute(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        exchange.setAttribute(name, value);
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        exchange.setStreams(i, o);
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return exchange.getPrincipal();
+    }
+
+    /**
+     * 挂起状态 (The state of suspension shared by the plain and the HTTPS exchanges)
+     */
+    static final class Suspension {
+        private final HttpExchange exchange;
+        private volatile boolean suspended;
+        /** The tasks run after resumed */
+        private Runnable[] resumed = new Runnable[0];
+        /** The body of the last response stream of exchange */
+        private volatile Body body;
+
+        Suspension(final HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        boolean isSuspended() {
+            return suspended;
+        }
+
+        void suspend() {
+            suspended = true;
+        }
+
+        void resume() {
+            final Runnable[] tasks;
+            synchronized (this) {
+                suspended = false;
+                tasks = resumed;
+                resumed = new Runnable[0];
+            }
+            try {
+                exchange.close();
+            } finally {
+                for (Runnable task : tasks) {
+                    task.run();
+                }
+            }
+        }
+
+        synchronized boolean onResume(final Runnable task) {
+            if (!suspended) {
+                return false;
+            }
+            final Runnable[] tasks = Arrays.copyOf(resumed, resumed.length + 1);
+            tasks[resumed.length] = task;
+            resumed = tasks;
+            return true;
+        }
+
+        void close() {
+            if (!suspended) {
+                exchange.close();
+            }
+        }
+
+        /**
+         * @return The current response stream of exchange, closed only when not suspended
+         */
+        OutputStream body() {
+            final OutputStream current = exchange.getResponseBody();
+            Body body = this.body;
+            if (null == body || body.out != current) {
+                body = new Body(current);
+                this.body = body;
+            }
+            return body;
+        }
+
+        private final class Body extends OutputStream {
+            private final OutputStream out;
+
+            Body(final OutputStream out) {
+                this.out = out;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!suspended) {
+                    out.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 可挂起的HTTPS交换 (HTTPS exchange can be suspended, the SSL session is still available)
+     */
+    static final class Https extends HttpsExchange implements Suspendable {
+        private final HttpsExchange exchange;
+        private final Suspension suspension;
+
+        Https(final HttpsExchange exchange) {
+            this.exchange = exchange;
+            this.suspension = new Suspension(exchange);
+        }
+
+        @Override
+        public HttpExchange getExchange() {
+            return exchange;
+        }
+
+        @Override
+        public boolean isSuspended() {
+            return suspension.isSuspended();
+        }
+
+        @Override
+        public void suspend() {
+            suspension.suspend();
+        }
+
+        @Override
+        public void resume() {
+            suspension.resume();
+        }
+
+        @Override
+        public boolean onResume(final Runnable task) {
+            return suspension.onResume(task);
+        }
+
+        @Override
+        public void close() {
+            suspension.close();
+        }
+
+        @Override
+        public SSLSession getSSLSession() {
+            return exchange.getSSLSession();
+        }
+
+        @Override
+        public Headers getRequestHeaders() {
+            return exchange.getRequestHeaders();
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return exchange.getResponseHeaders();
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return exchange.getRequestURI();
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return exchange.getRequestMethod();
+        }
+
+        @Override
+        public HttpContext getHttpContext() {
+            return exchange.getHttpContext();
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            return exchange.getRequestBody();
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return suspension.body();
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            exchange.sendResponseHeaders(rCode, responseLength);
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return exchange.getRemoteAddress();
+        }
+
+        @Override
+        public int getResponseCode() {
+            return exchange.getResponseCode();
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return exchange.getLocalAddress();
+        }
+
+        @Override
+        public String getProtocol() {
+            return exchange.getProtocol();
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return exchange.getAttribute(name);
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            exchange.setAttribute(name, value);
+        }
+
+        @Override
+        public void setStreams(InputStream i, OutputStream o) {
+            exchange.setStreams(i, o);
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return exchange.getPrincipal();
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package net.tiny.ws.rs;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 异步批量处理的REST事件监听器 (Asynchronous listener drains the events in batches)
+ * <p>
+ * The request threads only claim a preallocated slot of a ring buffer by one CAS and fill its fields,
+ * no lock, no message formatting on the request thread. One daemon thread drains the published events
+ * in batches and replays them to the delegate listener, by default {@link RestServiceLocator.RestServiceMonitor}.
+ * A delegate implements {@link Sink} receives each batch of {@link Event} as is, the others are called
+ * by the methods of {@link RestServiceHandler.Listener} one event by one.
+ * The idle consumer parks until the next event was published.
+ * When the ring is full the event is dropped and counted, the request never waits.
+ * The 'called' and 'param' events can be sampled, the errors are always recorded.
+ * <p>
+ * Sample of configuration:
+ * <pre>
+ * rest:
+ *   monitor:
+ *     class: net.tiny.ws.rs.AsyncListener
+ *     capacity: 4096
+ *     sampling: 10
+ * </pre>
+ */
+public class AsyncListener implements RestServiceHandler.Listener, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncListener.class.getName());
+
+    public enum Type {
+        called,
+        param,
+        error,
+        bound
+    }
+
+    /**
+     * REST事件 (One event in the ring buffer, the slot is reused after drained)
+     */
+    public static final class Event {
+        private volatile long sequence;
+        private Type type;
+        private long timestamp;
+        private String target;
+        private int id;
+        private String method;
+        private Object[] args;
+        private String annotation;
+        private String name;
+        private String value;
+        private Throwable error;
+
+        Event(long sequence) {
+            this.sequence = sequence;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /** The time of event by {@link System#nanoTime()} */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public Object[] getArgs() {
+            return args;
+        }
+
+        public String getAnnotation() {
+            return annotation;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        private void clear() {
+            target = null;
+            method = null;
+            args = null;
+            annotation = null;
+            name = null;
+            value = null;
+            error = null;
+        }
+    }
+
+    /**
+     * 批量事件接收器 (Receives the drained events in batches on the consumer thread)
+     * <p>
+     * The events are the slots of ring buffer, they are valid only until {@link #accept(Event[], int)} returned.
+     */
+    public interface Sink {
+        /**
+         * @param batch The drained events in the order of publish
+         * @param count The count of events in the batch
+         */
+        void accept(Event[] batch, int count);
+    }
+
+    private RestServiceHandler.Listener delegate = new RestServiceLocator.RestServiceMonitor();
+    private int capacity = 4096;
+    private int batchSize = 256;
+    /** Record one of every sampling events, 1 is all */
+    private int sampling = 1;
+
+    private Event[] ring;
+    private int mask;
+    /** The drained events passed to the sink */
+    private Event[] batch;
+    /** The next sequence to claim by producers */
+    private final AtomicLong head = new AtomicLong();
+    /** The next sequence to drain by the consumer */
+    private volatile long tail;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder drained = new LongAdder();
+    private volatile Thread consumer;
+    private volatile boolean running;
+    private volatile boolean closed;
+    /** The consumer is parking or about to park */
+    private volatile boolean parked;
+
+    public void setDelegate(RestServiceHandler.Listener delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param capacity The size of ring buffer, rounded up to a power of 2
+     */
+    public void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive - " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * @param sampling Record one of every sampling 'called' and 'param' events, 1 is all
+     */
+    public void setSampling(int sampling) {
+        this.sampling = Math.max(1, sampling);
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getDrained() {
+        return drained.sum();
+    }
+
+    Thread getConsumer() {
+        return consumer;
+    }
+
+    @Override
+    public void called(String target, int id, String method, Object[] args) {
+        if (sampled()) {
+            final Event event = claim();
+            if (event != null) {
+                event.type = Type.called;
+                event.target = target;
+                event.id = id;
+                event.method = method;
+                event.args = args;
+                publish(event);
+            }
+        }
+    }
+
+    @Override
+    public void error(Throwable err, String target, String method, Object[] args) {
+        final Event event = claim();
+        if (event != null) {
+            event.type = Type.error;
+            event.error = err;
+            event.target = target;
+            event.method = method;
+            event.args = args;
+            publish(event);
+        }
+    }
+
+    @Override
+    public void param(String annotation, String type, String value) {
+        if (sampled()) {
+            final Event event = claim();
+            if (event != null) {
+                event.type = Type.param;
+                event.annotation = annotation;
+                event.name = type;
+                event.value = value;
+                publish(event);
+            }
+        }
+    }
+
+    @Override
+    public void bound(String wrapper, String path) {
+        final Event event = claim();
+        if (event != null) {
+            event.type = Type.bound;
+            event.target = wrapper;
+            event.value = path;
+            publish(event);
+        }
+    }
+
+    private boolean sampled() {
+        return sampling == 1 || ThreadLocalRandom.current().nextInt(sampling) == 0;
+    }
+
+    /**
+     * @return The claimed slot, or null if the ring is full
+     */
+    private Event claim() {
+        if (!running) {
+            // Not locked by start() on each event after closed
+            if (!closed) {
+                start();
+            }
+            if (closed) {
+                dropped.increment();
+                return null;
+            }
+        }
+        final Event[] events = ring;
+        long seq;
+        do {
+            seq = head.get();
+            if (seq - tail >= events.length) {
+                dropped.increment();
+                return null;
+            }
+        } while (!head.compareAndSet(seq, seq + 1));
+        final Event event = events[(int)seq & mask];
+        event.timestamp = System.nanoTime();
+        return event;
+    }
+
+    private void publish(final Event event) {
+        // The sequence of a slot advances by the length of ring on each lap
+        event.sequence = event.sequence + ring.length;
+        if (parked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * 启动消费线程，最初的事件时自动启动
+     */
+    public synchronized void start() {
+        if (running || closed) {
+            return;
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        final Event[] events = new Event[size];
+        for (int i = 0; i < size; i++) {
+            // The slot i is published when its sequence is i
+            events[i] = new Event(i - size);
+        }
+        this.ring = events;
+        this.mask = size - 1;
+        this.batch = new Event[batchSize];
+        this.head.set(0L);
+        this.tail = 0L;
+        final Thread thread = new Thread(this::drain, "rest-listener");
+        thread.setDaemon(true);
+        this.consumer = thread;
+        this.running = true;
+        thread.start();
+    }
+
+    private void drain() {
+        while (running) {
+            if (drainBatch() == 0) {
+                idle();
+            }
+        }
+        // Drain the rest after stopped
+        while (drainBatch() > 0) {
+        }
+    }
+
+    private void idle() {
+        parked = true;
+        // Check again after the flag was set, a producer publishing meanwhile sees it and unparks
+        if (running && ring[(int)tail & mask].sequence != tail) {
+            LockSupport.park(this);
+        }
+        parked = false;
+    }
+
+    /**
+     * @return The count of drained events
+     */
+    int drainBatch() {
+        final Event[] events = ring;
+        final Event[] drains = batch;
+        long next = tail;
+        int count = 0;
+        while (count < drains.length) {
+            final Event event = events[(int)next & mask];
+            if (event.sequence != next) {
+                break;
+            }
+            drains[count++] = event;
+            next++;
+        }
+        if (count > 0) {
+            deliver(drains, count);
+            for (int i = 0; i < count; i++) {
+                drains[i].clear();
+                drains[i] = null;
+            }
+            // The slots are released after the sink returned
+            tail = next;
+            drained.add(count);
+        }
+        return count;
+    }
+
+    private void deliver(final Event[] events, final int count) {
+        final RestServiceHandler.Listener listener = delegate;
+        if (listener instanceof Sink) {
+            try {
+                ((Sink)listener).accept(events, count);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, String.format("[REST] Listener '%s' error - %s",
+                        listener.getClass().getSimpleName(), e.getMessage()), e);
+            }
+        } else if (listener != null) {
+            for (int i = 0; i < count; i++) {
+                dispatch(listener, events[i]);
+            }
+        }
+    }
+
+    private void dispatch(final RestServiceHandler.Listener listener, final Event event) {
+        try {
+            switch (event.type) {
+            case called:
+                listener.called(event.target, event.id, event.method, event.args);
+                break;
+            case param:
+                listener.param(event.annotation, event.name, event.value);
+                break;
+            case error:
+                listener.error(event.error, event.target, event.method, event.args);
+                break;
+            case bound:
+                listener.bound(event.target, event.value);
+                break;
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, String.format("[REST] Listener '%s' error - %s",
+                    listener.getClass().getSimpleName(), e.getMessage()), e);
+        }
+    }
+
+    /**
+     * 停止消费线程，剩下的事件处理完后返回
+     */
+    @Override
+    public void close() {
+        final Thread thread;
+        synchronized (this) {
+            closed = true;
+            if (!running) {
+                return;
+            }
+            running = false;
+            thread = consumer;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s - capacity:%d sampling:%d drained:%d dropped:%d",
+                getClass().getSimpleName(), capacity, sampling, getDrained(), getDropped());
+    }
+}
@@ -0,0 +1,29 @@
+package net.tiny.ws.rs;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation to limit the concurrent calls of a REST method
+ * <p>
+ * Over the limit, at most {@link #queue()} requests wait up to {@link #maxWait()} milliseconds,
+ * the others are rejected at once with 503 Service Unavailable and a 'Retry-After' header.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Bulkhead {
+
+    /** The maximum count of concurrent calls */
+    public int value();
+
+    /** The maximum count of waiting requests */
+    public int queue() default 0;
+
+    /** The maximum time to wait in milliseconds */
+    public long maxWait() default 0L;
+
+    /** The value of 'Retry-After' header in seconds */
+    public int retryAfter() default 1;
+}
@@ -0,0 +1,31 @@
+package net.tiny.ws.rs;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotation to cache the serialized responses of an idempotent GET method
+ * <p>
+ * The responses are keyed by the path and the sorted query parameters of request,
+ * and the negotiated media type. The method must be a pure function of them,
+ * a method with @HeaderParam, @CookieParam or @Context parameters can not be cached.
+ * Only the 200 OK results without cookies are cached.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cached {
+
+    /** The time to live of a cached response */
+    public long value();
+
+    public TimeUnit unit() default TimeUnit.SECONDS;
+
+    /** The time an expired response is still sent while one request revalidates it, 0 is disabled */
+    public long stale() default 0L;
+
+    /** The maximum bytes of the cached responses of this method */
+    public long maxBytes() default 8L * 1024L * 1024L;
+}
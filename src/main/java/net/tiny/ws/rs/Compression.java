@@ -0,0 +1,349 @@
+package net.tiny.ws.rs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * 响应压缩 (Compression of responses by 'Accept-Encoding')
+ * <p>
+ * Only the bodies of compressible media types over the threshold are compressed.
+ * The compressed body is streamed to the response with chunked transfer,
+ * the {@link Deflater} instances are pooled and reset after each response.
+ */
+public final class Compression {
+
+    public static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    public static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    public static final String HEADER_VARY = "Vary";
+    /** The default minimum bytes of a body to compress */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    private static final int POOL_SIZE = 64;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final ArrayBlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final ArrayBlockingQueue<Deflater> RAW_DEFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    public enum Encoding {
+        gzip,
+        deflate
+    }
+
+    private Compression() {}
+
+    /**
+     * @param headers The request headers
+     * @return The best encoding accepted by the client, gzip is preferred. null if not accepted
+     */
+    public static Encoding negotiate(final Headers headers) {
+        if (null == headers) {
+            return null;
+        }
+        final String accept = headers.getFirst(HEADER_ACCEPT_ENCODING);
+        return null != accept ? negotiate(accept) : null;
+    }
+
+    static Encoding negotiate(final String accept) {
+        int gzip = -1;
+        int deflate = -1;
+        int any = -1;
+        int start = 0;
+        final int length = accept.length();
+        while (start < length) {
+            int end = accept.indexOf(',', start);
+            if (end < 0) {
+                end = length;
+            }
+            int semicolon = accept.indexOf(';', start);
+            if (semicolon < 0 || semicolon > end) {
+                semicolon = end;
+            }
+            final String coding = accept.substring(start, semicolon).trim().toLowerCase(Locale.ROOT);
+            final int quality = quality(accept.substring(semicolon, end));
+            if ("gzip".equals(coding) || "x-gzip".equals(coding)) {
+                gzip = quality;
+            } else if ("deflate".equals(coding)) {
+                deflate = quality;
+            } else if ("*".equals(coding)) {
+                any = quality;
+            }
+            start = end + 1;
+        }
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return Encoding.gzip;
+        }
+        return deflate > 0 ? Encoding.deflate : null;
+    }
+
+    /**
+     * @return The quality in thousandths, 1000 if absent
+     */
+    private static int quality(final String params) {
+        final int index = params.indexOf("q=");
+        if (index < 0) {
+            return 1000;
+        }
+        int end = params.indexOf(';', index);
+        if (end < 0) {
+            end = params.length();
+        }
+        try {
+            final double q = Double.parseDouble(params.substring(index + 2, end).trim());
+            return q >= 0d && q <= 1d ? (int)Math.round(q * 1000d) : 1000;
+        } catch (NumberFormatException e) {
+            return 1000;
+        }
+    }
+
+    /**
+     * @param contentType The value of 'Content-Type'
+     * @return true if the text of media type can be compressed
+     */
+    public static boolean isCompressible(final String contentType) {
+        if (null == contentType) {
+            return false;
+        }
+        final String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/")
+                || type.contains("json")
+                || type.contains("xml")
+                || type.contains("javascript")
+                || type.contains("ecmascript");
+    }
+
+    /**
+     * A compressible response has 'Vary: Accept-Encoding' even if it is not compressed,
+     * so a shared cache does not send one encoding of it to the clients of another.
+     *
+     * @param he The HTTP exchange, its 'Content-Type' was set
+     * @param threshold The minimum bytes of a body to compress, negative is disabled
+     * @return The encoding to compress the response, or null
+     */
+    public static Encoding select(final HttpExchange he, final int threshold) {
+        if (threshold < 0 || !isCompressible(he.getResponseHeaders().getFirst("Content-Type"))) {
+            return null;
+        }
+        vary(he.getResponseHeaders());
+        return negotiate(he.getRequestHeaders());
+    }
+
+    /**
+     * Add 'Vary: Accept-Encoding' once
+     */
+    static void vary(final Headers headers) {
+        final List<String> values = headers.get(HEADER_VARY);
+        if (null != values) {
+            for (String value : values) {
+                if (value.toLowerCase(Locale.ROOT).contains("accept-encoding")) {
+                    return;
+                }
+            }
+        }
+        headers.add(HEADER_VARY, HEADER_ACCEPT_ENCODING);
+    }
+
+    /**
+     * Send the headers with chunked transfer and open the compressed response body
+     *
+     * @param he The HTTP exchange
+     * @param status The status of response
+     * @param encoding The encoding of response
+     * @return The stream writes the compressed body, close it to finish the body
+     */
+    public static OutputStream open(final HttpExchange he, final int status, final Encoding encoding) throws IOException {
+        final Headers headers = he.getResponseHeaders();
+        headers.set(HEADER_CONTENT_ENCODING, encoding.name());
+        vary(headers);
+        he.sendResponseHeaders(status, 0);
+        return new CompressedOutputStream(he.getResponseBody(), encoding);
+    }
+
+    /**
+     * Send a body, compressed if over the threshold and accepted by the client
+     *
+     * @param he The HTTP exchange, its 'Content-Type' was set
+     * @param status The status of response
+     * @param body The body of response
+     * @param threshold The minimum bytes of a body to compress, negative is disabled
+     */
+    public static void send(final HttpExchange he, final int status, final byte[] body, final int threshold) throws IOException {
+        final Encoding encoding = select(he, threshold);
+        send(he, status, body, body.length >= threshold ? encoding : null);
+    }
+
+    /**
+     * Send a body by the selected encoding, not compressed if null
+     */
+    static void send(final HttpExchange he, final int status, final byte[] body, final Encoding encoding) throws IOException {
+        if (null == encoding) {
+            he.sendResponseHeaders(status, body.length);
+            he.getResponseBody().write(body);
+            return;
+        }
+        try (OutputStream out = open(he, status, encoding)) {
+            out.write(body);
+        }
+    }
+
+    private static Deflater deflater(final Encoding encoding) {
+        final boolean raw = Encoding.gzip == encoding;
+        final Deflater deflater = (raw ? RAW_DEFLATERS : DEFLATERS).poll();
+        return null != deflater ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+    }
+
+    private static void release(final Encoding encoding, final Deflater deflater) {
+        deflater.reset();
+        if (!(Encoding.gzip == encoding ? RAW_DEFLATERS : DEFLATERS).offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 压缩输出流 (gzip or zlib stream by a pooled deflater, the response body is closed with the exchange)
+     * <p>
+     * The single bytes and the small writes are collected in an input buffer,
+     * and deflated together when it is full, flushed or closed.
+     */
+    static final class CompressedOutputStream extends OutputStream {
+        private static final byte[] GZIP_HEADER = {0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte)0xff};
+        /** The size of input buffer, the larger writes are deflated at once */
+        static final int INPUT_SIZE = 512;
+
+        private final OutputStream out;
+        private final Encoding encoding;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final byte[] input = new byte[INPUT_SIZE];
+        private int pending = 0;
+        private final CRC32 crc;
+        private Deflater deflater;
+        private long total = 0L;
+
+        CompressedOutputStream(final OutputStream out, final Encoding encoding) throws IOException {
+            this.out = out;
+            this.encoding = encoding;
+            this.deflater = deflater(encoding);
+            if (Encoding.gzip == encoding) {
+                this.crc = new CRC32();
+                out.write(GZIP_HEADER);
+            } else {
+                this.crc = null;
+            }
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (null == deflater) {
+                throw new IOException("Stream closed");
+            }
+            if (pending == input.length) {
+                drain();
+            }
+            input[pending++] = (byte)b;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (null == deflater) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return;
+            }
+            if (len < input.length) {
+                // Collect the small writes
+                if (len > input.length - pending) {
+                    drain();
+                }
+                System.arraycopy(b, off, input, pending, len);
+                pending += len;
+                return;
+            }
+            drain();
+            compress(b, off, len);
+        }
+
+        /**
+         * Deflate the collected bytes of input buffer
+         */
+        private void drain() throws IOException {
+            if (pending > 0) {
+                final int len = pending;
+                pending = 0;
+                compress(input, 0, len);
+            }
+        }
+
+        private void compress(final byte[] b, final int off, final int len) throws IOException {
+            if (null != crc) {
+                crc.update(b, off, len);
+            }
+            total += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+        }
+
+        private void deflate() throws IOException {
+            final int len = deflater.deflate(buffer, 0, buffer.length);
+            if (len > 0) {
+                out.write(buffer, 0, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (null != deflater) {
+                drain();
+                int len;
+                while ((len = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH)) > 0) {
+                    out.write(buffer, 0, len);
+                }
+            }
+            out.flush();
+        }
+
+        /**
+         * Finish the compressed body and return the deflater to the pool
+         */
+        @Override
+        public void close() throws IOException {
+            if (null == deflater) {
+                return;
+            }
+            try {
+                drain();
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate();
+                }
+                if (null != crc) {
+                    final long value = crc.getValue();
+                    final byte[] trailer = new byte[8];
+                    for (int i = 0; i < 4; i++) {
+                        trailer[i] = (byte)(value >>> (8 * i));
+                        trailer[i + 4] = (byte)(total >>> (8 * i));
+                    }
+                    out.write(trailer);
+                }
+                out.flush();
+            } finally {
+                release(encoding, deflater);
+                deflater = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package net.tiny.ws.rs;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 路由的并发限制 (Bulkhead of one route, a lock-free semaphore with a short bounded queue)
+ * <p>
+ * The permits are taken by CAS on one counter. When no permit is left, at most maxQueued
+ * requests park up to maxWait and are woken by {@link #release()}, the others are rejected at once.
+ */
+final class ConcurrencyLimit {
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+    private final int retryAfter;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param maxConcurrent The maximum count of concurrent calls
+     * @param maxQueued The maximum count of waiting requests
+     * @param maxWait The maximum time to wait in milliseconds
+     * @param retryAfter The value of 'Retry-After' header in seconds
+     */
+    ConcurrencyLimit(final int maxConcurrent, final int maxQueued, final long maxWait, final int retryAfter) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("The maximum concurrency must be positive - " + maxConcurrent);
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = Math.max(0, maxQueued);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, maxWait));
+        this.retryAfter = Math.max(0, retryAfter);
+    }
+
+    static ConcurrencyLimit of(final Bulkhead bulkhead) {
+        return new ConcurrencyLimit(bulkhead.value(), bulkhead.queue(), bulkhead.maxWait(), bulkhead.retryAfter());
+    }
+
+    boolean tryAcquire() {
+        for (;;) {
+            final int count = active.get();
+            if (count >= maxConcurrent) {
+                return false;
+            }
+            if (active.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true if acquired a permit, false if rejected
+     */
+    boolean acquire() {
+        if (tryAcquire()) {
+            return true;
+        }
+        if (maxWaitNanos == 0L || !enqueue()) {
+            rejected.increment();
+            return false;
+        }
+        final Thread current = Thread.currentThread();
+        waiters.add(current);
+        try {
+            final long deadline = System.nanoTime() + maxWaitNanos;
+            for (;;) {
+                if (tryAcquire()) {
+                    return true;
+                }
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L || current.isInterrupted()) {
+                    rejected.increment();
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        } finally {
+            waiters.remove(current);
+            queued.decrementAndGet();
+            // Pass a wakeup on to the next waiter if a permit is still free
+            if (active.get() < maxConcurrent) {
+                signal();
+            }
+        }
+    }
+
+    private boolean enqueue() {
+        for (;;) {
+            final int count = queued.get();
+            if (count >= maxQueued) {
+                return false;
+            }
+            if (queued.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        active.decrementAndGet();
+        signal();
+    }
+
+    private void signal() {
+        final Thread waiter = waiters.peek();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * @return true if this bulkhead was created by the same settings
+     */
+    boolean matches(final int maxConcurrent, final int maxQueued, final long maxWait, final int retryAfter) {
+        return this.maxConcurrent == maxConcurrent && this.maxQueued == Math.max(0, maxQueued)
+                && this.maxWaitNanos == TimeUnit.MILLISECONDS.toNanos(Math.max(0L, maxWait))
+                && this.retryAfter == Math.max(0, retryAfter);
+    }
+
+    int getRetryAfter() {
+        return retryAfter;
+    }
+
+    int active() {
+        return active.get();
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active:%d/%d queued:%d/%d rejected:%d",
+                active(), maxConcurrent, queued(), maxQueued, rejected());
+    }
+}
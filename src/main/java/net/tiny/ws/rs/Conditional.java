@@ -0,0 +1,184 @@
+package net.tiny.ws.rs;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * 条件请求 (Strong ETags and the validators of conditional GET)
+ * <p>
+ * The ETag is a 64-bit MurmurHash of the identity body, a compressed body is tagged
+ * with the suffix of its encoding, as each representation has its own strong ETag.
+ * 'If-None-Match' is compared weakly and takes precedence over 'If-Modified-Since'.
+ */
+final class Conditional {
+
+    static final String HEADER_ETAG = "ETag";
+    static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+    static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+    private static final long M = 0xC6A4A7935BD1E995L;
+    private static final int R = 47;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Conditional() {}
+
+    /**
+     * MurmurHash64A of the bytes
+     */
+    static long hash(final byte[] data, final int off, final int len) {
+        long h = SEED ^ (len * M);
+        final int blocks = len >>> 3;
+        int i = off;
+        for (int b = 0; b < blocks; b++, i += 8) {
+            long k = (data[i] & 0xFFL)
+                    | (data[i + 1] & 0xFFL) << 8
+                    | (data[i + 2] & 0xFFL) << 16
+                    | (data[i + 3] & 0xFFL) << 24
+                    | (data[i + 4] & 0xFFL) << 32
+                    | (data[i + 5] & 0xFFL) << 40
+                    | (data[i + 6] & 0xFFL) << 48
+                    | (data[i + 7] & 0xFFL) << 56;
+            k *= M;
+            k ^= k >>> R;
+            k *= M;
+            h ^= k;
+            h *= M;
+        }
+        final int rest = len & 7;
+        if (rest > 0) {
+            for (int j = rest - 1; j >= 0; j--) {
+                h ^= (data[i + j] & 0xFFL) << (8 * j);
+            }
+            h *= M;
+        }
+        h ^= h >>> R;
+        h *= M;
+        h ^= h >>> R;
+        return h;
+    }
+
+    /**
+     * @param encoding The encoding of the sent body, or null
+     * @return The quoted strong ETag of the body
+     */
+    static String etag(final byte[] data, final int off, final int len, final Compression.Encoding encoding) {
+        final long h = hash(data, off, len);
+        final StringBuilder tag = new StringBuilder(28).append('"');
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            tag.append(HEX[(int)(h >>> shift) & 0xF]);
+        }
+        if (null != encoding) {
+            tag.append('-').append(encoding.name());
+        }
+        return tag.append('"').toString();
+    }
+
+    /**
+     * @param etag The ETag of the response, or null if not tagged
+     * @return true if the validators of a GET or HEAD request match the response
+     */
+    static boolean notModified(final HttpExchange he, final String etag) {
+        final String method = he.getRequestMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+        final Headers headers = he.getRequestHeaders();
+        if (null == headers) {
+            return false;
+        }
+        final String ifNoneMatch = headers.getFirst(HEADER_IF_NONE_MATCH);
+        if (null != ifNoneMatch) {
+            return null != etag && matches(ifNoneMatch, etag);
+        }
+        final String ifModifiedSince = headers.getFirst(HEADER_IF_MODIFIED_SINCE);
+        final Headers response = he.getResponseHeaders();
+        final String lastModified = null != response ? response.getFirst(HEADER_LAST_MODIFIED) : null;
+        if (null == ifModifiedSince || null == lastModified) {
+            return false;
+        }
+        final long since = seconds(ifModifiedSince);
+        final long modified = seconds(lastModified);
+        return since >= 0L && modified >= 0L && modified <= since;
+    }
+
+    /**
+     * Send a binary body with its ETag, or 304 Not Modified if the validators match
+     *
+     * @param threshold The minimum bytes of a body to compress, negative is disabled
+     */
+    static void send(final HttpExchange he, final byte[] body, final int threshold) throws IOException {
+        final Compression.Encoding selected = Compression.select(he, threshold);
+        final Compression.Encoding encoding = body.length >= threshold ? selected : null;
+        final String etag = etag(body, 0, body.length, encoding);
+        he.getResponseHeaders().set(HEADER_ETAG, etag);
+        if (notModified(he, etag)) {
+            sendNotModified(he);
+        } else {
+            Compression.send(he, HttpURLConnection.HTTP_OK, body, encoding);
+        }
+    }
+
+    /**
+     * Send 304 Not Modified without body, the ETag header was set
+     */
+    static void sendNotModified(final HttpExchange he) throws IOException {
+        he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+    }
+
+    /**
+     * Weak comparison of the tags separated by comma, the encoding suffixes are ignored
+     */
+    static boolean matches(final String ifNoneMatch, final String etag) {
+        final String opaque = opaque(etag, 0, etag.length());
+        final int length = ifNoneMatch.length();
+        int start = 0;
+        while (start < length) {
+            int end = ifNoneMatch.indexOf(',', start);
+            if (end < 0) {
+                end = length;
+            }
+            final String tag = opaque(ifNoneMatch, start, end);
+            if ("*".equals(tag) || opaque.equals(tag)) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    private static String opaque(final String value, final int from, final int to) {
+        String tag = value.substring(from, to).trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() >= 2 && tag.charAt(0) == '"' && tag.charAt(tag.length() - 1) == '"') {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        for (Compression.Encoding encoding : Compression.Encoding.values()) {
+            final String suffix = "-" + encoding.name();
+            if (tag.endsWith(suffix)) {
+                return tag.substring(0, tag.length() - suffix.length());
+            }
+        }
+        return tag;
+    }
+
+    /**
+     * @return The epoch seconds of a HTTP date, -1 if invalid
+     */
+    private static long seconds(final String date) {
+        try {
+            return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return -1L;
+        }
+    }
+}
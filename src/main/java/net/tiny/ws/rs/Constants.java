@@ -3,7 +3,8 @@ package net.tiny.ws.rs;
 public interface Constants {
     public enum Mode {
         instance,
-        singleton
+        singleton,
+        pool
     }
     String CONTEXT_PARAM_APPLICATION = "javax.ws.rs.Application";
 
@@ -0,0 +1,123 @@
+package net.tiny.ws.rs;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求的截止时间 (Deadline of a request, from @Timeout or the default timeout of handler)
+ * <p>
+ * While a REST method is invoked, its deadline is {@link #current()} on the invoking thread,
+ * so the REST method and the suppliers of @Resource can pass the remaining time to downstream calls,
+ * or stop early by {@link #check()}. When the deadline passed, the response is 504 Gateway Timeout
+ * without waiting for the method, and the invoking thread is interrupted if enabled.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long timeout;
+    private final long expiresAt;
+    private volatile boolean expired;
+    /** The thread invokes the REST method */
+    private Thread thread;
+    private boolean interruptible;
+    private boolean interrupted;
+
+    /**
+     * @param timeout The timeout in milliseconds
+     */
+    Deadline(final long timeout) {
+        this.timeout = timeout;
+        this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    /**
+     * @return The deadline of the request invoking on this thread, or null
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return The timeout in milliseconds
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return The remaining time, 0 if expired
+     */
+    public long remaining(final TimeUnit unit) {
+        final long nanos = expiresAt - System.nanoTime();
+        return nanos > 0L ? unit.convert(nanos, TimeUnit.NANOSECONDS) : 0L;
+    }
+
+    public boolean isExpired() {
+        return expired || expiresAt - System.nanoTime() <= 0L;
+    }
+
+    /**
+     * @throws ApplicationException 504 if expired
+     */
+    public void check() {
+        if (isExpired()) {
+            throw new ApplicationException(String.format("Deadline %dms exceeded", timeout),
+                    HttpURLConnection.HTTP_GATEWAY_TIMEOUT);
+        }
+    }
+
+    /**
+     * Set this deadline to the current thread
+     *
+     * @param interrupt true to interrupt this thread when expired
+     * @return The former deadline of this thread
+     */
+    Deadline enter(final boolean interrupt) {
+        final Deadline previous = CURRENT.get();
+        CURRENT.set(this);
+        synchronized (this) {
+            this.thread = Thread.currentThread();
+            this.interruptible = interrupt;
+        }
+        return previous;
+    }
+
+    /**
+     * Remove this deadline from the current thread, the interrupt by this deadline is cleared.
+     *
+     * @param previous The former deadline returned by {@link #enter(boolean)}
+     */
+    void exit(final Deadline previous) {
+        synchronized (this) {
+            this.thread = null;
+            if (interrupted) {
+                interrupted = false;
+                Thread.interrupted();
+            }
+        }
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Called by the timer when the deadline passed
+     */
+    void expire() {
+        synchronized (this) {
+            expired = true;
+            if (thread != null && interruptible) {
+                interrupted = true;
+                thread.interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Deadline %dms remaining %dms", timeout, remaining(TimeUnit.MILLISECONDS));
+    }
+}
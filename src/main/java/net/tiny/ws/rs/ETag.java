@@ -0,0 +1,19 @@
+package net.tiny.ws.rs;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation to tag the responses of a REST method with a strong ETag
+ * <p>
+ * The ETag is the hash of the serialized body. When the 'If-None-Match' of a GET request
+ * matches it, the response is 304 Not Modified without body.
+ * The body is buffered until it is complete, so the chunked threshold is not applied.
+ * A body over 1MB is not buffered any more, it is sent with chunked transfer without ETag.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ETag {
+}
@@ -2,8 +2,17 @@ package net.tiny.ws.rs;
 
 class Hitting<T> implements Comparable<Hitting<T>> {
 
-    public static Hitting<Void> NOT_HIT = new Hitting<Void>();
-    private Integer hit = -1;
+    public static final Hitting<Void> NOT_HIT = new Hitting<Void>();
+    /** The range of shared miss results, the compared value over it is clamped */
+    static final int MAX_MISS = 256;
+    @SuppressWarnings("unchecked")
+    private static final Hitting<Void>[] MISSES = new Hitting[MAX_MISS * 2 + 1];
+    static {
+        for (int i = 0; i < MISSES.length; i++) {
+            MISSES[i] = new Hitting<Void>(i - MAX_MISS);
+        }
+    }
+    private int hit = -1;
     private final T target;
 
     private Hitting() {
@@ -14,6 +23,16 @@ class Hitting<T> implements Comparable<Hitting<T>> {
         this(compare, null);
     }
 
+    /**
+     * 不命中的共享结果 (Shared result of a miss, never allocated)
+     *
+     * @param compare The compared value of URI and pattern
+     * @return The miss result of the value, clamped in [-MAX_MISS, MAX_MISS]
+     */
+    static Hitting<Void> miss(int compare) {
+        return MISSES[Math.max(-MAX_MISS, Math.min(MAX_MISS, compare)) + MAX_MISS];
+    }
+
     public Hitting(T target) {
         this(0, target);
     }
@@ -41,6 +60,6 @@ class Hitting<T> implements Comparable<Hitting<T>> {
 
     @Override
     public int compareTo(Hitting<T> target) {
-        return hit.compareTo(target.hit);
+        return Integer.compare(hit, target.hit);
     }
 }
\ No newline at end of file
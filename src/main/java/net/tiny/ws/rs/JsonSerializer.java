@@ -0,0 +1,400 @@
+package net.tiny.ws.rs;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.tiny.config.JsonParser;
+
+/**
+ * JSON序列化器 (Serializer of one type, compiled once and shared by all handlers)
+ * <p>
+ * The serializers are cached per class by a {@link ClassValue}, which is a lock-free lookup
+ * and is released with the class. The output is always the same as {@link JsonParser#marshal(Object)},
+ * so the wire format of responses is not changed.
+ * <ul>
+ * <li>A bean class is compiled into a fixed list of properties in the order of JsonParser:
+ * the fields of the superclass first, in declared order, each one read by its public getter
+ * through {@link MethodInvoker} or as a public field. The static and transient fields and
+ * the fields without getter are skipped, a null property is written as <code>null</code>.</li>
+ * <li>The maps, collections and arrays are written one element at a time, so a large result
+ * is streamed to the response without an intermediate string.</li>
+ * <li>The integral numbers, finite doubles, booleans, nulls and strings of printable ASCII
+ * not escaped are written directly.</li>
+ * <li>Any other value, such as an enum, a date or an escaped string, is one element written
+ * by {@link JsonParser#marshal(Object)}. A single value at the top is written by it as before.</li>
+ * </ul>
+ * The first value of each bean class is checked against {@link JsonParser#marshal(Object)},
+ * a class written differently by JsonParser stays on it.
+ */
+interface JsonSerializer {
+
+    void write(Object value, Writer out) throws IOException;
+
+    /**
+     * @return The serializer of the class, compiled at the first call
+     */
+    static JsonSerializer of(final Class<?> type) {
+        return Cache.SERIALIZERS.get(type);
+    }
+
+    /**
+     * Write a value by the serializer of its class
+     */
+    static void writeValue(final Object value, final Writer out) throws IOException {
+        if (null == value) {
+            out.write(Cache.NULL, 0, Cache.NULL.length);
+        } else {
+            of(value.getClass()).write(value, out);
+        }
+    }
+
+    /**
+     * Write an element of an array, the same as it is written by {@link JsonParser#marshal(Object)} in an array
+     */
+    static void writeElement(final Object value, final Writer out) throws IOException {
+        Cache.writeElement(value, out, 0);
+    }
+
+    static final class Cache {
+        static final char[] NULL = "null".toCharArray();
+        /** The maximum depth of nested values written directly */
+        static final int MAX_DEPTH = 16;
+
+        static final JsonSerializer MARSHAL = (value, out) -> out.write(JsonParser.marshal(value));
+        static final JsonSerializer CONTAINER = (value, out) -> writeContainer(value, out, 0);
+
+        static final ClassValue<JsonSerializer> SERIALIZERS = new ClassValue<JsonSerializer>() {
+            @Override
+            protected JsonSerializer computeValue(final Class<?> type) {
+                return compile(type);
+            }
+        };
+
+        private Cache() {}
+
+        static JsonSerializer compile(final Class<?> type) {
+            if (isContainer(type)) {
+                return CONTAINER;
+            }
+            if (Bean.supports(type)) {
+                try {
+                    final Bean bean = new Bean(type);
+                    if (bean.size() > 0) {
+                        return bean;
+                    }
+                } catch (IllegalAccessException | RuntimeException e) {
+                    Logger.getLogger(JsonSerializer.class.getName()).log(Level.FINE,
+                            String.format("[REST] Serialize '%s' by JsonParser - %s", type.getName(), e.getMessage()));
+                }
+            }
+            return MARSHAL;
+        }
+
+        static boolean isContainer(final Class<?> type) {
+            return Map.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type)
+                    || (type.isArray() && char.class != type.getComponentType());
+        }
+
+        static void writeElement(final Object value, final Writer out, final int depth) throws IOException {
+            if (null == value) {
+                out.write(NULL, 0, NULL.length);
+            } else if (value instanceof Boolean || value instanceof Integer || value instanceof Long
+                    || value instanceof Short || value instanceof Byte) {
+                out.write(value.toString());
+            } else if (value instanceof Double) {
+                final double number = (Double)value;
+                if (Double.isNaN(number) || Double.isInfinite(number)) {
+                    marshal(value, out);
+                } else {
+                    out.write(value.toString());
+                }
+            } else if (value instanceof String) {
+                writeString((String)value, out);
+            } else if (depth >= MAX_DEPTH) {
+                marshal(value, out);
+            } else if (isContainer(value.getClass())) {
+                writeContainer(value, out, depth + 1);
+            } else {
+                final JsonSerializer serializer = of(value.getClass());
+                if (serializer instanceof Bean) {
+                    ((Bean)serializer).write(value, out, depth + 1);
+                } else {
+                    marshal(value, out);
+                }
+            }
+        }
+
+        static void writeContainer(final Object value, final Writer out, final int depth) throws IOException {
+            if (value instanceof Map) {
+                final Map<?, ?> map = (Map<?, ?>)value;
+                for (Object key : map.keySet()) {
+                    if (!(key instanceof String)) {
+                        // The keys other than string are written by JsonParser
+                        marshal(value, out);
+                        return;
+                    }
+                }
+                out.write('{');
+                boolean first = true;
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    if (!first) {
+                        out.write(',');
+                    }
+                    first = false;
+                    writeString((String)entry.getKey(), out);
+                    out.write(':');
+                    writeElement(entry.getValue(), out, depth);
+                }
+                out.write('}');
+            } else if (value instanceof Collection) {
+                out.write('[');
+                boolean first = true;
+                for (Object element : (Collection<?>)value) {
+                    if (!first) {
+                        out.write(',');
+                    }
+                    first = false;
+                    writeElement(element, out, depth);
+                }
+                out.write(']');
+            } else if (value instanceof Object[]) {
+                final Object[] array = (Object[])value;
+                out.write('[');
+                for (int i = 0; i < array.length; i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    writeElement(array[i], out, depth);
+                }
+                out.write(']');
+            } else {
+                // Array of primitives
+                final int length = Array.getLength(value);
+                out.write('[');
+                for (int i = 0; i < length; i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    writeElement(Array.get(value, i), out, depth);
+                }
+                out.write(']');
+            }
+        }
+
+        static void writeString(final String text, final Writer out) throws IOException {
+            if (isPlain(text)) {
+                out.write('"');
+                out.write(text);
+                out.write('"');
+            } else {
+                marshal(text, out);
+            }
+        }
+
+        /**
+         * Write one value as an element of array by JsonParser, a single string is not an element at the top
+         */
+        static void marshal(final Object value, final Writer out) throws IOException {
+            final String json = JsonParser.marshal(new Object[] {value});
+            out.write(json, 1, json.length() - 2);
+        }
+
+        /**
+         * @return true if the string is not escaped by any JSON writer
+         */
+        static boolean isPlain(final String text) {
+            final int length = text.length();
+            for (int i = 0; i < length; i++) {
+                final char c = text.charAt(i);
+                if (c < 0x20 || c > 0x7e || c == '"' || c == '\\' || c == '/'
+                        || c == '<' || c == '>' || c == '&' || c == '=' || c == '\'') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 预编译的Bean序列化器 (The properties of a bean class, in the order written by JsonParser)
+     */
+    static final class Bean implements JsonSerializer {
+        private static final Object[] NO_ARGUMENTS = new Object[0];
+        private static final int UNCHECKED = 0;
+        private static final int CHECKED = 1;
+        private static final int MARSHAL = -1;
+
+        private final Class<?> type;
+        private final Property[] properties;
+        private volatile int state = UNCHECKED;
+
+        Bean(final Class<?> type) throws IllegalAccessException {
+            this.type = type;
+            final List<Class<?>> hierarchy = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                hierarchy.add(0, c);
+            }
+            final List<Property> list = new ArrayList<>();
+            for (Class<?> c : hierarchy) {
+                for (Field field : c.getDeclaredFields()) {
+                    final int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+                    final Property property = Property.of(type, field);
+                    if (null != property) {
+                        list.add(property);
+                    }
+                }
+            }
+            this.properties = list.toArray(new Property[list.size()]);
+        }
+
+        /**
+         * The classes of JDK, the enums and the interfaces are written by JsonParser.
+         */
+        static boolean supports(final Class<?> type) {
+            if (type.isPrimitive() || type.isArray() || type.isInterface() || type.isEnum()
+                    || type.isAnonymousClass() || Modifier.isAbstract(type.getModifiers())) {
+                return false;
+            }
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                if (c.isEnum() || c.getName().startsWith("java.") || c.getName().startsWith("javax.")
+                        || c.getName().startsWith("sun.") || c.getName().startsWith("com.sun.")) {
+                    return c == Object.class;
+                }
+            }
+            return true;
+        }
+
+        int size() {
+            return properties.length;
+        }
+
+        /** @return true if the output is the same as JsonParser, and written by the properties */
+        boolean isChecked() {
+            return state == CHECKED;
+        }
+
+        @Override
+        public void write(final Object value, final Writer out) throws IOException {
+            write(value, out, 0);
+        }
+
+        void write(final Object value, final Writer out, final int depth) throws IOException {
+            final int state = this.state;
+            if (state == CHECKED && depth < Cache.MAX_DEPTH) {
+                writeProperties(value, out, depth);
+            } else if (state == UNCHECKED && depth < Cache.MAX_DEPTH) {
+                final StringWriter compiled = new StringWriter();
+                writeProperties(value, compiled, depth);
+                final String expected = JsonParser.marshal(value);
+                if (expected.equals(compiled.toString())) {
+                    this.state = CHECKED;
+                } else {
+                    this.state = MARSHAL;
+                    Logger.getLogger(JsonSerializer.class.getName()).log(Level.FINE,
+                            String.format("[REST] Serialize '%s' by JsonParser - not the same output", type.getName()));
+                }
+                out.write(expected);
+            } else if (depth == 0) {
+                out.write(JsonParser.marshal(value));
+            } else {
+                Cache.marshal(value, out);
+            }
+        }
+
+        private void writeProperties(final Object value, final Writer out, final int depth) throws IOException {
+            out.write('{');
+            for (int i = 0; i < properties.length; i++) {
+                final char[] name = properties[i].name;
+                // The first name without ','
+                if (i == 0) {
+                    out.write(name, 1, name.length - 1);
+                } else {
+                    out.write(name, 0, name.length);
+                }
+                Cache.writeElement(properties[i].get(value), out, depth);
+            }
+            out.write('}');
+        }
+
+        static final class Property {
+            /** ',"name":' */
+            final char[] name;
+            private final MethodInvoker getter;
+            private final MethodHandle field;
+
+            private Property(final String name, final MethodInvoker getter, final MethodHandle field) {
+                this.name = (",\"" + name + "\":").toCharArray();
+                this.getter = getter;
+                this.field = field;
+            }
+
+            /**
+             * @return The property read by the public getter or as a public field, or null if it is not readable
+             */
+            static Property of(final Class<?> type, final Field field) throws IllegalAccessException {
+                if (!Cache.isPlain(field.getName())) {
+                    return null;
+                }
+                if (Modifier.isPublic(field.getModifiers()) && Modifier.isPublic(field.getDeclaringClass().getModifiers())) {
+                    return new Property(field.getName(), null, MethodHandles.publicLookup().unreflectGetter(field));
+                }
+                final Method method = getter(type, field);
+                if (null == method) {
+                    return null;
+                }
+                return new Property(field.getName(), MethodInvoker.of(method), null);
+            }
+
+            /**
+             * @return The public getter of field, 'getName' or 'isName'
+             */
+            private static Method getter(final Class<?> type, final Field field) {
+                final String name = field.getName();
+                final String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                for (String prefix : new String[] {"get", "is"}) {
+                    try {
+                        final Method method = type.getMethod(prefix + suffix);
+                        if (!Modifier.isStatic(method.getModifiers()) && method.getReturnType() != void.class) {
+                            return method;
+                        }
+                    } catch (NoSuchMethodException e) {
+                        // Try the next prefix
+                    }
+                }
+                return null;
+            }
+
+            Object get(final Object bean) throws IOException {
+                try {
+                    if (null != getter) {
+                        return getter.invoke(bean, NO_ARGUMENTS);
+                    }
+                    return field.invoke(bean);
+                } catch (InvocationTargetException e) {
+                    throw new IOException(e.getCause());
+                } catch (IOException | RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+    }
+}
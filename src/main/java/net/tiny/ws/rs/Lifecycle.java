@@ -0,0 +1,23 @@
+package net.tiny.ws.rs;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation to indicate the lifecycle of REST service instances
+ * <p>
+ * Without this annotation the instance registered by {@link RestServiceFactory} is shared by all requests.
+ * {@link Constants.Mode#instance} creates a new instance per request,
+ * {@link Constants.Mode#pool} reuses at most {@link #poolSize()} idle instances.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Lifecycle {
+
+    public Constants.Mode value() default Constants.Mode.singleton;
+
+    /** The maximum count of idle instances in {@link Constants.Mode#pool} mode */
+    public int poolSize() default 8;
+}
@@ -0,0 +1,274 @@
+package net.tiny.ws.rs;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * REST方法的调用器 (Invoker of a resource method, built once per method pattern)
+ * <p>
+ * A public instance method with a return value and at most {@link Lambda#MAX_ARGUMENTS} parameters
+ * is called through a functional interface generated by {@link LambdaMetafactory},
+ * which calls the method directly and can be inlined by JIT.
+ * Other methods are called by a {@link MethodHandle} adapted to <code>(Object, Object[])Object</code>,
+ * the receiver and arguments are cast and unboxed to the exact types by the handle itself.
+ * The reflection is only used when neither of them can be created.
+ * All invokers throw the exceptions of target method as {@link InvocationTargetException},
+ * and the arguments can not be adapted to the parameter types as {@link IllegalArgumentException},
+ * the same as {@link Method#invoke(Object, Object...)}.
+ */
+interface MethodInvoker {
+
+    /**
+     * @param target The instance of service, ignored for a static method
+     * @param args The arguments of method
+     * @return The returned value, null if the method is void
+     */
+    Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException;
+
+    static MethodInvoker of(final Method method) {
+        if (Lambda.supports(method)) {
+            try {
+                return new Lambda(method);
+            } catch (Throwable e) {
+                Logger.getLogger(MethodInvoker.class.getName()).log(Level.FINE,
+                        String.format("[REST] Invoke '%s' by method handle - %s", method.getName(), e.getMessage()));
+            }
+        }
+        try {
+            return new Handle(method);
+        } catch (IllegalAccessException | RuntimeException e) {
+            Logger.getLogger(MethodInvoker.class.getName()).log(Level.FINE,
+                    String.format("[REST] Invoke '%s' by reflection - %s", method.getName(), e.getMessage()));
+            return new Reflection(method);
+        }
+    }
+
+    @FunctionalInterface
+    interface Call0 {
+        Object call(Object target);
+    }
+
+    @FunctionalInterface
+    interface Call1 {
+        Object call(Object target, Object a0);
+    }
+
+    @FunctionalInterface
+    interface Call2 {
+        Object call(Object target, Object a0, Object a1);
+    }
+
+    @FunctionalInterface
+    interface Call3 {
+        Object call(Object target, Object a0, Object a1, Object a2);
+    }
+
+    @FunctionalInterface
+    interface Call4 {
+        Object call(Object target, Object a0, Object a1, Object a2, Object a3);
+    }
+
+    /**
+     * 参数类型检查 (Checks the receiver and arguments only after the call failed)
+     * <p>
+     * The generated invokers cast and unbox the arguments themselves, so a wrong argument
+     * throws the same {@link NullPointerException} or {@link ClassCastException} as the target method could.
+     * They are told apart by checking the arguments against the parameter types, without any cost on the call.
+     */
+    static final class Signature {
+        private static final Class<?>[] NUMBERS = {byte.class, short.class, int.class, long.class, float.class, double.class};
+        private final Class<?> owner;
+        private final boolean instance;
+        private final Class<?>[] types;
+        /** The primitive widening of the unboxed arguments, allowed by the method handle only */
+        private final boolean widening;
+
+        Signature(final Method method, final boolean widening) {
+            this.owner = method.getDeclaringClass();
+            this.instance = !Modifier.isStatic(method.getModifiers());
+            this.types = method.getParameterTypes();
+            this.widening = widening;
+        }
+
+        /**
+         * @throws NullPointerException If the receiver of an instance method is null
+         * @throws IllegalArgumentException If the receiver or an argument can not be adapted
+         */
+        void check(final Object target, final Object[] args) {
+            if (instance) {
+                if (null == target) {
+                    throw new NullPointerException("The target of instance method is null");
+                }
+                if (!owner.isInstance(target)) {
+                    throw new IllegalArgumentException(String.format("'%s' is not an instance of %s",
+                            target.getClass().getName(), owner.getName()));
+                }
+            }
+            for (int i = 0; i < types.length; i++) {
+                if (!adapts(types[i], args[i])) {
+                    throw new IllegalArgumentException(String.format("Argument #%d %s can not be adapted to %s",
+                            i, null == args[i] ? "null" : args[i].getClass().getName(), types[i].getName()));
+                }
+            }
+        }
+
+        private boolean adapts(final Class<?> type, final Object arg) {
+            if (!type.isPrimitive()) {
+                return null == arg || type.isInstance(arg);
+            }
+            if (null == arg) {
+                return false;
+            }
+            final Class<?> from = MethodType.methodType(arg.getClass()).unwrap().returnType();
+            if (from == type) {
+                return true;
+            }
+            if (!widening || !from.isPrimitive() || boolean.class == type || char.class == type) {
+                return false;
+            }
+            if (char.class == from) {
+                return indexOf(type) >= indexOf(int.class);
+            }
+            final int index = indexOf(from);
+            return index >= 0 && index < indexOf(type);
+        }
+
+        private static int indexOf(final Class<?> type) {
+            for (int i = 0; i < NUMBERS.length; i++) {
+                if (NUMBERS[i] == type) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    static final class Lambda implements MethodInvoker {
+        static final int MAX_ARGUMENTS = 4;
+        private static final Class<?>[] CALLS = {Call0.class, Call1.class, Call2.class, Call3.class, Call4.class};
+        private final Object call;
+        private final int count;
+        private final Signature signature;
+
+        Lambda(final Method method) throws Throwable {
+            this.signature = new Signature(method, false);
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            final MethodHandle impl = lookup.unreflect(method);
+            this.count = method.getParameterCount();
+            final CallSite site = LambdaMetafactory.metafactory(lookup, "call",
+                    MethodType.methodType(CALLS[count]),
+                    MethodType.genericMethodType(count + 1),
+                    impl,
+                    impl.type().wrap());
+            this.call = site.getTarget().invoke();
+        }
+
+        /**
+         * The generated class calls the method directly, so the method and its class must be public.
+         */
+        static boolean supports(final Method method) {
+            if (method.getParameterCount() > MAX_ARGUMENTS
+                    || method.getReturnType() == void.class
+                    || method.isVarArgs()
+                    || Modifier.isStatic(method.getModifiers())
+                    || !Modifier.isPublic(method.getModifiers())) {
+                return false;
+            }
+            for (Class<?> type = method.getDeclaringClass(); type != null; type = type.getEnclosingClass()) {
+                if (!Modifier.isPublic(type.getModifiers())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Object invoke(final Object target, final Object[] args) throws InvocationTargetException {
+            final int length = args == null ? 0 : args.length;
+            if (length != count) {
+                throw new IllegalArgumentException(
+                        String.format("Wrong number of arguments %d, expected %d", length, count));
+            }
+            try {
+                switch (count) {
+                case 0:
+                    return ((Call0)call).call(target);
+                case 1:
+                    return ((Call1)call).call(target, args[0]);
+                case 2:
+                    return ((Call2)call).call(target, args[0], args[1]);
+                case 3:
+                    return ((Call3)call).call(target, args[0], args[1], args[2]);
+                default:
+                    return ((Call4)call).call(target, args[0], args[1], args[2], args[3]);
+                }
+            } catch (NullPointerException | ClassCastException e) {
+                signature.check(target, args);
+                throw new InvocationTargetException(e);
+            } catch (Throwable e) {
+                throw new InvocationTargetException(e);
+            }
+        }
+    }
+
+    static final class Handle implements MethodInvoker {
+        private static final Object[] NO_ARGUMENTS = new Object[0];
+        private final MethodHandle handle;
+        private final int count;
+        private final Signature signature;
+
+        Handle(final Method method) throws IllegalAccessException {
+            this.signature = new Signature(method, true);
+            try {
+                method.setAccessible(true);
+            } catch (RuntimeException e) {
+                // Not opened, try with the public access
+            }
+            MethodHandle mh = MethodHandles.lookup().unreflect(method).asFixedArity();
+            if (Modifier.isStatic(method.getModifiers())) {
+                mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            }
+            this.count = method.getParameterCount();
+            this.handle = mh.asType(MethodType.genericMethodType(count + 1))
+                    .asSpreader(Object[].class, count);
+        }
+
+        @Override
+        public Object invoke(final Object target, final Object[] args) throws InvocationTargetException {
+            final Object[] arguments = args == null ? NO_ARGUMENTS : args;
+            if (arguments.length != count) {
+                throw new IllegalArgumentException(
+                        String.format("Wrong number of arguments %d, expected %d", arguments.length, count));
+            }
+            try {
+                return (Object) handle.invokeExact(target, arguments);
+            } catch (NullPointerException | ClassCastException e) {
+                signature.check(target, arguments);
+                throw new InvocationTargetException(e);
+            } catch (Throwable e) {
+                throw new InvocationTargetException(e);
+            }
+        }
+    }
+
+    static final class Reflection implements MethodInvoker {
+        private final Method method;
+
+        Reflection(final Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public Object invoke(final Object target, final Object[] args) throws IllegalAccessException, InvocationTargetException {
+            return method.invoke(target, args);
+        }
+    }
+}
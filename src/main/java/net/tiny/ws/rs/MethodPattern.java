@@ -4,24 +4,24 @@ import java.io.UnsupportedEncodingException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
-import java.net.URLDecoder;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.Consumes;
-import javax.ws.rs.FormParam;
-import javax.ws.rs.MatrixParam;
-import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
-import javax.ws.rs.QueryParam;
+
+import com.sun.net.httpserver.HttpExchange;
 
 /**
  * REST 表述性状态传递的URI路径和服务方法匹配器
@@ -32,17 +32,39 @@ public class MethodPattern implements Comparable<MethodPattern>, RestServiceHand
 
     private String path;
     private String pattern;
-    private Object service = null;
     private Class<?> serviceClass;
     private String httpMethod = null;
     private Class<?> returnType = null;
+    /** 按返回类型预编译的JSON序列化器 */
+    private JsonSerializer serializer;
     private final Method method;
+    /** 预编译的方法调用器 */
+    private final MethodInvoker invoker;
+    /** 预编译的方法参数绑定器 */
+    private final ParameterBinder[] binders;
     private final Hitting<MethodPattern> hit;
-    /** 模式:单例模式/还是每次请求生成新对象 默认是instance模式 */
-    private Mode mode = Mode.instance;
+    /** 预编译的URI模板各节匹配器 */
+    private final Segment[] segments;
+    /** 模式:单例模式/每次请求生成新对象/池化 默认共享注册的实例(singleton模式)，没有实例时每次请求生成 */
+    private volatile ServiceProvider provider;
     private String[] requestTypes;
     private String[] mediaTypes;
+    /** 按@Produces预编译的内容协商 */
+    private Negotiation negotiation;
     private String[] allowedRoles;
+    /** The timeout in milliseconds, see @Timeout */
+    private long timeout = 0L;
+    /** The bulkhead of route, see @Bulkhead */
+    private ConcurrencyLimit concurrencyLimit;
+    /** The rate limit of route, see @RateLimit */
+    private RateLimiter rateLimiter;
+    /** The bulkhead and the rate limit of handler settings, used without the annotations */
+    private volatile ConcurrencyLimit defaultLimit;
+    private volatile RateLimiter defaultRateLimiter;
+    /** Tag the responses with ETags, see @ETag */
+    private boolean tagged = false;
+    /** The cache of GET responses, see @Cached */
+    private ResponseCache responseCache;
     private Listener listener;
 
     /**
@@ -64,10 +86,14 @@ public class MethodPattern implements Comparable<MethodPattern>, RestServiceHand
         this.httpMethod = httpMethod;
         this.serviceClass = serviceClass;
         if(service != null) {
-            this.mode = Mode.singleton;
-            this.service = service;
+            this.provider = ServiceProvider.singleton(service);
+        } else {
+            this.provider = ServiceProvider.of(serviceClass != null ? serviceClass : method.getDeclaringClass(),
+                    Mode.instance, 0, ServiceProvider.NO_INJECTIONS);
         }
         this.method = method;
+        this.invoker = MethodInvoker.of(method);
+        this.binders = ParameterBinder.compile(method);
         if(null != pattern) {
             // Format pattern string
             if (!pattern.startsWith("/") && !path.endsWith("/")) {
@@ -83,6 +109,12 @@ public class MethodPattern implements Comparable<MethodPattern>, RestServiceHand
         }
         PathPattern.checkPattern(this.pattern);
         this.hit = new Hitting<MethodPattern>(this);
+        final Set<String> names = parameterNames(method);
+        final String[] patternSegs = this.pattern.split("/");
+        this.segments = new Segment[patternSegs.length];
+        for (int i = 0; i < patternSegs.length; i++) {
+            this.segments[i] = compile(patternSegs[i], names);
+        }
 
         Produces  produces  = method .getAnnotation(Produces.class);
         if(null != produces) {
@@ -90,6 +122,8 @@ public class MethodPattern implements Comparable<MethodPattern>, RestServiceHand
         } else {
             this.mediaTypes = new String[] {mediaType};
         }
+        // Negotiate in the declared order of @Produces
+        this.negotiation = new Negotiation(this.mediaTypes);
         Arrays.sort(this.mediaTypes);
 
         Consumes consumes = method.getAnnotation(Consumes.class);
@@ -97,6 +131,7 @@ public class MethodPattern implements Comparable<MethodPattern>, RestServiceHand
             this.requestTypes = consumes.value();
         }
         this.returnType = method.getReturnType();
+        this.serializer = JsonSerializer.of(this.returnType);
 
         RolesAllowed rolesAllowed = method.getAnnotation(RolesAllowed.class);
         if(null != rolesAllowed) {
@@ -107,6 +142,34 @@ public class MethodPattern implements Comparable<MethodPattern>, RestServiceHand
         if(null != roles) {
             this.allowedRoles = roles.value();
         }
+
+        Timeout limit = method.getAnnotation(Timeout.class);
+        if(null != limit) {
+            this.timeout = limit.unit().toMillis(limit.value());
+        }
+
+        Bulkhead bulkhead = method.getAnnotation(Bulkhead.class);
+        if(null != bulkhead) {
+            this.concurrencyLimit = ConcurrencyLimit.of(bulkhead);
+        }
+
+        RateLimit rateLimit = method.getAnnotation(RateLimit.class);
+        if(null != rateLimit) {
+            this.rateLimiter = RateLimiter.of(rateLimit);
+        }
+
+        this.tagged = method.isAnnotationPresent(ETag.class);
+
+        Cached cached = method.getAnnotation(Cached.class);
+        if(null != cached && "GET".equals(this.httpMethod)) {
+            for (ParameterBinder binder : this.binders) {
+                if (!binder.isCacheable()) {
+                    // The cache key has only the URI and the media type
+                    throw new IllegalArgumentException(String.format("'%1$s' @Cached method can not read the headers or the client.", method));
+                }
+            }
+            this.responseCache = ResponseCache.of(cached);
+        }
     }
 
     public void setListener(Listener listener) {
@@ -117,7 +180,92 @@ public class MethodPattern implements Comparable<MethodPattern>, RestServiceHand
     }
 
     public Mode getMode() {
-        return this.mode;
+        return this.provider.getMode();
+    }
+
+    /**
+     * 设置服务实例的提供者 (The provider shared by all patterns of a service)
+     */
+    void setProvider(ServiceProvider provider) {
+        this.provider = provider;
+    }
+
+    public String getHttpMethod() {
+        return this.httpMethod;
+    }
+
+    @Override
+    public long getTimeout() {
+        return this.timeout;
+    }
+
+    ConcurrencyLimit getConcurrencyLimit() {
+        return this.concurrencyLimit;
+    }
+
+    RateLimiter getRateLimiter() {
+        return this.rateLimiter;
+    }
+
+    /**
+     * 取得路由的并发限制，没有@Bulkhead时按处理器的设置生成，设置变更时重新生成
+     *
+     * @param maxConcurrent The maximum count of concurrent calls, 0 is not limited
+     * @return The bulkhead of @Bulkhead or of the settings, or null
+     */
+    ConcurrencyLimit getConcurrencyLimit(final int maxConcurrent, final int maxQueued, final long maxWait, final int retryAfter) {
+        if (null != this.concurrencyLimit || maxConcurrent <= 0) {
+            return this.concurrencyLimit;
+        }
+        ConcurrencyLimit limit = this.defaultLimit;
+        if (null == limit || !limit.matches(maxConcurrent, maxQueued, maxWait, retryAfter)) {
+            synchronized (this) {
+                limit = this.defaultLimit;
+                if (null == limit || !limit.matches(maxConcurrent, maxQueued, maxWait, retryAfter)) {
+                    limit = new ConcurrencyLimit(maxConcurrent, maxQueued, maxWait, retryAfter);
+                    this.defaultLimit = limit;
+                }
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * 取得路由的请求速率限制，没有@RateLimit时按处理器的设置生成，设置变更时重新生成
+     *
+     * @param permits The count of requests per second, 0 is not limited
+     * @return The rate limiter of @RateLimit or of the settings, or null
+     */
+    RateLimiter getRateLimiter(final int permits, final int burst, final boolean perClient) {
+        if (null != this.rateLimiter || permits <= 0) {
+            return this.rateLimiter;
+        }
+        RateLimiter limiter = this.defaultRateLimiter;
+        if (null == limiter || !limiter.matches(permits, 1L, TimeUnit.SECONDS, burst, perClient)) {
+            synchronized (this) {
+                limiter = this.defaultRateLimiter;
+                if (null == limiter || !limiter.matches(permits, 1L, TimeUnit.SECONDS, burst, perClient)) {
+                    limiter = new RateLimiter(permits, 1L, TimeUnit.SECONDS, burst, perClient);
+                    this.defaultRateLimiter = limiter;
+                }
+            }
+        }
+        return limiter;
+    }
+
+    boolean isTagged() {
+        return this.tagged;
+    }
+
+    ResponseCache getResponseCache() {
+        return this.responseCache;
+    }
+
+    /**
+     * @return The serializer compiled for the return type, or of the class of result
+     */
+    JsonSerializer getSerializer(Object result) {
+        return result.getClass() == this.returnType ? this.serializer : JsonSerializer.of(result.getClass());
     }
 
     public Class<?> getResponseType() {
@@ -136,21 +284,16 @@ public class MethodPattern implements Comparable<MethodPattern>, RestServiceHand
         return this.allowedRoles;
     }
 
+    /**
+     * @param type The value of 'Accept' header
+     */
     @Override
     public boolean acceptableMediaType(String type) {
-        if (type== null) {
-            if (this.mediaTypes.length == 0) {
-                return true;
-            }
-            return false;
-        }
-        String acceptType = type.toLowerCase();
-        for(String mediaType : mediaTypes) {
-            if (acceptType.contains(mediaType.toLowerCase())) {
-                return true;
-            }
-        }
-        return false;
+        return null != this.negotiation.negotiate(type);
+    }
+
+    Negotiation getNegotiation() {
+        return this.negotiation;
     }
 
     public String getPattern() {
@@ -221,29 +364,44 @@ public class MethodPattern implements Comparable<MethodPattern>, RestServiceHand
         return this.method;
     }
 
+    /**
+     * 通过预编译的绑定器生成方法参数
+     *
+     * @param he The HTTP exchange
+     * @param args The parsed arguments of URI and form
+     * @param contents The request body, may be null
+     * @return The arguments of method
+     */
+    public Object[] bindArguments(final HttpExchange he, final Map<String, Object> args, final byte[] contents) {
+        final Object[] arguments = new Object[binders.length];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = binders[i].bind(he, args, contents, listener);
+        }
+        return arguments;
+    }
+
     @Override
     public Object getTarget() throws Exception {
-        Object target = null;
-        switch(mode) {
-        case instance:
-            target = serviceClass.newInstance();
-            break;
-        case singleton:
-            target = service;
-            break;
-        }
-        return target;
+        return provider.acquire();
     }
 
     @Override
     public Object invoke(final Object[] args) {
+        final ServiceProvider provider = this.provider;
         Object delgate = null;
         try {
-            delgate = getTarget();
+            delgate = provider.acquire();
             if(listener != null) {
                 listener.called(delgate.getClass().getSimpleName(), delgate.hashCode(), method.getName(), args);
             }
-            return method.invoke(delgate, args);
+            final Object result = invoker.invoke(delgate, args);
+            if (result instanceof CompletionStage) {
+                // The service is still in use until the asynchronous result completed
+                final Object target = delgate;
+                delgate = null;
+                ((CompletionStage<?>)result).whenComplete((value, error) -> provider.release(target));
+            }
+            return result;
         } catch (Throwable ex) {
             if(listener != null) {
                 String target = delgate != null ? delgate.getClass().getSimpleName() : "Unknow";
@@ -258,119 +416,70 @@ public class MethodPattern implements Comparable<MethodPattern>, RestServiceHand
                 throw (ApplicationException)cause;
             }
             throw new ApplicationException(cause, HttpURLConnection.HTTP_INTERNAL_ERROR);
+        } finally {
+            provider.release(delgate);
         }
     }
 
-    private String getParameterKey(Annotation[] annotations) {
-        for(Annotation annotation : annotations) {
-            if(annotation instanceof PathParam) {
-                return ((PathParam)annotation).value();
-            } else if(annotation instanceof QueryParam) {
-                return ((QueryParam)annotation).value();
-            } else if(annotation instanceof MatrixParam) {
-                return ((MatrixParam)annotation).value();
-            } else if(annotation instanceof FormParam) {
-                return ((FormParam)annotation).value();
+    /**
+     * 所有参数的名字 (The keys of @PathParam, @QueryParam, @MatrixParam and @FormParam)
+     */
+    private static Set<String> parameterNames(final Method method) {
+        final Set<String> names = new HashSet<>();
+        for (Annotation[] annotations : method.getParameterAnnotations()) {
+            final String key = ParameterBinder.getParameterKey(annotations);
+            if (null != key) {
+                names.add(key);
             }
         }
-        return null;
+        return Collections.unmodifiableSet(names);
     }
 
-    Map<String, String> parseQuery(String query) {
-        Map<String, String> params = new LinkedHashMap<String, String>();
-        String[] pair = query.split("&");
-        for(int i=0; i<pair.length; i++) {
-            String[] nv = pair[i].split("=");
-            params.put(nv[0], nv[1]);
-        }
-        return params;
+    List<Segment> getSegments() {
+        return Collections.unmodifiableList(Arrays.asList(segments));
     }
 
-    boolean matchQueryParam(String query, final Map<String, Object> args) throws UnsupportedEncodingException {
-        Class<?>[] paramTypes = method.getParameterTypes();
-        Annotation[][] annotations = method.getParameterAnnotations();
-        Map<String, String> params = parseQuery(query);
-        List<String> names = new ArrayList<String>();
-        for(int i=0; i<paramTypes.length; i++) {
-            String key = getParameterKey(annotations[i]);
-            if(null != key) {
-                names.add(key);
-                if(params.containsKey(key)) {
-                    String value = params.get(key);
-                    args.put(key, URLDecoder.decode(value, "UTF-8"));
-                }
-            }
+    /**
+     * 判断URI是否匹配，如下：<br/>
+     *  /u/{id} 与 /u/111111
+     *
+     * @param url
+     * @throws UnsupportedEncodingException
+     */
+    public boolean matchPattern(final String uri, final Map<String, Object> args) throws UnsupportedEncodingException {
+        final UriTokenizer tokens = new UriTokenizer(uri);
+        if (!matches(tokens)) {
+            return false;
         }
-        // Check validate parameter
-        Set<String> keys = params.keySet();
-        for(String key : keys) {
-            if(!names.contains(key)) {
-                return false;
-            }
+        if (null != args) {
+            extract(tokens, args);
         }
         return true;
     }
 
-    boolean matchPattern(final String patternSeg, final String uriSeg, final String delim, boolean validate, final Map<String, Object> args) throws UnsupportedEncodingException {
-        if (!patternSeg.contains("{")) {
-            // 不含”{...}“定型文字比较
-            //URI 'query?name1=value1&name2=value2&name3=value3'的情况下解析
-            boolean match =uriSeg.startsWith(patternSeg);
-            int pos = uriSeg.indexOf("?");
-            if(match && pos != -1) {
-                String query = uriSeg.substring(pos+1);
-                match = matchQueryParam(query, args);
-            }
-            return match;
-        }
-        //含”{arg : [regex]}“ 或是  ”{arg = [regex]}“文字比较
-        int pos = patternSeg.indexOf(delim);
-        if(pos >0 ) {
-            String argName = "";
-            String value = uriSeg;
-            if(delim.equals(":")) {
-                argName = patternSeg.substring(1, pos).trim();
-            } else if(delim.equals("=")) {
-                argName = patternSeg.substring(1, pos).trim();
-                value = uriSeg.substring(pos).trim();
-            }
-            String  regex = patternSeg.substring(pos+1, patternSeg.length()-1).trim();
-            if( Pattern.matches(regex, value) ) {
-                if(null != args) {
-                    args.put(argName, URLDecoder.decode(value, "UTF-8"));
-                }
-                return true;
-            } else {
-                return false;
-            }
-        }
-        //"name = value"文字型
-        if(validate) {
-            pos = uriSeg.indexOf("=");
-            String name = uriSeg.substring(0, pos);
-            String value = uriSeg.substring(pos+1);
-            if( patternSeg.substring(1, patternSeg.length()-1).equalsIgnoreCase(name) ) {
-                if(null != args) {
-                    args.put(name, URLDecoder.decode(value, "UTF-8"));
-                }
-                return true;
-            } else {
+    /**
+     * 判断HTTP访问的URI是否匹配，不生成参数 (No copy of the URI)
+     */
+    boolean validatePattern(final UriTokenizer uri, final String requestMethod) {
+        if(this.httpMethod != null) {
+            if(!this.httpMethod.equals(requestMethod)) {
                 return false;
             }
         }
-        if(null != args) {
-            args.put(patternSeg.substring(1, patternSeg.length() - 1), URLDecoder.decode(uriSeg, "UTF-8"));
+        if(!uri.source().startsWith(path)) {
+            return false;
         }
-        return true;
+        return matches(uri);
     }
 
-    boolean matchGroupPattern(final String[] patternSegs, final String[] uriSegs, final String delim, final Map<String, Object> args) throws UnsupportedEncodingException {
-        if(patternSegs.length < uriSegs.length) {
+    boolean matches(final UriTokenizer uri) {
+        final int count = uri.size();
+        if(segments.length < count) {
             return false;
         }
-        final int count = uriSegs.length;
         for (int i = 0; i < count; i++) {
-            if(!matchPattern(patternSegs[i], uriSegs[i], delim, true, args)) {
+            // URI每个节是否匹配
+            if(!segments[i].match(uri, i)) {
                 return false;
             }
         }
@@ -378,58 +487,355 @@ public class MethodPattern implements Comparable<MethodPattern>, RestServiceHand
     }
 
     /**
-     * 判断URI每个节是否匹配，如下：<br/>
-     *  /u/{id} 与 /u/111111
+     * 从已匹配的URI中取出参数 (Copy and decode the values after the URI matched)
+     */
+    void extract(final UriTokenizer uri, final Map<String, Object> args) throws UnsupportedEncodingException {
+        final int count = uri.size();
+        for (int i = 0; i < count; i++) {
+            segments[i].extract(uri, i, args);
+        }
+    }
+
+    /**
+     * 解析URI模板的一节 (Compile one segment of the route template)
      *
-     * @param patternSeg
-     * @param uriSeg
-     * @throws UnsupportedEncodingException
+     * @param segment The segment of pattern
+     * @param names The parameter names of method
+     * @return The segment matcher
+     */
+    static Segment compile(final String segment, final Set<String> names) {
+        //含”path?{arg1}&{arg2}“ 或是 ”path?{arg1=[regex1]}&{arg2=[regex2]}“
+        int pos = segment.indexOf('?');
+        if (pos > 0) {
+            return new Group(compile(segment.substring(0, pos), names), segment.substring(pos + 1), '&');
+        }
+        //含”path;{arg1=[regex1]};{arg2=[regex2]}“
+        pos = segment.indexOf(';');
+        if (pos > 0) {
+            return new Group(compile(segment.substring(0, pos), names), segment.substring(pos + 1), ';');
+        }
+        if (!segment.startsWith(PathPattern.PREFIX)) {
+            // 不含”{...}“定型文字
+            return new Literal(segment, names);
+        }
+        //含”{arg : [regex]}“ 或是 ”{arg}“
+        final String inner = segment.substring(1, segment.length() - 1);
+        pos = inner.indexOf(':');
+        if (pos > 0) {
+            return new Capture(inner.substring(0, pos).trim(), Pattern.compile(inner.substring(pos + 1).trim()));
+        }
+        return new Capture(inner.trim(), null);
+    }
+
+    /**
+     * URI模板一节的匹配器 (Immutable matcher of one segment of the route template)
+     * <p>
+     * Matching only reads the regions of {@link UriTokenizer}, the values are copied
+     * by {@link #extract(UriTokenizer, int, Map)} after the whole route has matched.
      */
-    boolean matchPattern(final String patternSeg, final String uriSeg, final Map<String, Object> args) throws UnsupportedEncodingException {
-        //含”path?{arg1}&{arg2}“ 或是 ”path?{arg1=[regex1]}&{arg2=[regex2]}“文字比较
-        int pos = patternSeg.indexOf("?");
-        if(pos >0) {
-            if(uriSeg.indexOf("?")  != pos) {
+    abstract static class Segment {
+        /**
+         * @param uri The tokenized request URI
+         * @param index The index of URI segment
+         * @return true if the segment key, without query or matrix parameters, matched
+         */
+        abstract boolean matchKey(UriTokenizer uri, int index);
+
+        /**
+         * @param uri The tokenized request URI
+         * @param index The index of URI segment
+         * @return true if the segment matched
+         */
+        boolean match(UriTokenizer uri, int index) {
+            return matchKey(uri, index);
+        }
+
+        /**
+         * Put the arguments of a matched segment.
+         */
+        void extract(UriTokenizer uri, int index, Map<String, Object> args) throws UnsupportedEncodingException {
+        }
+
+        /**
+         * @param uriSeg One segment of request URI
+         * @param args The map of parsed arguments, may be null
+         * @return true if the segment matched
+         */
+        final boolean match(final String uriSeg, final Map<String, Object> args) throws UnsupportedEncodingException {
+            final UriTokenizer uri = new UriTokenizer(uriSeg);
+            if (uri.size() != 1 || !match(uri, 0)) {
                 return false;
             }
-            pos++;
-            return matchGroupPattern(patternSeg.substring(pos).split("&"), uriSeg.substring(pos).split("&"), "=", args);
+            if (null != args) {
+                extract(uri, 0, args);
+            }
+            return true;
         }
-        //含”path;{arg1=[regex1]};{arg2=[regex2]}“文字比较
-        pos = patternSeg.indexOf(";");
-        if(pos >0) {
-            pos++;
-            int p = uriSeg.indexOf(";") + 1;
-            return matchGroupPattern(patternSeg.substring(pos).split(";"), uriSeg.substring(p).split(";"), "=", args);
+
+        /** @return The literal text of this segment, or null */
+        String literal() {
+            return null;
         }
 
-        // 不含”{...}“定型文字比较
-        //含”{arg : [regex]}“文字比较
-        return matchPattern(patternSeg, uriSeg, ":", false, args);
+        /** @return The precompiled regex of this segment, or null */
+        Pattern regex() {
+            return null;
+        }
     }
 
     /**
-     * 判断URI是否匹配，如下：<br/>
-     *  /u/{id} 与 /u/111111
-     *
-     * @param url
-     * @throws UnsupportedEncodingException
+     * 线程内复用的正则匹配器 (The matcher is reset on the region of URI, never allocated per request)
      */
-    public boolean matchPattern(final String uri, final Map<String, Object> args) throws UnsupportedEncodingException {
-        final String[] patternSegs = pattern.split("/");
-        final String[] uriSegs = uri.split("/");
+    static final class Regex {
+        private final Pattern pattern;
+        private final ThreadLocal<Matcher> matcher;
 
-        if(patternSegs.length < uriSegs.length) {
-            return false;
+        Regex(Pattern pattern) {
+            this.pattern = pattern;
+            this.matcher = ThreadLocal.withInitial(() -> pattern.matcher(""));
         }
-        final int count = uriSegs.length;
-        for (int i = 0; i < count; i++) {
-            // URI每个节是否匹配
-            if(!matchPattern(patternSegs[i], uriSegs[i], args)) {
+
+        boolean matches(final UriTokenizer uri, final int from, final int to) {
+            return matcher.get().reset(uri.source()).region(from, to).matches();
+        }
+
+        @Override
+        public String toString() {
+            return pattern.pattern();
+        }
+    }
+
+    /**
+     * 定型文字 'path' 或是 'path?name1=value1&amp;name2=value2'
+     */
+    static final class Literal extends Segment {
+        private final String text;
+        private final String[] names;
+
+        Literal(String text, Set<String> names) {
+            this.text = text;
+            this.names = names.toArray(new String[names.size()]);
+        }
+
+        @Override
+        boolean matchKey(final UriTokenizer uri, final int index) {
+            return uri.keyEquals(index, text);
+        }
+
+        @Override
+        boolean match(final UriTokenizer uri, final int index) {
+            if (!uri.keyEquals(index, text)) {
                 return false;
             }
+            if (!uri.hasQuery(index)) {
+                return true;
+            }
+            //URI 'query?name1=value1&name2=value2&name3=value3'的情况下检查参数名
+            final int count = uri.paramCount();
+            for (int p = 0; p < count; p++) {
+                if (null == name(uri, uri.paramNameStart(p), uri.paramNameEnd(p))) {
+                    // Check validate parameter
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        void extract(final UriTokenizer uri, final int index, final Map<String, Object> args) throws UnsupportedEncodingException {
+            if (!uri.hasQuery(index)) {
+                return;
+            }
+            final int count = uri.paramCount();
+            for (int p = 0; p < count; p++) {
+                if (uri.paramHasValue(p)) {
+                    args.put(name(uri, uri.paramNameStart(p), uri.paramNameEnd(p)),
+                            uri.value(uri.paramValueStart(p), uri.paramValueEnd(p)));
+                }
+            }
+        }
+
+        private String name(final UriTokenizer uri, final int from, final int to) {
+            for (String name : names) {
+                if (uri.regionEquals(from, to, name)) {
+                    return name;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        String literal() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * 变量 '{arg}' 或是 '{arg : [regex]}'
+     */
+    static final class Capture extends Segment {
+        private final String name;
+        private final Pattern regex;
+        private final Regex matcher;
+
+        Capture(String name, Pattern regex) {
+            this.name = name;
+            this.regex = regex;
+            this.matcher = regex == null ? null : new Regex(regex);
+        }
+
+        @Override
+        boolean matchKey(final UriTokenizer uri, final int index) {
+            return matcher == null || matcher.matches(uri, uri.start(index), uri.keyEnd(index));
+        }
+
+        @Override
+        void extract(final UriTokenizer uri, final int index, final Map<String, Object> args) throws UnsupportedEncodingException {
+            args.put(name, uri.value(uri.start(index), uri.keyEnd(index)));
+        }
+
+        @Override
+        Pattern regex() {
+            return regex;
+        }
+
+        @Override
+        public String toString() {
+            return regex == null ? "{" + name + "}" : "{" + name + " : " + regex.pattern() + "}";
+        }
+    }
+
+    /**
+     * 参数组 'path?{arg1}&amp;{arg2=[regex2]}' 或是 'path;{arg1};{arg2=[regex2]}'
+     * <p>
+     * The query parameters are looked up by name in any order. Every parameter of request
+     * must be declared, a declared parameter may be omitted. A parameter without value is
+     * checked as an empty string and is not put into the arguments.
+     * The matrix parameters are matched in the declared order.
+     */
+    static final class Group extends Segment {
+        private final Segment head;
+        private final char delim;
+        private final String[] names;
+        private final int[] hashes;
+        private final Regex[] regexes;
+
+        Group(Segment head, String group, char delim) {
+            this.head = head;
+            this.delim = delim;
+            final String[] params = group.split(delim == '&' ? "&" : ";");
+            this.names = new String[params.length];
+            this.hashes = new int[params.length];
+            this.regexes = new Regex[params.length];
+            for (int i = 0; i < params.length; i++) {
+                String param = params[i];
+                if (param.startsWith(PathPattern.PREFIX)) {
+                    param = param.substring(1, param.length() - 1);
+                }
+                final int pos = param.indexOf('=');
+                if (pos > 0) {
+                    names[i] = param.substring(0, pos).trim();
+                    regexes[i] = new Regex(Pattern.compile(param.substring(pos + 1).trim()));
+                } else {
+                    names[i] = param.trim();
+                }
+                hashes[i] = UriTokenizer.hash(names[i], 0, names[i].length());
+            }
+        }
+
+        @Override
+        boolean matchKey(final UriTokenizer uri, final int index) {
+            return head.matchKey(uri, index);
+        }
+
+        @Override
+        boolean match(final UriTokenizer uri, final int index) {
+            if (!(delim == '&' ? uri.hasQuery(index) : uri.hasMatrix(index)) || !head.matchKey(uri, index)) {
+                return false;
+            }
+            if (delim == '&') {
+                return matchQuery(uri);
+            }
+            final int end = end(uri, index);
+            int i = 0;
+            for (int from = start(uri, index); from < end; i++) {
+                final int to = uri.indexOf(delim, from, end);
+                final int eq = uri.indexOf('=', from, to);
+                if (i >= names.length || eq == to || !uri.regionEquals(from, eq, names[i])) {
+                    return false;
+                }
+                if (regexes[i] != null && !regexes[i].matches(uri, eq + 1, to)) {
+                    return false;
+                }
+                from = to + 1;
+            }
+            return true;
+        }
+
+        private boolean matchQuery(final UriTokenizer uri) {
+            int declared = 0;
+            for (int i = 0; i < names.length; i++) {
+                final int p = uri.findParam(names[i], hashes[i]);
+                if (p < 0) {
+                    continue;
+                }
+                declared++;
+                if (regexes[i] != null && !regexes[i].matches(uri, uri.paramValueStart(p), uri.paramValueEnd(p))) {
+                    return false;
+                }
+            }
+            // Unknown parameter
+            return declared == uri.paramCount();
+        }
+
+        @Override
+        void extract(final UriTokenizer uri, final int index, final Map<String, Object> args) throws UnsupportedEncodingException {
+            if (delim == '&') {
+                for (int i = 0; i < names.length; i++) {
+                    final int p = uri.findParam(names[i], hashes[i]);
+                    if (p >= 0 && uri.paramHasValue(p)) {
+                        args.put(names[i], uri.value(uri.paramValueStart(p), uri.paramValueEnd(p)));
+                    }
+                }
+                return;
+            }
+            final int end = end(uri, index);
+            int i = 0;
+            for (int from = start(uri, index); from < end; i++) {
+                final int to = uri.indexOf(delim, from, end);
+                final int eq = uri.indexOf('=', from, to);
+                args.put(names[i], uri.value(eq + 1, to));
+                from = to + 1;
+            }
+        }
+
+        private int start(final UriTokenizer uri, final int index) {
+            return uri.keyEnd(index) + 1;
+        }
+
+        private int end(final UriTokenizer uri, final int index) {
+            return uri.end(index);
+        }
+
+        @Override
+        String literal() {
+            return head.literal();
+        }
+
+        @Override
+        Pattern regex() {
+            return head.regex();
+        }
+
+        @Override
+        public String toString() {
+            return head.toString() + (delim == '&' ? '?' : ';') + String.join(String.valueOf(delim), names);
         }
-        return true;
     }
 
     @Override
@@ -446,7 +852,7 @@ public class MethodPattern implements Comparable<MethodPattern>, RestServiceHand
         if (serviceClass != null) {
             name = serviceClass.getSimpleName();
         } else {
-            name = service.getClass().getSimpleName();
+            name = method.getDeclaringClass().getSimpleName();
         }
         return String.format("%s.%s", name, method.getName());
     }
@@ -0,0 +1,299 @@
+package net.tiny.ws.rs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import javax.ws.rs.core.MediaType;
+
+import net.tiny.ws.Constants.MIME_TYPE;
+
+/**
+ * 内容协商 (Content negotiation of one route, by the 'Accept' header with q-values)
+ * <p>
+ * The media types of @Produces are parsed once when the route is built. The 'Accept' header
+ * is parsed at the first request with its value, the chosen response writer is cached per header value,
+ * so the same header of the next requests is only one lookup.
+ */
+final class Negotiation {
+
+    private static final Logger LOGGER = Logger.getLogger(Negotiation.class.getName());
+
+    /** The maximum count of cached 'Accept' header values per route */
+    static final int MAX_CACHED = 256;
+    private static final String ANY = "*";
+    private static final Range[] ACCEPT_ALL = { new Range(ANY, ANY, 1000) };
+
+    /**
+     * 协商结果 (The response writers acceptable by the client)
+     */
+    static final class Choice {
+        /** The best media type */
+        final String type;
+        /** text/html can be rendered */
+        final boolean html;
+        /** application/json or '+json' can be written */
+        final boolean json;
+        /** application/x-ndjson can be written, one JSON value per line */
+        final boolean ndjson;
+        /** The mime type of a binary response */
+        final MIME_TYPE binary;
+
+        Choice(final String type, final boolean html, final boolean json, final boolean ndjson, final MIME_TYPE binary) {
+            this.type = type;
+            this.html = html;
+            this.json = json;
+            this.ndjson = ndjson;
+            this.binary = binary;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s html:%s json:%s ndjson:%s binary:%s", type, html, json, ndjson, binary);
+        }
+    }
+
+    /**
+     * A media type of @Produces, or a media range of 'Accept'
+     */
+    static final class Range {
+        final String type;
+        final String subtype;
+        /** The quality in thousandths */
+        final int quality;
+
+        Range(final String type, final String subtype, final int quality) {
+            this.type = type;
+            this.subtype = subtype;
+            this.quality = quality;
+        }
+
+        boolean isJson() {
+            return "json".equals(subtype) || subtype.endsWith("+json");
+        }
+
+        boolean isHtml() {
+            return "text".equals(type) && "html".equals(subtype);
+        }
+
+        boolean isNdjson() {
+            return "x-ndjson".equals(subtype) || "ndjson".equals(subtype);
+        }
+
+        /**
+         * @return The specificity of this range if it includes the media type, or -1
+         */
+        int includes(final Range produced) {
+            if (ANY.equals(type)) {
+                return 0;
+            }
+            if (!type.equals(produced.type)) {
+                return -1;
+            }
+            if (ANY.equals(subtype)) {
+                return 1;
+            }
+            return subtype.equals(produced.subtype) ? 2 : -1;
+        }
+
+        @Override
+        public String toString() {
+            return type + "/" + subtype;
+        }
+    }
+
+    private final Range[] produces;
+    private final MIME_TYPE[] binaries;
+    private final ConcurrentHashMap<String, Choice> cache = new ConcurrentHashMap<>();
+    private final Choice any;
+
+    /**
+     * @param mediaTypes The media types of @Produces
+     */
+    Negotiation(final String[] mediaTypes) {
+        final List<Range> list = new ArrayList<>();
+        if (null != mediaTypes) {
+            for (String mediaType : mediaTypes) {
+                if (null != mediaType) {
+                    parse(mediaType, list);
+                }
+            }
+        }
+        if (list.isEmpty()) {
+            list.add(new Range("application", "json", 1000));
+        }
+        this.produces = list.toArray(new Range[list.size()]);
+        this.binaries = new MIME_TYPE[produces.length];
+        for (int i = 0; i < produces.length; i++) {
+            binaries[i] = mimeType(produces[i]);
+        }
+        this.any = choose(ACCEPT_ALL);
+    }
+
+    /**
+     * @param accept The value of 'Accept' header
+     * @return The acceptable response writers, null if none is acceptable
+     */
+    Choice negotiate(final String accept) {
+        if (null == accept || accept.isEmpty() || "*/*".equals(accept)) {
+            return any;
+        }
+        Choice choice = cache.get(accept);
+        if (null == choice) {
+            final List<Range> ranges = new ArrayList<>();
+            parse(accept, ranges);
+            choice = ranges.isEmpty() ? any : choose(ranges.toArray(new Range[ranges.size()]));
+            if (null == choice) {
+                return null;
+            }
+            if (cache.size() < MAX_CACHED) {
+                cache.putIfAbsent(accept, choice);
+            }
+        }
+        return choice;
+    }
+
+    /**
+     * The quality of each produced type is of the most specific range includes it,
+     * all produced types with the best quality are acceptable.
+     */
+    private Choice choose(final Range[] accepts) {
+        int best = 0;
+        final int[] qualities = new int[produces.length];
+        for (int i = 0; i < produces.length; i++) {
+            int specificity = -1;
+            int quality = 0;
+            for (Range range : accepts) {
+                final int s = range.includes(produces[i]);
+                if (s > specificity) {
+                    specificity = s;
+                    quality = range.quality;
+                }
+            }
+            qualities[i] = quality;
+            best = Math.max(best, quality);
+        }
+        if (best <= 0) {
+            return null;
+        }
+        String type = null;
+        boolean html = false;
+        boolean json = false;
+        boolean ndjson = false;
+        MIME_TYPE binary = null;
+        for (int i = 0; i < produces.length; i++) {
+            if (qualities[i] != best) {
+                continue;
+            }
+            if (null == type) {
+                type = produces[i].toString();
+            }
+            if (produces[i].isHtml()) {
+                html = true;
+            } else if (produces[i].isJson()) {
+                json = true;
+            } else if (produces[i].isNdjson()) {
+                ndjson = true;
+            } else if (null == binary) {
+                binary = binaries[i];
+            }
+        }
+        return new Choice(type, html, json, ndjson, null != binary ? binary : MIME_TYPE.TXT);
+    }
+
+    /**
+     * Parse the media types separated by comma, the parameters except 'q' are ignored
+     */
+    static void parse(final String value, final List<Range> ranges) {
+        final int length = value.length();
+        int start = 0;
+        while (start < length) {
+            int end = value.indexOf(',', start);
+            if (end < 0) {
+                end = length;
+            }
+            final Range range = range(value, start, end);
+            if (null != range) {
+                ranges.add(range);
+            }
+            start = end + 1;
+        }
+    }
+
+    private static Range range(final String value, final int from, final int to) {
+        int semicolon = value.indexOf(';', from);
+        if (semicolon < 0 || semicolon > to) {
+            semicolon = to;
+        }
+        final String mediaType = value.substring(from, semicolon).trim().toLowerCase(Locale.ROOT);
+        final int slash = mediaType.indexOf('/');
+        if (slash <= 0 || slash == mediaType.length() - 1) {
+            // '*' is sent by some old clients as '*/*'
+            return ANY.equals(mediaType) ? new Range(ANY, ANY, quality(value, semicolon, to)) : null;
+        }
+        final String type = mediaType.substring(0, slash);
+        final String subtype = mediaType.substring(slash + 1);
+        if (ANY.equals(type) && !ANY.equals(subtype)) {
+            return null;
+        }
+        return new Range(type, subtype, quality(value, semicolon, to));
+    }
+
+    /**
+     * @return The value of 'q' parameter in thousandths, 1000 if absent or invalid
+     */
+    private static int quality(final String value, final int from, final int to) {
+        int index = from;
+        while (index < to) {
+            int next = value.indexOf(';', index + 1);
+            if (next < 0 || next > to) {
+                next = to;
+            }
+            final String param = value.substring(index + 1, next).trim();
+            if (param.length() > 1 && (param.charAt(0) == 'q' || param.charAt(0) == 'Q')) {
+                final int eq = param.indexOf('=');
+                if (eq > 0 && param.substring(1, eq).trim().isEmpty()) {
+                    try {
+                        final double q = Double.parseDouble(param.substring(eq + 1).trim());
+                        if (q >= 0d && q <= 1d) {
+                            return (int)Math.round(q * 1000d);
+                        }
+                    } catch (NumberFormatException e) {
+                        // Invalid quality is same as absent
+                    }
+                }
+            }
+            index = next;
+        }
+        return 1000;
+    }
+
+    private static MIME_TYPE mimeType(final Range range) {
+        final String type = range.toString();
+        if (MediaType.APPLICATION_OCTET_STREAM.equals(type)) {
+            return MIME_TYPE.DAT;
+        } else if (MediaType.TEXT_PLAIN.equals(type)) {
+            return MIME_TYPE.TXT;
+        } else if (MediaType.APPLICATION_XML.equals(type)) {
+            return MIME_TYPE.XML;
+        } else if (MediaType.APPLICATION_SVG_XML.equals(type)) {
+            return MIME_TYPE.SVG;
+        } else if (range.isJson() || range.isNdjson()) {
+            return MIME_TYPE.JSON;
+        } else if (range.isHtml()) {
+            return MIME_TYPE.HTML;
+        }
+        try {
+            return MIME_TYPE.valueOf(range.subtype.toUpperCase(Locale.ROOT));
+        } catch (RuntimeException e) {
+            LOGGER.warning(String.format("[REST] - Unknow mime type '%s'", type));
+            return MIME_TYPE.TXT;
+        }
+    }
+
+    int cached() {
+        return cache.size();
+    }
+}
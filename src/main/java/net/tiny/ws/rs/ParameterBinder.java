@@ -0,0 +1,285 @@
+package net.tiny.ws.rs;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import javax.ws.rs.BeanParam;
+import javax.ws.rs.CookieParam;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.FormParam;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.MatrixParam;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import net.tiny.config.Converter;
+import net.tiny.config.JsonParser;
+import net.tiny.ws.BaseWebService;
+
+/**
+ * REST方法参数的绑定器 (Precompiled binder of one method parameter)
+ * <p>
+ * The binders of a method are compiled once by {@link #compile(Method)}. Each binder knows
+ * the source of its value, @PathParam, @QueryParam, @MatrixParam and @FormParam from the parsed arguments,
+ * or @HeaderParam, @CookieParam, @BeanParam and @Context from the exchange, and the type of parameter.
+ * The value of @DefaultValue is converted in advance when the converted value is immutable.
+ * The values of primitive, UUID, enum and java.time types are parsed by a {@link ParameterParser}
+ * chosen at compile time, the other types are converted by {@link Converter}.
+ */
+abstract class ParameterBinder {
+
+    static final Converter CONVERTER = new Converter();
+    private static final ParameterBinder NONE = new ParameterBinder() {
+        @Override
+        Object bind(HttpExchange he, Map<String, Object> args, byte[] contents, RestServiceHandler.Listener listener) {
+            return null;
+        }
+    };
+
+    /**
+     * @param he The HTTP exchange
+     * @param args The parsed arguments of URI and form
+     * @param contents The request body, may be null
+     * @param listener The listener of parameters, may be null
+     * @return The value of parameter
+     */
+    abstract Object bind(HttpExchange he, Map<String, Object> args, byte[] contents, RestServiceHandler.Listener listener);
+
+    /**
+     * @return true if the value is bound from the URI or the body only, not from the headers or the client
+     */
+    boolean isCacheable() {
+        return true;
+    }
+
+    /**
+     * 编译方法所有参数的绑定器
+     *
+     * @param method The resource method
+     * @return The binders in the order of parameters
+     */
+    static ParameterBinder[] compile(final Method method) {
+        final Class<?>[] paramTypes = method.getParameterTypes();
+        final Annotation[][] annotations = method.getParameterAnnotations();
+        final ParameterBinder[] binders = new ParameterBinder[paramTypes.length];
+        for (int i = 0; i < binders.length; i++) {
+            binders[i] = compile(annotations[i], paramTypes[i]);
+        }
+        return binders;
+    }
+
+    static ParameterBinder compile(final Annotation[] annotations, final Class<?> paramType) {
+        final String key = getParameterKey(annotations);
+        if (null != key) {
+            String defaultValue = null;
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof DefaultValue) {
+                    defaultValue = ((DefaultValue)annotation).value();
+                }
+            }
+            return new Argument(key, paramType, defaultValue);
+        }
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof HeaderParam) {
+                return new Header(((HeaderParam)annotation).value(), paramType);
+            } else if (annotation instanceof CookieParam) {
+                return new Cookie(((CookieParam)annotation).value());
+            } else if (annotation instanceof BeanParam) {
+                return new Bean(paramType);
+            } else if (annotation instanceof Context) {
+                return new ClientContext(paramType);
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * 注解的参数名
+     */
+    static String getParameterKey(final Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof PathParam) {
+                return ((PathParam)annotation).value();
+            } else if (annotation instanceof QueryParam) {
+                return ((QueryParam)annotation).value();
+            } else if (annotation instanceof MatrixParam) {
+                return ((MatrixParam)annotation).value();
+            } else if (annotation instanceof FormParam) {
+                return ((FormParam)annotation).value();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the converted value can be shared by all requests
+     */
+    static boolean immutable(final Class<?> type) {
+        return type.isPrimitive() || type.isEnum() || String.class == type || Boolean.class == type
+                || Character.class == type || Number.class.isAssignableFrom(type) && type.getName().startsWith("java.lang.");
+    }
+
+    static Object convert(final String value, final Class<?> type, final ParameterParser parser) {
+        return parser != null ? parser.parse(value) : CONVERTER.convert(value, type);
+    }
+
+    /**
+     * '@PathParam', '@QueryParam', '@MatrixParam' 或是 '@FormParam'
+     */
+    static final class Argument extends ParameterBinder {
+        private final String key;
+        private final Class<?> paramType;
+        private final ParameterParser parser;
+        private final boolean array;
+        private final String defaultValue;
+        private final Object converted;
+
+        Argument(String key, Class<?> paramType, String defaultValue) {
+            this.key = key;
+            this.paramType = paramType;
+            this.parser = ParameterParser.of(paramType);
+            this.array = paramType.isArray();
+            this.defaultValue = defaultValue;
+            Object value = null;
+            if (null != defaultValue && immutable(paramType)) {
+                try {
+                    value = convert(defaultValue, paramType, parser);
+                } catch (RuntimeException e) {
+                    // Convert it on each request, the same error as before
+                }
+            }
+            this.converted = value;
+        }
+
+        @Override
+        Object bind(HttpExchange he, Map<String, Object> args, byte[] contents, RestServiceHandler.Listener listener) {
+            Object value = args.get(key);
+            if (value != null && !array && value.getClass().isArray()) {
+                value = Array.get(value, 0);
+            }
+            if (value != null && !paramType.isInstance(value)) {
+                value = parser != null && value instanceof CharSequence
+                        ? parser.parse((CharSequence)value)
+                        : CONVERTER.convert(value.toString(), paramType);
+            }
+            if (value == null && defaultValue != null) {
+                // Set default value  see @DefaultValue
+                value = converted != null ? converted : convert(defaultValue, paramType, parser);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * '@HeaderParam'
+     */
+    static final class Header extends ParameterBinder {
+        private final String key;
+        private final Class<?> paramType;
+        private final ParameterParser parser;
+
+        Header(String key, Class<?> paramType) {
+            this.key = key;
+            this.paramType = paramType;
+            this.parser = ParameterParser.of(paramType);
+        }
+
+        @Override
+        Object bind(HttpExchange he, Map<String, Object> args, byte[] contents, RestServiceHandler.Listener listener) {
+            final String value = he.getRequestHeaders().getFirst(key);
+            if (value != null && !paramType.isInstance(value)) {
+                return convert(value, paramType, parser);
+            }
+            if (listener != null) {
+                listener.param("@HeaderParam", key, value);
+            }
+            return value;
+        }
+
+        @Override
+        boolean isCacheable() {
+            return false;
+        }
+    }
+
+    /**
+     * '@CookieParam'
+     */
+    static final class Cookie extends ParameterBinder {
+        private final String key;
+
+        Cookie(String key) {
+            this.key = key;
+        }
+
+        @Override
+        Object bind(HttpExchange he, Map<String, Object> args, byte[] contents, RestServiceHandler.Listener listener) {
+            final String value = RestServiceFactory.findCookie(he, key, true);
+            if (listener != null) {
+                listener.param("@CookieParam", key, value);
+            }
+            return value;
+        }
+
+        @Override
+        boolean isCacheable() {
+            return false;
+        }
+    }
+
+    /**
+     * '@BeanParam' 请求内容的JSON
+     */
+    static final class Bean extends ParameterBinder {
+        private final Class<?> paramType;
+
+        Bean(Class<?> paramType) {
+            this.paramType = paramType;
+        }
+
+        @Override
+        Object bind(HttpExchange he, Map<String, Object> args, byte[] contents, RestServiceHandler.Listener listener) {
+            if (null == contents || contents.length == 0) {
+                if (listener != null) {
+                    listener.param("@BeanParam", paramType.getSimpleName(), "null");
+                }
+                return null;
+            }
+            final String json = new String(contents);
+            if (listener != null) {
+                listener.param("@BeanParam", paramType.getSimpleName(), json);
+            }
+            return JsonParser.unmarshal(json, paramType);
+        }
+    }
+
+    /**
+     * '@Context' 客户端地址
+     */
+    static final class ClientContext extends ParameterBinder {
+        private final Class<?> paramType;
+
+        ClientContext(Class<?> paramType) {
+            this.paramType = paramType;
+        }
+
+        @Override
+        Object bind(HttpExchange he, Map<String, Object> args, byte[] contents, RestServiceHandler.Listener listener) {
+            final Object address = BaseWebService.getClientAddress(he, paramType);
+            if (listener != null) {
+                listener.param("@Context", paramType.getSimpleName(), address.toString());
+            }
+            return address;
+        }
+
+        @Override
+        boolean isCacheable() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package net.tiny.ws.rs;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 参数类型专用的解析器 (Parser of a parameter type, reads the characters of a value directly)
+ * <p>
+ * The integral numbers, booleans and UUIDs are parsed from the characters without any
+ * intermediate string. The other types are parsed by their own <code>parse(CharSequence)</code>
+ * or <code>valueOf(String)</code>, the enums by a precomputed map of constant names.
+ * {@link #of(Class)} returns null for an unknown type, then the {@link net.tiny.config.Converter} is used.
+ */
+@FunctionalInterface
+interface ParameterParser {
+
+    /**
+     * @param text The value of parameter
+     * @return The parsed value
+     * @throws IllegalArgumentException if the value is illegal for the type
+     */
+    Object parse(CharSequence text);
+
+    /**
+     * @param type The type of parameter
+     * @return The parser of type, or null if not supported
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static ParameterParser of(final Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return text -> Integer.valueOf((int)parseLong(text, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        } else if (type == long.class || type == Long.class) {
+            return text -> Long.valueOf(parseLong(text, Long.MIN_VALUE, Long.MAX_VALUE));
+        } else if (type == short.class || type == Short.class) {
+            return text -> Short.valueOf((short)parseLong(text, Short.MIN_VALUE, Short.MAX_VALUE));
+        } else if (type == byte.class || type == Byte.class) {
+            return text -> Byte.valueOf((byte)parseLong(text, Byte.MIN_VALUE, Byte.MAX_VALUE));
+        } else if (type == double.class || type == Double.class) {
+            return text -> Double.valueOf(text.toString());
+        } else if (type == float.class || type == Float.class) {
+            return text -> Float.valueOf(text.toString());
+        } else if (type == boolean.class || type == Boolean.class) {
+            return text -> Boolean.valueOf(parseBoolean(text));
+        } else if (type == UUID.class) {
+            return ParameterParser::parseUuid;
+        } else if (type == BigDecimal.class) {
+            return text -> new BigDecimal(text.toString());
+        } else if (type == BigInteger.class) {
+            return text -> new BigInteger(text.toString());
+        } else if (type == LocalDate.class) {
+            return LocalDate::parse;
+        } else if (type == LocalTime.class) {
+            return LocalTime::parse;
+        } else if (type == LocalDateTime.class) {
+            return LocalDateTime::parse;
+        } else if (type == OffsetDateTime.class) {
+            return OffsetDateTime::parse;
+        } else if (type == ZonedDateTime.class) {
+            return ZonedDateTime::parse;
+        } else if (type == Instant.class) {
+            return Instant::parse;
+        } else if (type == Duration.class) {
+            return Duration::parse;
+        } else if (type.isEnum()) {
+            final Map<String, Object> constants = new HashMap<>();
+            for (Object constant : type.getEnumConstants()) {
+                constants.put(((Enum<?>)constant).name(), constant);
+            }
+            return text -> {
+                final String name = text.toString();
+                final Object constant = constants.get(name);
+                return constant != null ? constant : Enum.valueOf((Class<Enum>)type, name);
+            };
+        }
+        return null;
+    }
+
+    /**
+     * 十进制整数的解析，同{@link Long#parseLong(String)}
+     */
+    static long parseLong(final CharSequence text, final long min, final long max) {
+        final int length = text.length();
+        if (length == 0) {
+            throw new NumberFormatException("For input string: \"\"");
+        }
+        int i = 0;
+        final char first = text.charAt(i);
+        final boolean negative = first == '-';
+        if (negative || first == '+') {
+            if (++i == length) {
+                throw new NumberFormatException("For input string: \"" + text + "\"");
+            }
+        }
+        // Accumulate negatively, the same as JDK, to reach Long.MIN_VALUE
+        final long limit = negative ? min : -max;
+        long result = 0L;
+        for (; i < length; i++) {
+            final int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < (limit + digit) / 10) {
+                throw new NumberFormatException("For input string: \"" + text + "\"");
+            }
+            result = result * 10 - digit;
+            if (result < limit) {
+                throw new NumberFormatException("For input string: \"" + text + "\"");
+            }
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * 同{@link Boolean#parseBoolean(String)}，'true'以外都是false
+     */
+    static boolean parseBoolean(final CharSequence text) {
+        if (text.length() != 4) {
+            return false;
+        }
+        return (text.charAt(0) | 0x20) == 't' && (text.charAt(1) | 0x20) == 'r'
+                && (text.charAt(2) | 0x20) == 'u' && (text.charAt(3) | 0x20) == 'e';
+    }
+
+    /**
+     * 'xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx' 格式的UUID
+     */
+    static UUID parseUuid(final CharSequence text) {
+        if (text.length() != 36 || text.charAt(8) != '-' || text.charAt(13) != '-'
+                || text.charAt(18) != '-' || text.charAt(23) != '-') {
+            return UUID.fromString(text.toString());
+        }
+        final long msb = (hex(text, 0, 8) << 32)
+                | (hex(text, 9, 13) << 16)
+                | hex(text, 14, 18);
+        final long lsb = (hex(text, 19, 23) << 48)
+                | hex(text, 24, 36);
+        return new UUID(msb, lsb);
+    }
+
+    static long hex(final CharSequence text, final int from, final int to) {
+        long value = 0L;
+        for (int i = from; i < to; i++) {
+            final int digit = Character.digit(text.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid UUID string: " + text);
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+}
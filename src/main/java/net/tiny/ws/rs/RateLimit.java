@@ -0,0 +1,32 @@
+package net.tiny.ws.rs;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotation to limit the request rate of a REST method by a token bucket
+ * <p>
+ * Over the rate, the requests are rejected with 429 Too Many Requests,
+ * a 'Retry-After' header and the 'RateLimit-*' headers.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimit {
+
+    /** The count of permits in one period */
+    public int value();
+
+    /** The period of permits */
+    public long period() default 1L;
+
+    public TimeUnit unit() default TimeUnit.SECONDS;
+
+    /** The maximum count of requests in a burst, 0 is same as {@link #value()} */
+    public int burst() default 0;
+
+    /** true to limit each client address separately */
+    public boolean perClient() default false;
+}
@@ -0,0 +1,264 @@
+package net.tiny.ws.rs;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 路由的请求速率限制 (Token buckets of one route, lock-free and striped)
+ * <p>
+ * Each bucket keeps only the time its tokens are refilled (GCRA), a permit is taken by one CAS.
+ * The bucket of route is split into stripes chosen by the calling thread, a stripe without tokens
+ * borrows from the others, so the total rate is kept and the workers do not contend on one counter.
+ * With perClient, each client address has its own bucket, the idle buckets are evicted over {@link #MAX_CLIENTS}.
+ * When no bucket is idle, the least recently used buckets are evicted, and the clients over the limit
+ * share one bucket while another thread is evicting, so the count of buckets stays at the limit.
+ */
+final class RateLimiter {
+
+    static final int MAX_CLIENTS = 10000;
+    /** The count of least recently used buckets evicted at once */
+    static final int EVICTIONS = MAX_CLIENTS / 16;
+
+    private final int permits;
+    private final int burst;
+    private final Bucket[] stripes;
+    private final long interval;
+    private final ConcurrentHashMap<String, Bucket> clients;
+    private final Bucket shared;
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param permits The count of permits in one period
+     * @param period The period of permits
+     * @param unit The unit of period
+     * @param burst The maximum count of requests in a burst, 0 is same as permits
+     * @param perClient true to limit each client address separately
+     */
+    RateLimiter(final int permits, final long period, final TimeUnit unit, final int burst, final boolean perClient) {
+        if (permits <= 0 || period <= 0L) {
+            throw new IllegalArgumentException(String.format("The rate must be positive - %d/%d%s", permits, period, unit));
+        }
+        this.permits = permits;
+        this.burst = burst > 0 ? burst : permits;
+        this.interval = Math.max(1L, unit.toNanos(period) / permits);
+        if (perClient) {
+            this.clients = new ConcurrentHashMap<>();
+            this.shared = new Bucket(interval, this.burst, System.nanoTime());
+            this.stripes = null;
+        } else {
+            this.clients = null;
+            this.shared = null;
+            // A power of two not over the CPUs, each stripe holds one token at least
+            int count = Integer.highestOneBit(Math.min(Runtime.getRuntime().availableProcessors(), this.burst));
+            this.stripes = new Bucket[count];
+            final long now = System.nanoTime();
+            // The remainder of burst is spread over the first stripes, the total is same as burst
+            final int remainder = this.burst % count;
+            for (int i = 0; i < count; i++) {
+                stripes[i] = new Bucket(interval * count, this.burst / count + (i < remainder ? 1 : 0), now);
+            }
+        }
+    }
+
+    static RateLimiter of(final RateLimit rateLimit) {
+        return new RateLimiter(rateLimit.value(), rateLimit.period(), rateLimit.unit(),
+                rateLimit.burst(), rateLimit.perClient());
+    }
+
+    /**
+     * @return true if this limiter was created by the same settings
+     */
+    boolean matches(final int permits, final long period, final TimeUnit unit, final int burst, final boolean perClient) {
+        return this.permits == permits && this.burst == (burst > 0 ? burst : permits)
+                && this.interval == Math.max(1L, unit.toNanos(period) / permits) && isPerClient() == perClient;
+    }
+
+    boolean isPerClient() {
+        return null != clients;
+    }
+
+    /**
+     * @param client The client address, used when perClient
+     * @return The count of remaining tokens if acquired, or the negative nanoseconds to wait for a token
+     */
+    long acquire(final String client) {
+        final long now = System.nanoTime();
+        final long result = null != clients ? bucket(client, now).acquire(now) : acquireStripe(now);
+        if (result < 0L) {
+            rejected.increment();
+        }
+        return result;
+    }
+
+    private long acquireStripe(final long now) {
+        final int mask = stripes.length - 1;
+        final int home = hash(Thread.currentThread().getId()) & mask;
+        long wait = Long.MIN_VALUE;
+        for (int i = 0; i <= mask; i++) {
+            final long result = stripes[(home + i) & mask].acquire(now);
+            if (result >= 0L) {
+                // Remaining tokens of all stripes
+                long remaining = result;
+                for (int j = 1; j <= mask; j++) {
+                    remaining += stripes[(home + i + j) & mask].available(now);
+                }
+                return remaining;
+            }
+            wait = Math.max(wait, result);
+        }
+        return wait;
+    }
+
+    private Bucket bucket(final String client, final long now) {
+        Bucket bucket = clients.get(client);
+        if (null == bucket) {
+            if (clients.size() >= MAX_CLIENTS && (!evict(now) || clients.size() >= MAX_CLIENTS)) {
+                // Over the limit while evicting
+                return shared;
+            }
+            bucket = clients.computeIfAbsent(client, c -> new Bucket(interval, burst, now));
+        }
+        return bucket;
+    }
+
+    /**
+     * Remove the buckets refilled fully, they are same as new buckets.
+     * When they are not enough, remove the {@link #EVICTIONS} buckets used least recently.
+     *
+     * @return false if another thread is evicting
+     */
+    private boolean evict(final long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            final Iterator<Bucket> it = clients.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().isFull(now)) {
+                    it.remove();
+                }
+            }
+            if (clients.size() >= MAX_CLIENTS) {
+                evictOldest(now);
+            }
+            return true;
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * The bucket of a later arrival time was used more recently
+     */
+    private void evictOldest(final long now) {
+        final long[] arrivals = new long[clients.size()];
+        int count = 0;
+        for (Bucket bucket : clients.values()) {
+            if (count == arrivals.length) {
+                break;
+            }
+            arrivals[count++] = bucket.arrival() - now;
+        }
+        if (count == 0) {
+            return;
+        }
+        Arrays.sort(arrivals, 0, count);
+        final long oldest = arrivals[Math.min(EVICTIONS, count) - 1];
+        final Iterator<Bucket> it = clients.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().arrival() - now <= oldest) {
+                it.remove();
+            }
+        }
+    }
+
+    private static int hash(final long id) {
+        final int h = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    int getLimit() {
+        return permits;
+    }
+
+    int getBurst() {
+        return burst;
+    }
+
+    int clients() {
+        return null != clients ? clients.size() : 0;
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return The seconds rounded up
+     */
+    static long seconds(final long nanos) {
+        return (nanos + 999_999_999L) / 1_000_000_000L;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("rate:%d/%dms burst:%d%s rejected:%d", permits,
+                TimeUnit.NANOSECONDS.toMillis(interval * permits), burst, null != clients ? " per client" : "", rejected());
+    }
+
+    /**
+     * A token bucket as the theoretical arrival time of next request
+     */
+    static final class Bucket {
+        private final long interval;
+        private final long capacity;
+        private final AtomicLong arrival;
+
+        /**
+         * @param interval The nanoseconds to refill one token
+         * @param tokens The maximum count of tokens
+         * @param now The time the bucket is full
+         */
+        Bucket(final long interval, final int tokens, final long now) {
+            this.interval = interval;
+            this.capacity = interval * tokens;
+            this.arrival = new AtomicLong(now);
+        }
+
+        /**
+         * @return The count of remaining tokens if acquired, or the negative nanoseconds to wait for a token
+         */
+        long acquire(final long now) {
+            for (;;) {
+                final long current = arrival.get();
+                final long next = (current - now > 0L ? current : now) + interval;
+                final long used = next - now;
+                if (used > capacity) {
+                    return capacity - used;
+                }
+                if (arrival.compareAndSet(current, next)) {
+                    return (capacity - used) / interval;
+                }
+            }
+        }
+
+        long available(final long now) {
+            final long used = arrival.get() - now;
+            return used > 0L ? Math.max(0L, (capacity - used) / interval) : capacity / interval;
+        }
+
+        boolean isFull(final long now) {
+            return arrival.get() - now <= 0L;
+        }
+
+        long arrival() {
+            return arrival.get();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package net.tiny.ws.rs;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -31,11 +33,58 @@ public final class Response {
     }
 
     public void send(HttpExchange he) throws IOException {
-        final String response = builder.join(he.getResponseHeaders()).json();
+        send(he, ResponseWriter.BUFFER_SIZE, Compression.DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold The maximum bytes of body sent with 'Content-Length', chunked over it
+     * @param compressThreshold The minimum bytes of body compressed by 'Accept-Encoding', negative is disabled
+     */
+    public void send(HttpExchange he, int threshold, int compressThreshold) throws IOException {
+        send(he, threshold, compressThreshold, false);
+    }
 
-        final byte[] rawResponse = response.getBytes(StandardCharsets.UTF_8);
-        he.sendResponseHeaders(builder.status, rawResponse.length);
-        he.getResponseBody().write(rawResponse);
+    /**
+     * @param tagged Tag the body with an ETag if not set by {@link Builder#etag(String)}
+     */
+    public void send(HttpExchange he, int threshold, int compressThreshold, boolean tagged) throws IOException {
+        final Headers headers = he.getResponseHeaders();
+        builder.join(headers);
+        if (HttpURLConnection.HTTP_OK == builder.status && null != headers) {
+            // The validators known before the body is written
+            final String etag = headers.getFirst(Conditional.HEADER_ETAG);
+            if (Conditional.notModified(he, etag)) {
+                Conditional.sendNotModified(he);
+                return;
+            }
+            tagged = tagged && null == etag;
+        }
+        ResponseWriter.send(he, builder.status, threshold, compressThreshold, tagged, builder::write);
+    }
+
+    /**
+     * @return The serialized response to cache, null if not 200 OK or with cookies
+     */
+    ResponseCache.Entry toCacheEntry() throws IOException {
+        if (HttpURLConnection.HTTP_OK != builder.status || builder.headers.containsKey("Set-Cookie")) {
+            return null;
+        }
+        final StringWriter out = new StringWriter();
+        builder.write(out);
+        final Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : builder.headers.entrySet()) {
+            headers.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        headers.put("Content-Type", Arrays.asList("application/json; charset=utf-8"));
+        return new ResponseCache.Entry(null, headers, out.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return The ETag set by {@link Builder#etag(String)}, or null
+     */
+    public String getEntityTag() {
+        final List<String> values = builder.headers.get(Conditional.HEADER_ETAG);
+        return null != values ? values.get(0) : null;
     }
 
     public static Builder ok() {
@@ -93,6 +142,15 @@ public final class Response {
             return header("Last-Modified", HttpDateFormat.format(date));
         }
 
+        /**
+         * @param tag The strong entity tag, quoted if not
+         */
+        public Builder etag(String tag) {
+            final String quoted = tag.startsWith("\"") ? tag : "\"" + tag + "\"";
+            headers.put(Conditional.HEADER_ETAG, new ArrayList<>(Arrays.asList(quoted)));
+            return this;
+        }
+
         public Builder header(String name, String value) {
             List<String> values = headers.get(name);
             if (null == values) {
@@ -126,6 +184,14 @@ public final class Response {
             return "";
         }
 
+        void write(Writer writer) throws IOException {
+            if (entity instanceof String) {
+                writer.write((String)entity);
+            } else if (null != entity) {
+                JsonSerializer.writeValue(entity, writer);
+            }
+        }
+
         public Response build() {
             return new Response(this);
         }
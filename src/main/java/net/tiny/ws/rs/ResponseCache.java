@@ -0,0 +1,355 @@
+package net.tiny.ws.rs;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.tiny.ws.Constants.MIME_TYPE;
+
+/**
+ * 路由的响应缓存 (Cache of the serialized responses of one GET route, see @Cached)
+ * <p>
+ * The cache is bounded by the bytes of responses. The accesses of all keys are counted
+ * in a 4-bit count-min sketch, halved periodically, so only the recent frequency counts.
+ * Over the maximum bytes, one thread evicts the least recently used entries in a batch,
+ * and a new entry is admitted only if it is used more often than its victim (TinyLFU).
+ * An expired entry is still sent within the stale time, while only one request
+ * revalidates it by calling the method again.
+ */
+final class ResponseCache {
+
+    /** The estimated bytes of a response, to size the frequency sketch */
+    private static final int AVERAGE_BYTES = 512;
+
+    private final long ttl;
+    private final long stale;
+    private final long maximumBytes;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final FrequencySketch sketch;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param ttl The time to live in nanoseconds
+     * @param stale The stale time in nanoseconds after expired
+     * @param maximumBytes The maximum bytes of cached responses
+     */
+    ResponseCache(final long ttl, final long stale, final long maximumBytes) {
+        if (ttl <= 0L || stale < 0L || maximumBytes <= 0L) {
+            throw new IllegalArgumentException(String.format("Invalid response cache ttl:%d stale:%d max:%d",
+                    ttl, stale, maximumBytes));
+        }
+        this.ttl = ttl;
+        this.stale = stale;
+        this.maximumBytes = maximumBytes;
+        this.sketch = new FrequencySketch((int)Math.min(1 << 16, Math.max(64L, maximumBytes / AVERAGE_BYTES)));
+    }
+
+    static ResponseCache of(final Cached cached) {
+        return new ResponseCache(cached.unit().toNanos(cached.value()), cached.unit().toNanos(cached.stale()),
+                cached.maxBytes());
+    }
+
+    /**
+     * @param uri The request URI
+     * @param type The negotiated media type
+     * @return The key of the path, the sorted query parameters and the media type
+     */
+    static String key(final URI uri, final String type) {
+        final StringBuilder key = new StringBuilder(uri.getRawPath());
+        final String query = uri.getRawQuery();
+        if (null != query && !query.isEmpty()) {
+            final String[] params = query.split("&");
+            Arrays.sort(params);
+            char separator = '?';
+            for (String param : params) {
+                if (!param.isEmpty()) {
+                    key.append(separator).append(param);
+                    separator = '&';
+                }
+            }
+        }
+        if (null != type) {
+            key.append('|').append(type);
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return The fresh or stale entry, or null
+     */
+    Entry get(final String key) {
+        sketch.increment(key.hashCode());
+        final Entry entry = entries.get(key);
+        if (null == entry) {
+            misses.increment();
+            return null;
+        }
+        final long now = System.nanoTime();
+        if (now - entry.staleUntil >= 0L) {
+            remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        entry.accessed = now;
+        hits.increment();
+        return entry;
+    }
+
+    void put(final String key, final Entry entry) {
+        if (entry.weight > maximumBytes) {
+            rejections.increment();
+            return;
+        }
+        final long now = System.nanoTime();
+        entry.key = key;
+        entry.accessed = now;
+        entry.expires = now + ttl;
+        entry.staleUntil = entry.expires + stale;
+        final Entry previous = entries.put(key, entry);
+        bytes.addAndGet(entry.weight - (null != previous ? previous.weight : 0L));
+        if (bytes.get() > maximumBytes) {
+            evict(key);
+        }
+    }
+
+    private void remove(final String key, final Entry entry) {
+        if (entries.remove(key, entry)) {
+            bytes.addAndGet(-entry.weight);
+        }
+    }
+
+    /**
+     * Remove the expired entries, then the least recently used entries down to seven eighths of the maximum.
+     * The new entry is removed instead of a victim used more often, then no more is removed under the maximum.
+     */
+    private void evict(final String candidate) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final long now = System.nanoTime();
+            final List<Entry> victims = new ArrayList<>(entries.size());
+            for (Entry entry : entries.values()) {
+                if (now - entry.staleUntil >= 0L) {
+                    remove(entry.key, entry);
+                } else {
+                    victims.add(entry);
+                }
+            }
+            final long target = maximumBytes - maximumBytes / 8L;
+            if (bytes.get() <= target) {
+                return;
+            }
+            victims.sort((a, b) -> Long.compare(a.accessed, b.accessed));
+            int frequency = sketch.frequency(candidate.hashCode());
+            for (Entry victim : victims) {
+                if (bytes.get() <= target) {
+                    return;
+                }
+                if (victim.key.equals(candidate)) {
+                    continue;
+                }
+                if (frequency >= 0 && sketch.frequency(victim.key.hashCode()) > frequency) {
+                    // Not admitted, the victim is used more often
+                    final Entry entry = entries.get(candidate);
+                    if (null != entry) {
+                        remove(candidate, entry);
+                        rejections.increment();
+                    }
+                    frequency = -1;
+                    if (bytes.get() <= maximumBytes) {
+                        return;
+                    }
+                }
+                remove(victim.key, victim);
+                evictions.increment();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * @param key The key of request
+     * @param stale The stale entry revalidated by this request, or null
+     * @return The filler of the response of this request
+     */
+    Fill fill(final String key, final Entry stale) {
+        return new Fill(this, key, stale);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long bytes() {
+        return bytes.get();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    long rejections() {
+        return rejections.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size:%d bytes:%d/%d hits:%d misses:%d evictions:%d rejections:%d",
+                size(), bytes(), maximumBytes, hits(), misses(), evictions(), rejections());
+    }
+
+    /**
+     * 缓存的响应 (The serialized body and headers of a 200 OK response)
+     */
+    static final class Entry {
+        final MIME_TYPE type;
+        final Map<String, List<String>> headers;
+        final byte[] body;
+        final long weight;
+        private final AtomicBoolean revalidating = new AtomicBoolean();
+        String key;
+        long expires;
+        long staleUntil;
+        volatile long accessed;
+
+        /**
+         * @param type The content type of body, or null if set in the headers
+         * @param headers The response headers
+         * @param body The identity body
+         */
+        Entry(final MIME_TYPE type, final Map<String, List<String>> headers, final byte[] body) {
+            this.type = type;
+            this.headers = null != headers ? headers : Collections.emptyMap();
+            this.body = body;
+            long size = body.length + 64L;
+            for (Map.Entry<String, List<String>> header : this.headers.entrySet()) {
+                for (String value : header.getValue()) {
+                    size += header.getKey().length() + value.length();
+                }
+            }
+            this.weight = size;
+        }
+
+        boolean isFresh() {
+            return System.nanoTime() - expires < 0L;
+        }
+
+        /**
+         * @return true if this request revalidates the expired entry, false if another request does
+         */
+        boolean revalidate() {
+            return revalidating.compareAndSet(false, true);
+        }
+    }
+
+    /**
+     * 响应的填充 (The response of a request missed or revalidating, put into the cache when sent)
+     */
+    static final class Fill {
+        private final ResponseCache cache;
+        private final String key;
+        private final Entry stale;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        Fill(final ResponseCache cache, final String key, final Entry stale) {
+            this.cache = cache;
+            this.key = key;
+            this.stale = stale;
+        }
+
+        /**
+         * Only the first completion counts, the later ones are ignored.
+         *
+         * @param entry The response, or null if not cacheable or failed
+         */
+        void complete(final Entry entry) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            if (null != entry) {
+                cache.put(key, entry);
+            } else if (null != stale) {
+                // Another request may revalidate it
+                stale.revalidating.set(false);
+            }
+        }
+    }
+
+    /**
+     * Count-min sketch of 4 rows of 4-bit counters, the counters are halved after 10 times of its width additions.
+     * The counters are updated without lock, a lost update only makes the frequency approximate.
+     */
+    static final class FrequencySketch {
+        private static final int[] SEEDS = {0x97CB3127, 0xB0F0A5D1, 0x9E3779B9, 0x85EBCA6B};
+        private final byte[] table;
+        private final int width;
+        private final int mask;
+        private final int sampleSize;
+        private final AtomicInteger additions = new AtomicInteger();
+
+        FrequencySketch(final int maximumSize) {
+            this.width = Integer.highestOneBit(Math.max(16, maximumSize - 1) << 1);
+            this.mask = width - 1;
+            this.table = new byte[width * SEEDS.length];
+            this.sampleSize = 10 * width;
+        }
+
+        private int index(final int hash, final int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9E3779B9;
+            h ^= h >>> 16;
+            return row * width + (h & mask);
+        }
+
+        void increment(final int hash) {
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                final int i = index(hash, row);
+                if (table[i] < 15) {
+                    table[i]++;
+                    added = true;
+                }
+            }
+            if (added && additions.incrementAndGet() >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(final int hash) {
+            int frequency = 15;
+            for (int row = 0; row < SEEDS.length; row++) {
+                frequency = Math.min(frequency, table[index(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (byte)(table[i] >>> 1);
+            }
+            additions.set(sampleSize >>> 1);
+        }
+    }
+}
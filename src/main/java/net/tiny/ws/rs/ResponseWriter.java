@@ -0,0 +1,348 @@
+package net.tiny.ws.rs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * 流式响应输出 (UTF-8 writer straight into the response body through a pooled buffer)
+ * <p>
+ * The body not over the threshold is sent with a fixed 'Content-Length' when closed.
+ * Over the threshold, the response headers are sent with chunked transfer at once,
+ * and the buffer is flushed to the response body each time it is full.
+ * So a large result is never built in memory as a whole string nor as a whole byte array.
+ * A body over the compression threshold is compressed on the way, if accepted by the client.
+ * When the compression threshold is over the chunked threshold, the body is buffered up to
+ * the compression threshold within the buffer, so a chunked body is always large enough to compress.
+ * A tagged body is buffered until closed, then sent with its ETag or as 304 Not Modified.
+ * A tagged body over {@link #MAX_TAGGED} is sent with chunked transfer without ETag.
+ */
+final class ResponseWriter extends Writer {
+
+    /** The size of pooled buffers, also the maximum of threshold */
+    static final int BUFFER_SIZE = 16 * 1024;
+    /** The maximum bytes of a body buffered to tag it with an ETag */
+    static final int MAX_TAGGED = 64 * BUFFER_SIZE;
+    private static final int POOL_SIZE = 64;
+    private static final ArrayBlockingQueue<byte[]> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /**
+     * The body of response written by {@link ResponseWriter}
+     */
+    @FunctionalInterface
+    interface Body {
+        void writeTo(ResponseWriter writer) throws IOException;
+    }
+
+    private final HttpExchange exchange;
+    private final int status;
+    private final int threshold;
+    /** The minimum bytes of a body to compress, negative is disabled */
+    private final int compressThreshold;
+    /** Tag the body with an ETag, see @ETag. Dropped over {@link #MAX_TAGGED} */
+    private boolean tagged;
+    private byte[] pooled;
+    private byte[] buffer;
+    private int count = 0;
+    private int end;
+    private OutputStream out;
+    /** The high surrogate waits for its low surrogate */
+    private char pending = 0;
+    private long size = 0L;
+
+    /**
+     * @param exchange The HTTP exchange
+     * @param status The status of response
+     * @param threshold The maximum bytes of a body sent with 'Content-Length'
+     * @param compressThreshold The minimum bytes of a body to compress, negative is disabled
+     */
+    ResponseWriter(final HttpExchange exchange, final int status, final int threshold, final int compressThreshold) {
+        this(exchange, status, threshold, compressThreshold, false);
+    }
+
+    /**
+     * @param tagged Tag a 200 OK body with an ETag
+     */
+    ResponseWriter(final HttpExchange exchange, final int status, final int threshold, final int compressThreshold,
+            final boolean tagged) {
+        this.exchange = exchange;
+        this.status = status;
+        this.threshold = Math.max(0, Math.min(threshold, BUFFER_SIZE));
+        this.compressThreshold = compressThreshold;
+        this.tagged = tagged && HttpURLConnection.HTTP_OK == status;
+        final byte[] polled = POOL.poll();
+        this.pooled = null != polled ? polled : new byte[BUFFER_SIZE];
+        this.buffer = this.pooled;
+        // Decide the compression on the bytes buffered up to the larger threshold
+        this.end = this.tagged ? buffer.length : Math.max(this.threshold, Math.min(compressThreshold, buffer.length));
+    }
+
+    /**
+     * Send a response by the writer, nothing is sent if the body failed before the headers were sent
+     */
+    static void send(final HttpExchange exchange, final int status, final int threshold, final Body body) throws IOException {
+        send(exchange, status, threshold, -1, body);
+    }
+
+    /**
+     * Send a response by the writer, compressed over the compression threshold
+     */
+    static void send(final HttpExchange exchange, final int status, final int threshold, final int compressThreshold,
+            final Body body) throws IOException {
+        send(exchange, status, threshold, compressThreshold, false, body);
+    }
+
+    /**
+     * Send a response by the writer, a tagged body is sent with its ETag or as 304 Not Modified
+     */
+    static void send(final HttpExchange exchange, final int status, final int threshold, final int compressThreshold,
+            final boolean tagged, final Body body) throws IOException {
+        final ResponseWriter writer = new ResponseWriter(exchange, status, threshold, compressThreshold, tagged);
+        try {
+            body.writeTo(writer);
+            writer.close();
+        } finally {
+            writer.release();
+        }
+    }
+
+    /**
+     * Write an element of a JSON array, see {@link JsonSerializer#writeElement(Object, Writer)}
+     */
+    void json(final Object value) throws IOException {
+        JsonSerializer.writeElement(value, this);
+    }
+
+    /**
+     * Write a value as JSON by the given serializer
+     */
+    void json(final Object value, final JsonSerializer serializer) throws IOException {
+        if (null == value) {
+            JsonSerializer.writeValue(null, this);
+        } else {
+            serializer.write(value, this);
+        }
+    }
+
+    /**
+     * @return true if the response headers were sent with chunked transfer
+     */
+    boolean isChunked() {
+        return null != out;
+    }
+
+    /**
+     * @return The bytes written
+     */
+    long size() {
+        return size + count;
+    }
+
+    @Override
+    public void write(final int c) throws IOException {
+        if (count == end) {
+            overflow();
+        }
+        if (c < 0x80 && pending == 0) {
+            buffer[count++] = (byte)c;
+        } else {
+            encode((char)c);
+        }
+    }
+
+    @Override
+    public void write(final char[] chars, final int off, final int len) throws IOException {
+        final int last = off + len;
+        for (int i = off; i < last; i++) {
+            final char c = chars[i];
+            if (c < 0x80 && pending == 0 && count < end) {
+                buffer[count++] = (byte)c;
+            } else {
+                write(c);
+            }
+        }
+    }
+
+    @Override
+    public void write(final String str, final int off, final int len) throws IOException {
+        final int last = off + len;
+        for (int i = off; i < last; i++) {
+            final char c = str.charAt(i);
+            if (c < 0x80 && pending == 0 && count < end) {
+                buffer[count++] = (byte)c;
+            } else {
+                write(c);
+            }
+        }
+    }
+
+    @Override
+    public Writer append(final CharSequence csq, final int start, final int end) throws IOException {
+        if (csq instanceof String) {
+            write((String)csq, start, end - start);
+        } else {
+            for (int i = start; i < end; i++) {
+                write(csq.charAt(i));
+            }
+        }
+        return this;
+    }
+
+    private void encode(final char c) throws IOException {
+        if (pending != 0) {
+            final char high = pending;
+            pending = 0;
+            if (Character.isLowSurrogate(c)) {
+                final int cp = Character.toCodePoint(high, c);
+                put(0xF0 | (cp >> 18));
+                put(0x80 | ((cp >> 12) & 0x3F));
+                put(0x80 | ((cp >> 6) & 0x3F));
+                put(0x80 | (cp & 0x3F));
+                return;
+            }
+            // Unpaired surrogate
+            put('?');
+        }
+        if (c < 0x80) {
+            put(c);
+        } else if (c < 0x800) {
+            put(0xC0 | (c >> 6));
+            put(0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            pending = c;
+        } else if (Character.isLowSurrogate(c)) {
+            put('?');
+        } else {
+            put(0xE0 | (c >> 12));
+            put(0x80 | ((c >> 6) & 0x3F));
+            put(0x80 | (c & 0x3F));
+        }
+    }
+
+    private void put(final int b) throws IOException {
+        if (count == end) {
+            overflow();
+        }
+        buffer[count++] = (byte)b;
+    }
+
+    /**
+     * Over the threshold, send the headers with chunked transfer and flush the buffer.
+     * A tagged body grows the buffer instead, up to {@link #MAX_TAGGED}.
+     */
+    private void overflow() throws IOException {
+        if (tagged && null == out) {
+            if (buffer.length < MAX_TAGGED) {
+                buffer = Arrays.copyOf(buffer, buffer.length << 1);
+                end = buffer.length;
+                return;
+            }
+            // Too large to tag, send it with chunked transfer
+            tagged = false;
+        }
+        if (null == out) {
+            open();
+        }
+        out.write(buffer, 0, count);
+        size += count;
+        count = 0;
+        if (buffer != pooled) {
+            // Back to the pooled buffer after the grown buffer was flushed
+            buffer = pooled;
+            end = buffer.length;
+        }
+    }
+
+    /**
+     * Send the headers with chunked transfer, the body is compressed if accepted
+     */
+    private void open() throws IOException {
+        open(Compression.select(exchange, compressThreshold));
+    }
+
+    private void open(final Compression.Encoding encoding) throws IOException {
+        if (null != encoding) {
+            out = Compression.open(exchange, status, encoding);
+        } else {
+            exchange.sendResponseHeaders(status, 0);
+            out = exchange.getResponseBody();
+        }
+        end = buffer.length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (null != out && count > 0) {
+            out.write(buffer, 0, count);
+            size += count;
+            count = 0;
+            out.flush();
+        }
+    }
+
+    /**
+     * Send the rest of body, the response body is closed with the exchange
+     */
+    @Override
+    public void close() throws IOException {
+        if (null == buffer) {
+            return;
+        }
+        if (pending != 0) {
+            pending = 0;
+            put('?');
+        }
+        if (null == out) {
+            final Compression.Encoding selected = Compression.select(exchange, compressThreshold);
+            final Compression.Encoding encoding = count > 0 && count >= compressThreshold ? selected : null;
+            if (tagged) {
+                final String etag = Conditional.etag(buffer, 0, count, encoding);
+                exchange.getResponseHeaders().set(Conditional.HEADER_ETAG, etag);
+                if (Conditional.notModified(exchange, etag)) {
+                    Conditional.sendNotModified(exchange);
+                    count = 0;
+                    release();
+                    return;
+                }
+            }
+            if (null != encoding) {
+                open(encoding);
+            }
+        }
+        if (null == out) {
+            exchange.sendResponseHeaders(status, count > 0 ? count : -1);
+            if (count > 0) {
+                exchange.getResponseBody().write(buffer, 0, count);
+            }
+            size += count;
+            count = 0;
+        } else {
+            if (count > 0) {
+                out.write(buffer, 0, count);
+                size += count;
+                count = 0;
+            }
+            if (out instanceof Compression.CompressedOutputStream) {
+                // Finish the compressed body
+                out.close();
+            } else {
+                out.flush();
+            }
+        }
+        release();
+    }
+
+    private void release() {
+        final byte[] released = pooled;
+        buffer = null;
+        if (null != released) {
+            pooled = null;
+            POOL.offer(released);
+        }
+    }
+}
@@ -2,17 +2,18 @@ package net.tiny.ws.rs;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -20,24 +21,12 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.annotation.Resource;
-import javax.ws.rs.BeanParam;
-import javax.ws.rs.CookieParam;
-import javax.ws.rs.DefaultValue;
-import javax.ws.rs.FormParam;
-import javax.ws.rs.HeaderParam;
-import javax.ws.rs.MatrixParam;
-import javax.ws.rs.PathParam;
-import javax.ws.rs.QueryParam;
-import javax.ws.rs.core.Context;
 
 import com.sun.net.httpserver.HttpExchange;
 
-import net.tiny.config.Converter;
-import net.tiny.config.JsonParser;
 import net.tiny.service.ClassFinder;
 import net.tiny.service.ClassHelper;
 import net.tiny.service.ServiceContext;
-import net.tiny.ws.BaseWebService;
 
 public class RestServiceFactory {
 
@@ -45,12 +34,18 @@ public class RestServiceFactory {
     public static final String REST_PATH = "/rest";
     private static final String REGEX_COOKIE_NAME_VALUE = "^(\\w+)=(.*)$";
     private static final Pattern COOKIE_PATTERN = Pattern.compile(REGEX_COOKIE_NAME_VALUE);
+    /** At most one unmatched URI is logged in this interval */
+    private static final long UNMATCHED_SAMPLING_NANOS = TimeUnit.SECONDS.toNanos(10L);
     private final String path;
     private ServiceContext serviceContext;
-    private Vector<RestServiceWrapper> servicePatterns = new Vector<RestServiceWrapper>();
-    private boolean initing = false;
+    /** The immutable route table, replaced as a whole by setup() */
+    private volatile RouteTable routes = new RouteTable();
+    /** The maximum size of route cache, 0 is disabled */
+    private int routeCacheSize = 0;
+    private final LongAdder unmatched = new LongAdder();
+    private final AtomicLong unmatchedSampled = new AtomicLong(System.nanoTime() - UNMATCHED_SAMPLING_NANOS);
+    private final AtomicLong unmatchedLogged = new AtomicLong();
     private boolean changed = true;
-    private Converter converter = new Converter();
     private RestServiceHandler.Listener listener;
 
     public RestServiceFactory(String path, ServiceContext sc, RestServiceHandler.Listener listener) {
@@ -74,14 +69,30 @@ public class RestServiceFactory {
         }
     }
 
+    /**
+     * 设置已解析路由的缓存大小，重新设置时清空缓存
+     *
+     * @param size The maximum count of cached URIs, 0 is disabled
+     */
+    public synchronized void setRouteCacheSize(int size) {
+        this.routeCacheSize = Math.max(0, size);
+        this.routes = routes.withCache(routeCacheSize);
+    }
+
+    public int getRouteCacheSize() {
+        return routeCacheSize;
+    }
+
     /**
      * 初始化RestService配置
+     * <p>
+     * The new route table is built aside and published at once,
+     * the requests are never blocked and go on with the former table until then.
      */
     public synchronized void setup()  {
         if(!changed)
             return;
-        initing = true;
-        servicePatterns.clear();
+        final List<RestServiceWrapper> servicePatterns = new ArrayList<>();
         try {
             final RestApplication application = serviceContext.lookup(RestApplication.class);
             // Find and load pattern classes about 2s.
@@ -110,6 +121,10 @@ public class RestServiceFactory {
             //检查是否有重复的url
             //checkDuplicateUrl();
 
+            // Compile all method patterns to the route index
+            final RouteTable table = new RouteTable(
+                    servicePatterns.toArray(new RestServiceWrapper[servicePatterns.size()]), routeCacheSize);
+
             // Move RestServiceLocator#injectResource to here
             // Find all rest services and inject resource.
             int count = 0;
@@ -117,25 +132,41 @@ public class RestServiceFactory {
             for (RestServiceWrapper wrapper : servicePatterns) {
                 // Find a field with @Resource
                 List<Field> withResouceAnnotatedFields = ClassHelper.findAnnotatedFields(wrapper.getServiceClass(), Resource.class);
+                // The injection plan is replayed on the instances created per request
+                final List<ServiceProvider.Injection> injections = new ArrayList<>();
                 for(Field field : withResouceAnnotatedFields) {
-                    if (injectResource(classFinder, suppliers, wrapper.getService(), field)) {
+                    final Supplier<?> resource = resolveResource(classFinder, suppliers, field);
+                    if (null != resource && injectResource(wrapper.getService(), field, resource)) {
+                        injections.add(new ServiceProvider.Injection(field, resource));
                         count++;
                     }
                 }
+                wrapper.setInjections(injections.toArray(new ServiceProvider.Injection[injections.size()]));
             }
             LOGGER.info(String.format("[REST] '%s' Injected %s fields with @Resouce", path, count));
+            // Publish the table, the route cache is replaced together with it
+            routes = table;
         } catch (final RuntimeException e) {
             throw e;
         } catch (final Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         } finally {
-            initing = false;
             changed = false;
         }
     }
 
-    @SuppressWarnings("unchecked")
     boolean injectResource(ClassFinder classFinder, Map<Class<?>, Supplier<?>> suppliers, Object bean, Field field) {
+        final Supplier<?> resource = resolveResource(classFinder, suppliers, field);
+        return null != resource && injectResource(bean, field, resource);
+    }
+
+    /**
+     * 取得'@Resource'字段值的提供者，找到的资源只检索一次
+     *
+     * @return The supplier of resource, or null if the type of field is unknown
+     */
+    @SuppressWarnings("unchecked")
+    Supplier<?> resolveResource(ClassFinder classFinder, Map<Class<?>, Supplier<?>> suppliers, Field field) {
         try {
             final Class<?> resourceType = Class.forName(field.getGenericType().getTypeName());
             final Class<? super Supplier<?>> supplierType =
@@ -143,15 +174,22 @@ public class RestServiceFactory {
             if (supplierType != null && !suppliers.containsKey(resourceType)) {
                 suppliers.put(resourceType, (Supplier<?>)supplierType.newInstance());
             }
-
-            field.setAccessible(true);
-            Object res = null;
             if (supplierType != null) {
-                Supplier<?> supplier = suppliers.get(resourceType);
-                res = supplier.get();
-            } else {
-                res = serviceContext.lookup(resourceType);
+                return suppliers.get(resourceType);
             }
+            final Object res = serviceContext.lookup(resourceType);
+            return () -> res;
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+            LOGGER.log(Level.WARNING, String.format("[REST] Not found '%s' Supplier.",
+                    field.getGenericType().getTypeName()), e);
+            return null;
+        }
+    }
+
+    private boolean injectResource(Object bean, Field field, Supplier<?> resource) {
+        try {
+            field.setAccessible(true);
+            final Object res = resource.get();
             if(null != res) {
                 field.set(bean, res);
                 // Injection
@@ -167,9 +205,10 @@ public class RestServiceFactory {
             }
 
             return true;
-        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
-            LOGGER.log(Level.WARNING, String.format("[REST] Not found '%s' Supplier.",
-                    field.getGenericType().getTypeName()), e);
+        } catch (IllegalAccessException e) {
+            LOGGER.log(Level.WARNING, String.format("[REST] Can not inject @Resouce of '%s.%s'",
+                    field.getDeclaringClass().getSimpleName(),
+                    field.getName()), e);
             return false;
         }
     }
@@ -186,113 +225,67 @@ public class RestServiceFactory {
         if(null != hit) {
             return hit.getTarget(RestServiceHandler.class);
         }
-        LOGGER.warning(String.format("[REST] - Unmatch '%s' on context '%s'.", realUrl, path));
+        unmatched(realUrl);
         return null;
     }
 
-    public Object[] convertArguments(final HttpExchange he, final Map<String, Object> args, final Method method, byte[] requestContents) throws UnsupportedEncodingException {
-        Class<?>[] paramTypes = method.getParameterTypes();
-        Annotation[][] annotations = method.getParameterAnnotations();
-        Object[] argements = new Object[paramTypes.length];
-        for(int i=0; i<argements.length; i++) {
-            String key = getParameterKey(annotations[i]);
-            if(null != key) {
-                argements[i] = convertParameter(args, key, annotations[i], paramTypes[i]);
-            } else {
-                argements[i] = convertParameter(he, annotations[i], paramTypes[i], requestContents);
-            }
+    /**
+     * 不匹配URI的计数，并按时间间隔抽样记录日志
+     */
+    private void unmatched(final String realUrl) {
+        unmatched.increment();
+        final long now = System.nanoTime();
+        final long last = unmatchedSampled.get();
+        if (now - last < UNMATCHED_SAMPLING_NANOS || !unmatchedSampled.compareAndSet(last, now)) {
+            return;
         }
-        return argements;
+        final long total = unmatched.sum();
+        final long count = total - unmatchedLogged.getAndSet(total);
+        LOGGER.warning(String.format("[REST] - Unmatch '%s' on context '%s'. (%d unmatched since last sample, total %d)",
+                realUrl, path, count, total));
     }
 
     /**
-     * 注解
-     * @param annotations
-     * @return
+     * @return The count of unmatched requests
      */
-    private String getParameterKey(Annotation[] annotations) {
-        for(Annotation annotation : annotations) {
-            if(annotation instanceof PathParam) {
-                return ((PathParam)annotation).value();
-            } else if(annotation instanceof QueryParam) {
-                return ((QueryParam)annotation).value();
-            } else if(annotation instanceof MatrixParam) {
-                return ((MatrixParam)annotation).value();
-            } else if(annotation instanceof FormParam) {
-                return ((FormParam)annotation).value();
-            }
-        }
-        return null;
+    public long getUnmatchedCount() {
+        return unmatched.sum();
     }
 
-    private Object convertParameter(final Map<String, Object> args, String key, Annotation[] annotations, Class<?> paramType) {
-        Object value  = args.get(key);
-        if(value != null && value.getClass().isArray() && !paramType.isArray()) {
-            value = Array.get(value, 0);
-        }
-        if(value != null && !paramType.isInstance(value)) {
-            value = converter.convert(value.toString(), paramType);
-        }
-        if(value == null) {
-            // Set default value  see @DefaultValue
-            for(Annotation annotation : annotations) {
-                if(annotation instanceof DefaultValue) {
-                    value = converter.convert(((DefaultValue)annotation).value(), paramType);
-                }
-            }
+    /**
+     * 取得URI在其他HTTP方法下定义时允许的方法
+     *
+     * @param realUrl
+     * @param httpMthod
+     * @return The value of 'Allow' header, or null if the URI was not found
+     */
+    public String getAllowedMethods(final String realUrl, final String httpMthod) throws IOException {
+        return routes.allow(realUrl, httpMthod);
+    }
+
+    /**
+     * 通过REST方法的参数绑定器生成参数
+     *
+     * @param he
+     * @param args
+     * @param handler
+     * @param requestContents
+     * @return The arguments of method
+     */
+    public Object[] convertArguments(final HttpExchange he, final Map<String, Object> args, final RestServiceHandler handler, byte[] requestContents) throws UnsupportedEncodingException {
+        if (handler instanceof MethodPattern) {
+            return ((MethodPattern)handler).bindArguments(he, args, requestContents);
         }
-        return value;
+        return convertArguments(he, args, handler.getMethod(), requestContents);
     }
 
-    private Object convertParameter(final HttpExchange he, Annotation[] annotations, Class<?> paramType, byte[] contents) {
-        String key = null;
-        for(Annotation annotation : annotations) {
-            if(annotation instanceof HeaderParam) {
-                key = ((HeaderParam)annotation).value();
-                String value = he.getRequestHeaders().getFirst(key);
-                if(value != null && !paramType.isInstance(value)) {
-                    return converter.convert(value.toString(), paramType);
-                }
-                if (listener != null) {
-                    listener.param("@HeaderParam", key, value);
-                }
-                return value;
-            } else if(annotation instanceof CookieParam) {
-                key = ((CookieParam)annotation).value();
-                String value = getCookie(he, key, true);
-                if (listener != null) {
-                    listener.param("@CookieParam", key, value);
-                }
-                return value;
-            } else if(annotation instanceof BeanParam) {
-                if (null == contents || contents.length == 0) {
-                    if (listener != null) {
-                        listener.param("@BeanParam", paramType.getSimpleName(), "null");
-                    }
-                    return null;
-                }
-                final String json = new String(contents);
-                if (listener != null) {
-                    listener.param("@BeanParam", paramType.getSimpleName(), json);
-                }
-                return JsonParser.unmarshal(json, paramType);
-            } else if (annotation instanceof Context) {
-                //LOGGER.warning("[REST] - Not support @Context parameter type.");
-                final Object address = BaseWebService.getClientAddress(he, paramType);
-                if (listener != null) {
-                    listener.param("@Context", paramType.getSimpleName(), address.toString());
-                }
-                return address;
-                /*
-                if(paramType.isAssignableFrom(UriInfo.class)) {
-                    //return new UriInfo();
-                } else if(paramType.isAssignableFrom(HttpHeaders.class)) {
-                    //return new HttpHeaders();
-                }
-                */
-            }
+    public Object[] convertArguments(final HttpExchange he, final Map<String, Object> args, final Method method, byte[] requestContents) throws UnsupportedEncodingException {
+        final ParameterBinder[] binders = ParameterBinder.compile(method);
+        final Object[] argements = new Object[binders.length];
+        for(int i=0; i<argements.length; i++) {
+            argements[i] = binders[i].bind(he, args, requestContents, listener);
         }
-        return null;
+        return argements;
     }
 
     /**
@@ -302,6 +295,10 @@ public class RestServiceFactory {
      * @return
      */
     public String getCookie(HttpExchange he, String key, boolean justValue) {
+        return findCookie(he, key, justValue);
+    }
+
+    static String findCookie(HttpExchange he, String key, boolean justValue) {
         Iterator<Map.Entry<String, List<String>>> it =
                 he.getRequestHeaders().entrySet().iterator();
         while( it.hasNext()) {
@@ -324,7 +321,7 @@ public class RestServiceFactory {
         return null;
     }
 
-    private String getCookieFromSearchString(String key, String wholeCookie) {
+    private static String getCookieFromSearchString(String key, String wholeCookie) {
         if (wholeCookie.contains(";")) {
             String data[] = wholeCookie.split(";");
             for (int i = 0; i < data.length; i++) {
@@ -345,63 +342,26 @@ public class RestServiceFactory {
      * @return 索引
      */
     protected Hitting<?> hit(final String realUrl, final String requestMethod,  final Map<String, Object> args) throws IOException {
-        if (initing) {
-            throw new IllegalStateException();
-        }
-        int compareRet;
-        for (RestServiceWrapper wrapper : servicePatterns) {
-            Hitting<?> hit = wrapper.hit(realUrl, requestMethod, args);
-            compareRet = hit.getHit();
-            if (0 == compareRet) {
-                return hit;
-            }
+        final MethodPattern pattern = routes.find(realUrl, requestMethod, args);
+        if (null != pattern) {
+            return pattern.getHitting();
         }
         return null;
     }
 
-
-    /**
-     * 通过url取得相应的RestService索引
-     *
-     * @param realUrl
-     * @return 索引
-     */
-    protected Hitting<?> fastHit(final String realUrl, final String requestMethod,  final Map<String, Object> args) throws IOException {
-        //TODO How to be called
-        if (initing) {
-            throw new IllegalStateException();
-        }
-        // 折半查找RestService实体
-        int low = 0;
-        int high = servicePatterns.size();
-        int index = (low + high) / 2;
-        Hitting<?> hit = servicePatterns.get(index).hit(realUrl, requestMethod, args);
-        int compareRet = hit.getHit();
-        while (compareRet != 0 && ((high - low) != 1)) {
-            if (compareRet > 0) {
-                high = index;
-            } else {
-                low = index;
-            }
-            index = (low + high) / 2;
-            hit = servicePatterns.get((low + high) / 2).hit(realUrl, requestMethod, args);
-            compareRet = hit.getHit();
-        }
-        if(0 == compareRet) {
-            return hit;
-        } else {
-            return null;
-        }
-    }
-
     public String info(boolean detail) {
         StringBuilder msg = new StringBuilder(getClass().getSimpleName());
         msg.append("@" + hashCode());
-        msg.append(String.format(" - [%1$d]", servicePatterns.size()));
+        final RouteTable table = routes;
+        msg.append(String.format(" - [%1$d] routes:%2$d unmatched:%3$d", table.getServiceSize(), table.size(), unmatched.sum()));
+        final RouteCache cache = table.getCache();
+        if (null != cache) {
+            msg.append(" cache - " + cache);
+        }
         if(detail) {
-            if(!servicePatterns.isEmpty()) {
+            if(table.getServiceSize() > 0) {
                 msg.append("\r\n");
-                for(RestServiceWrapper rest : servicePatterns) {
+                for(RestServiceWrapper rest : table.getServices()) {
                     msg.append(rest.toString());
                     msg.append("\r\n");
                 }
@@ -418,9 +378,7 @@ public class RestServiceFactory {
      */
     private void checkDuplicateUrl() {
         RestServiceWrapper prePattern = null;
-        final Iterator<RestServiceWrapper> iterator = servicePatterns.iterator();
-        while (iterator.hasNext()) {
-            final RestServiceWrapper pattern = iterator.next();
+        for (RestServiceWrapper pattern : routes.getServices()) {
             if (pattern.compareTo(prePattern) <= 0) {
                 throw new RuntimeException(String.format("Duplicate url : '%s'", pattern.getPath()));
             }
@@ -429,9 +387,7 @@ public class RestServiceFactory {
     }
 
     public RestServiceWrapper[] getWrapperServices() {
-        RestServiceWrapper[] array = new RestServiceWrapper[servicePatterns.size()];
-        servicePatterns.copyInto(array);
-        return array;
+        return routes.getServices();
     }
 
     @Override
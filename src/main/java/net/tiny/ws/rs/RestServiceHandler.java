@@ -17,6 +17,13 @@ public interface RestServiceHandler {
     String[] getAllowedRoles();
     boolean acceptableMediaType(String type);
 
+    /**
+     * @return The timeout of method in milliseconds, 0 is not limited
+     */
+    default long getTimeout() {
+        return 0L;
+    }
+
     void setListener(Listener listener);
 
 }
@@ -37,25 +37,71 @@ public class RestServiceLocator extends ServiceLocator {
     }
 
 
-    public static class RestServiceMonitor extends Monitor implements RestServiceHandler.Listener {
+    public static class RestServiceMonitor extends Monitor implements RestServiceHandler.Listener, AsyncListener.Sink {
 
         @Override
         public void called(String target, int id, String method, Object[] args) {
-            StringBuilder sb = new StringBuilder();
+            if (!LOGGER.isLoggable(Level.INFO)) {
+                return;
+            }
+            LOGGER.log(Level.INFO, invoked(new StringBuilder(), target, id, method, args).toString());
+        }
+
+        @Override
+        public void param(String annotation, String type, String value) {
+            if (!LOGGER.isLoggable(Level.INFO)) {
+                return;
+            }
+            LOGGER.log(Level.INFO, param(new StringBuilder(), annotation, type, value).toString());
+        }
+
+        /**
+         * 批量记录异步监听器的事件，一个批次共用一个缓冲
+         */
+        @Override
+        public void accept(AsyncListener.Event[] batch, int count) {
+            final boolean info = LOGGER.isLoggable(Level.INFO);
+            final StringBuilder sb = new StringBuilder(128);
+            for (int i = 0; i < count; i++) {
+                final AsyncListener.Event event = batch[i];
+                switch (event.getType()) {
+                case called:
+                    if (info) {
+                        sb.setLength(0);
+                        LOGGER.log(Level.INFO, invoked(sb, event.getTarget(), event.getId(), event.getMethod(), event.getArgs()).toString());
+                    }
+                    break;
+                case param:
+                    if (info) {
+                        sb.setLength(0);
+                        LOGGER.log(Level.INFO, param(sb, event.getAnnotation(), event.getName(), event.getValue()).toString());
+                    }
+                    break;
+                case error:
+                    error(event.getError(), event.getTarget(), event.getMethod(), event.getArgs());
+                    break;
+                case bound:
+                    bound(event.getTarget(), event.getValue());
+                    break;
+                }
+            }
+        }
+
+        private static StringBuilder invoked(StringBuilder sb, String target, int id, String method, Object[] args) {
+            sb.append("[REST] Invoked '").append(id).append('#').append(target).append('.').append(method).append('(');
             if (args != null) {
-                for (Object o : args) {
-                    if (sb.length() > 0) {
+                for (int i = 0; i < args.length; i++) {
+                    if (i > 0) {
                         sb.append(", ");
                     }
-                    sb.append(String.valueOf(o));
-               }
+                    sb.append(String.valueOf(args[i]));
+                }
             }
-            LOGGER.log(Level.INFO, String.format("[REST] Invoked '%d#%s.%s(%s)'",	id, target, method, sb.toString()));
+            return sb.append(")'");
         }
 
-        @Override
-        public void param(String annotation, String type, String value) {
-            LOGGER.log(Level.INFO, String.format("[REST] %s '%s' = %s", annotation, type, value));
+        private static StringBuilder param(StringBuilder sb, String annotation, String type, String value) {
+            return sb.append("[REST] ").append(annotation).append(" '").append(type).append("' = ").append(value);
         }
 
         @Override
@@ -9,9 +9,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
-import javax.ws.rs.GET;
-import javax.ws.rs.POST;
-import javax.ws.rs.PUT;
+import javax.ws.rs.HttpMethod;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
@@ -27,6 +25,9 @@ public class RestServiceWrapper implements Comparable<RestServiceWrapper>, Const
     private List<MethodPattern> methodPatterns = Collections.synchronizedList(new ArrayList<MethodPattern>());
     /** 模式:单例模式/还是每次请求生成新对象 默认是instance模式 */
     private Mode mode = Mode.instance;
+    /** 每次请求生成或是池化的实例提供者，共享实例时为null */
+    private ServiceProvider provider;
+    private int poolSize;
     private RestServiceHandler.Listener listener;
 
     public RestServiceWrapper(Object target, RestServiceHandler.Listener listener) {
@@ -55,6 +56,15 @@ public class RestServiceWrapper implements Comparable<RestServiceWrapper>, Const
 //            this.service = target;
 //        }
         this.service = target;
+        this.provider = null;
+        Lifecycle lifecycle = serviceClass.getAnnotation(Lifecycle.class);
+        if(null != lifecycle) {
+            this.mode = lifecycle.value();
+            this.poolSize = lifecycle.poolSize();
+            if(Mode.singleton != mode) {
+                this.provider = ServiceProvider.of(serviceClass, mode, poolSize, ServiceProvider.NO_INJECTIONS);
+            }
+        }
 
         Produces  produces  = this.serviceClass.getAnnotation(Produces.class);
         if(null != produces) {
@@ -70,6 +80,9 @@ public class RestServiceWrapper implements Comparable<RestServiceWrapper>, Const
                 if (listener != null) {
                     methodPattern.setListener(listener);
                 }
+                if (provider != null) {
+                    methodPattern.setProvider(provider);
+                }
                 methodPatterns.add(methodPattern);
             }
         }
@@ -95,13 +108,10 @@ public class RestServiceWrapper implements Comparable<RestServiceWrapper>, Const
         String pattern = null;
         Annotation[] as = method.getDeclaredAnnotations();
         for(Annotation a : as) {
-            //Find HTTP Method
-            if(a instanceof GET) {
-                httpMethod = "GET";
-            } else if(a instanceof POST) {
-                httpMethod = "POST";
-            } else if(a instanceof PUT) {
-                httpMethod = "PUT";
+            //Find HTTP Method, @GET @POST @PUT @DELETE @HEAD @OPTIONS are annotated by @HttpMethod
+            HttpMethod verb = a.annotationType().getAnnotation(HttpMethod.class);
+            if(null != verb) {
+                httpMethod = verb.value();
             }
             if(a instanceof Path) {
                 pattern = ((Path)a).value();
@@ -122,6 +132,30 @@ public class RestServiceWrapper implements Comparable<RestServiceWrapper>, Const
         return service;
     }
 
+    /**
+     * 设置'@Resource'字段的注入计划，只对每次请求生成或是池化的实例有效
+     *
+     * @param injections The injection plan replayed on each new instance
+     */
+    void setInjections(ServiceProvider.Injection[] injections) {
+        if (null == provider) {
+            return;
+        }
+        this.provider = ServiceProvider.of(serviceClass, mode, poolSize, injections);
+        for(MethodPattern methodPattern : methodPatterns) {
+            methodPattern.setProvider(provider);
+        }
+    }
+
+    /**
+     * 取得所有REST方法的匹配器
+     *
+     * @return The sorted method patterns
+     */
+    public List<MethodPattern> getMethodPatterns() {
+        return Collections.unmodifiableList(methodPatterns);
+    }
+
     /**
      * 取得实体生成模式
      *
@@ -182,7 +216,7 @@ public class RestServiceWrapper implements Comparable<RestServiceWrapper>, Const
         String url = realUrl;
         if(!url.startsWith(this.parentPath)) {
             //前缀路径不同时 前缀路径比较
-            return new Hitting<Void>(this.parentPath.compareTo(url));
+            return Hitting.miss(this.parentPath.compareTo(url));
         }
 
         int compareRet = -1;
@@ -192,7 +226,7 @@ public class RestServiceWrapper implements Comparable<RestServiceWrapper>, Const
                 return methodPattern.getHitting();
             }
         }
-        return new Hitting<Void>(compareRet);
+        return Hitting.miss(compareRet);
     }
 
     @Override
@@ -3,19 +3,37 @@ package net.tiny.ws.rs;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringWriter;
 import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
 
-import net.tiny.config.JsonParser;
 import net.tiny.ws.BaseWebService;
 import net.tiny.ws.HttpHandlerHelper;
 import net.tiny.ws.PostParameterPaser;
@@ -26,9 +44,59 @@ import net.tiny.ws.mvc.ViewRenderer;
 
 public class RestfulHttpHandler extends BaseWebService {
 
+    static final String HEADER_RETRY_AFTER = "Retry-After";
+    static final String HEADER_RATELIMIT_LIMIT = "RateLimit-Limit";
+    static final String HEADER_RATELIMIT_REMAINING = "RateLimit-Remaining";
+    static final String HEADER_RATELIMIT_RESET = "RateLimit-Reset";
+    static final int HTTP_TOO_MANY_REQUESTS = 429;
+    static final String HEADER_ACCEPT = "Accept";
+
+    /** The timer of asynchronous results, shared by all handlers */
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+    /** The writers of asynchronous responses when the server has no executor, shared by all handlers */
+    private static final ExecutorService RESPONDER = Executors.newCachedThreadPool(r -> {
+        final Thread thread = new Thread(r, "rest-response");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private RestServiceHandler.Listener listener;
     private RestServiceFactory factory;
     private ViewRenderer renderer;
+    private int routeCacheSize = 0;
+    /** The maximum bytes of a JSON body sent with 'Content-Length', chunked over it */
+    private int chunkedThreshold = ResponseWriter.BUFFER_SIZE;
+    /** The minimum bytes of a body compressed by 'Accept-Encoding', negative is disabled */
+    private int compressThreshold = Compression.DEFAULT_THRESHOLD;
+    /** The default timeout in milliseconds, 0 is not limited */
+    private long timeout = 0L;
+    /** Interrupt the thread of REST method when its deadline passed */
+    private boolean interruptOnDeadline = true;
+    /** Invoke REST methods on virtual threads, see {@link #setVirtualThreads(boolean)} */
+    private ExecutorService dispatcher;
+    /** The default bulkhead of each route without @Bulkhead, 0 is not limited */
+    private int maxConcurrency = 0;
+    private int maxQueued = 0;
+    private long maxWait = 0L;
+    private int retryAfter = 1;
+    private final LongAdder rejected = new LongAdder();
+    /** The default rate limit of each route without @RateLimit, 0 is not limited */
+    private int rateLimit = 0;
+    private int rateBurst = 0;
+    private boolean rateLimitPerClient = false;
+    private final LongAdder throttled = new LongAdder();
+    /** The negotiations of handlers other than MethodPattern */
+    private final ConcurrentHashMap<RestServiceHandler, Negotiation> negotiations = new ConcurrentHashMap<>();
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            final Thread thread = new Thread(r, "rest-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
 
     protected RestServiceFactory getRestServiceFactory() {
         if (null == factory) {
@@ -45,12 +113,173 @@ public class RestfulHttpHandler extends BaseWebService {
         this.renderer = renderer;
     }
 
+    /**
+     * @param size The maximum count of cached route URIs, 0 is disabled
+     */
+    public void setRouteCacheSize(int size) {
+        this.routeCacheSize = size;
+        if (null != factory) {
+            factory.setRouteCacheSize(size);
+        }
+    }
+
+    /**
+     * 设置JSON响应改为分块传输的大小
+     *
+     * @param bytes The maximum bytes of a JSON body sent with 'Content-Length', not over 16KB
+     */
+    public void setChunkedThreshold(int bytes) {
+        this.chunkedThreshold = Math.max(0, Math.min(bytes, ResponseWriter.BUFFER_SIZE));
+    }
+
+    /**
+     * 设置压缩响应的最小大小，只压缩文本类型的响应
+     *
+     * @param bytes The minimum bytes of a body compressed by 'Accept-Encoding', negative is disabled
+     */
+    public void setCompressThreshold(int bytes) {
+        this.compressThreshold = bytes;
+    }
+
+    /**
+     * 设置没有@Timeout的REST方法的超时时间
+     *
+     * @param millis The default timeout in milliseconds, 0 is not limited
+     */
+    public void setTimeout(long millis) {
+        this.timeout = Math.max(0L, millis);
+    }
+
+    /**
+     * 截止时间到期时中断REST方法的线程
+     * <p>
+     * By default the thread invoking the method, a worker thread of server or a virtual thread,
+     * is interrupted when the deadline passed, its interrupt is cleared when the method returned.
+     * When disabled the 504 response is still sent at once, the method runs to its end
+     * and its result is discarded.
+     *
+     * @param enabled true to interrupt the invoking thread when the deadline passed, the default
+     */
+    public void setInterruptOnDeadline(boolean enabled) {
+        this.interruptOnDeadline = enabled;
+    }
+
+    /**
+     * 设置没有@Bulkhead的REST方法的并发限制，每个路由分别计数
+     *
+     * @param max The maximum count of concurrent calls per route, 0 is not limited
+     */
+    public void setMaxConcurrency(int max) {
+        this.maxConcurrency = Math.max(0, max);
+    }
+
+    /**
+     * @param max The maximum count of requests wait for the bulkhead per route
+     */
+    public void setMaxQueued(int max) {
+        this.maxQueued = Math.max(0, max);
+    }
+
+    /**
+     * @param millis The maximum time to wait for the bulkhead in milliseconds
+     */
+    public void setMaxWait(long millis) {
+        this.maxWait = Math.max(0L, millis);
+    }
+
+    /**
+     * @param seconds The value of 'Retry-After' header when rejected by the bulkhead
+     */
+    public void setRetryAfter(int seconds) {
+        this.retryAfter = Math.max(0, seconds);
+    }
+
+    /**
+     * @return The count of requests rejected by the bulkheads
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * 设置没有@RateLimit的REST方法的请求速率限制，每个路由分别计数
+     *
+     * @param permits The count of requests per second per route, 0 is not limited
+     */
+    public void setRateLimit(int permits) {
+        this.rateLimit = Math.max(0, permits);
+    }
+
+    /**
+     * @param burst The maximum count of requests in a burst, 0 is same as the rate limit
+     */
+    public void setRateBurst(int burst) {
+        this.rateBurst = Math.max(0, burst);
+    }
+
+    /**
+     * @param enabled true to limit the rate of each client address separately
+     */
+    public void setRateLimitPerClient(boolean enabled) {
+        this.rateLimitPerClient = enabled;
+    }
+
+    /**
+     * @return The count of requests rejected by the rate limits
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * The limiters are kept by the routes, released with the routes reloaded
+     */
+    private RateLimiter rateLimiter(RestServiceHandler handler) {
+        return handler instanceof MethodPattern
+                ? ((MethodPattern)handler).getRateLimiter(rateLimit, rateBurst, rateLimitPerClient) : null;
+    }
+
+    private ConcurrencyLimit concurrencyLimit(RestServiceHandler handler) {
+        return handler instanceof MethodPattern
+                ? ((MethodPattern)handler).getConcurrencyLimit(maxConcurrency, maxQueued, maxWait, retryAfter) : null;
+    }
+
+    /**
+     * 在虚拟线程上调用REST方法，JDK 21以前的运行环境上无效
+     * <p>
+     * The worker thread returns after dispatched, the blocking REST methods
+     * no longer limit the concurrency to the size of worker pool.
+     *
+     * @param enabled true to invoke REST methods on virtual threads
+     */
+    public void setVirtualThreads(boolean enabled) {
+        this.dispatcher = enabled ? VirtualThreads.executor() : null;
+        if (enabled && null == dispatcher) {
+            LOGGER.warning(String.format("[REST] '%s' virtual threads are not supported, invoke on worker threads.", path()));
+        }
+    }
+
+    public boolean isVirtualThreads() {
+        return null != dispatcher;
+    }
+
+    /**
+     * The exchange can be suspended when a REST method returns a CompletionStage
+     */
+    @Override
+    public void handle(HttpExchange he) throws IOException {
+        super.handle(AsyncExchange.of(he));
+    }
+
     /**
      * Call by RestServiceLocator#accept method
      */
     public RestServiceWrapper[] setupRestServiceFactory() {
         if (null == factory) {
             factory = new RestServiceFactory(path(), context, listener);
+            if (routeCacheSize > 0) {
+                factory.setRouteCacheSize(routeCacheSize);
+            }
         }
         return factory.getWrapperServices();
     }
@@ -70,6 +299,16 @@ public class RestfulHttpHandler extends BaseWebService {
         // Get a instance of MethodPattern
         RestServiceHandler handler = getRestServiceFactory().getRestServiceHandler(request.getURI(), request.getMethod(), args);
         if (null == handler) {
+            final String allow = getRestServiceFactory().getAllowedMethods(request.getURI(), request.getMethod());
+            if (null != allow) {
+                // The path was defined under other methods
+                HttpHandlerHelper.getHeaderHelper(he).set(HEADER_ALLOW, allow);
+                he.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(String.format("[REST] - %s '%s' 405 Method not allowed", request.getMethod(), request.getURI()));
+                }
+                return;
+            }
             // Not found service
             he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
             if (LOGGER.isLoggable(Level.FINE)) {
@@ -78,13 +317,105 @@ public class RestfulHttpHandler extends BaseWebService {
             return;
         }
 
-        //
-//        if (!handler.acceptableMediaType(MIME_TYPE.JSON.name())) {
-//            he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_ACCEPTABLE, -1);
-//            LOGGER.info(String.format("[REST] - '%s' 404 Not found", request.getURI()));
-//            return;
-//        }
+        final Negotiation.Choice choice = negotiate(handler, request);
+        if (null == choice) {
+            // None of @Produces is acceptable
+            he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_ACCEPTABLE, -1);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(String.format("[REST] - %s '%s' 406 Not acceptable '%s'", request.getMethod(), request.getURI(),
+                        request.getHeaders().getFirst(HEADER_ACCEPT)));
+            }
+            return;
+        }
+
+        final RateLimiter limiter = rateLimiter(handler);
+        if (null != limiter) {
+            final String client = limiter.isPerClient() ? String.valueOf(getClientAddress(he, String.class)) : null;
+            final long remaining = limiter.acquire(client);
+            final ResponseHeaderHelper header = HttpHandlerHelper.getHeaderHelper(he);
+            header.set(HEADER_RATELIMIT_LIMIT, String.valueOf(limiter.getLimit()));
+            if (remaining < 0L) {
+                // Over the rate limit of route
+                throttled.increment();
+                final String reset = String.valueOf(RateLimiter.seconds(-remaining));
+                header.set(HEADER_RATELIMIT_REMAINING, "0");
+                header.set(HEADER_RATELIMIT_RESET, reset);
+                header.set(HEADER_RETRY_AFTER, reset);
+                he.sendResponseHeaders(HTTP_TOO_MANY_REQUESTS, -1);
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(String.format("[REST] - %s '%s' 429 Rejected by rate limit %s %s",
+                            request.getMethod(), request.getURI(), limiter, null != client ? client : ""));
+                }
+                return;
+            }
+            header.set(HEADER_RATELIMIT_REMAINING, String.valueOf(remaining));
+        }
+
+        final ResponseCache cache = responseCache(handler, method);
+        ResponseCache.Fill fill = null;
+        if (null != cache) {
+            final String key = ResponseCache.key(he.getRequestURI(), choice.type);
+            final ResponseCache.Entry entry = cache.get(key);
+            if (null != entry && (entry.isFresh() || !entry.revalidate())) {
+                // Fresh, or stale while another request revalidates it
+                sendCached(he, handler, entry);
+                return;
+            }
+            fill = cache.fill(key, entry);
+        }
+
+        try {
+            // The time waiting for the bulkhead is a part of the deadline
+            final long limitMillis = handler.getTimeout() > 0L ? handler.getTimeout() : timeout;
+            final Deadline deadline = limitMillis > 0L ? new Deadline(limitMillis) : null;
+            final ConcurrencyLimit limit = concurrencyLimit(handler);
+            if (null != limit && !limit.acquire()) {
+                // Over the bulkhead of route
+                rejected.increment();
+                HttpHandlerHelper.getHeaderHelper(he).set(HEADER_RETRY_AFTER, String.valueOf(limit.getRetryAfter()));
+                he.sendResponseHeaders(HttpURLConnection.HTTP_UNAVAILABLE, -1);
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(String.format("[REST] - %s '%s' 503 Rejected by bulkhead %s", request.getMethod(), request.getURI(), limit));
+                }
+                return;
+            }
+            CompletionStage<?> running = null;
+            try {
+                running = invoke(method, he, request, handler, args, formRequested, deadline, choice, fill);
+            } finally {
+                if (null != limit) {
+                    // Released when the method returned, not when its response was sent by the deadline
+                    if (null != running) {
+                        running.whenComplete((value, error) -> limit.release());
+                    } else {
+                        limit.release();
+                    }
+                }
+            }
+        } finally {
+            if (null != fill) {
+                // Not cached when not sent, the stale response is revalidated by the next request
+                final ResponseCache.Fill unsent = fill;
+                afterResponse(he, () -> unsent.complete(null));
+            }
+        }
+    }
+
+    /**
+     * Run the task after the suspended exchange resumed, or at once when not suspended
+     */
+    private static void afterResponse(HttpExchange he, Runnable task) {
+        if (!(he instanceof Suspendable && ((Suspendable)he).onResume(task))) {
+            task.run();
+        }
+    }
 
+    /**
+     * @return The invocation still running after the response was scheduled, or null if finished
+     */
+    private CompletionStage<?> invoke(HTTP_METHOD method, HttpExchange he, RequestHelper request, RestServiceHandler handler,
+            Map<String, Object> args, boolean formRequested, Deadline deadline, Negotiation.Choice choice,
+            ResponseCache.Fill fill) throws IOException {
         byte[] contents = null;
         switch(method) {
         case PUT:
@@ -96,106 +427,344 @@ public class RestfulHttpHandler extends BaseWebService {
             break;
         }
 
-        final Object[] params = getRestServiceFactory().convertArguments(he, args, handler.getMethod(), contents);
+        final Object[] params = getRestServiceFactory().convertArguments(he, args, handler, contents);
         try {
             if (formRequested && isPageFormMapRequest(params, handler.getMethod())) {
                 // When Form POST, Setting Map parameters
                 params[0] = args;
             }
-            final Object result = handler.invoke(params);
-            if (result != null) {
-                if (requestedMediaType(handler, MediaType.TEXT_HTML_TYPE) && result instanceof ModelAndView && renderer != null) {
-                    // Return text/html response
-                    final ModelAndView mv = (ModelAndView)result;
-                    mv.setReferer(request.getReferer());
-                    renderer.render(he, mv, handler.getMethod().getAnnotations(), MediaType.TEXT_HTML_TYPE, request.getHeaders());
-                } else if (requestedMediaType(handler, MediaType.APPLICATION_JSON_TYPE) && result instanceof Response) {
-                    // Send json response
-                    final Response response = (Response)result;
-                    response.send(he);
-                } else if (requestedMediaType(handler, MediaType.APPLICATION_JSON_TYPE)) {
-                    // Return json response
-                    final ResponseHeaderHelper header = HttpHandlerHelper.getHeaderHelper(he);
-                    final String response = JsonParser.marshal(result);
-                    final byte[] rawResponse = response.getBytes(StandardCharsets.UTF_8);
-                    header.setContentType(MIME_TYPE.JSON);
-                    he.sendResponseHeaders(HttpURLConnection.HTTP_OK, rawResponse.length);
-                    he.getResponseBody().write(rawResponse);
+            if (null != dispatcher && he instanceof Suspendable) {
+                // Invoke on a virtual thread, and complete the exchange there
+                final CompletionStage<Object> running = dispatch(handler, params, deadline);
+                complete(he, request, handler, choice, fill, running, deadline);
+                return running;
+            }
+            if (null != deadline && he instanceof Suspendable) {
+                // Reply 504 by the timer without waiting for the method
+                final CompletableFuture<Object> future = new CompletableFuture<>();
+                complete(he, request, handler, choice, fill, future, deadline);
+                try {
+                    // The worker thread of server is not left blocked after the deadline if interrupted
+                    final Object result = call(handler, params, deadline, interruptOnDeadline);
+                    if (result instanceof CompletionStage) {
+                        ((CompletionStage<?>)result).whenComplete((value, error) -> {
+                            if (error != null) {
+                                future.completeExceptionally(error);
+                            } else {
+                                future.complete(value);
+                            }
+                        });
+                    } else {
+                        future.complete(result);
+                    }
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+                return future;
+            }
+            final Object result = call(handler, params, deadline, interruptOnDeadline);
+            if (result instanceof CompletionStage) {
+                // Complete the exchange when the result is completed
+                complete(he, request, handler, choice, fill, (CompletionStage<?>)result, deadline);
+                return (CompletionStage<?>)result;
+            }
+            send(he, request, handler, choice, fill, result);
+        } catch (ApplicationException err) {
+            sendError(he, request, handler, err);
+        }
+        return null;
+    }
+
+    /**
+     * @param choice The response writers negotiated by {@link #negotiate(RestServiceHandler, RequestHelper)}
+     * @param fill The filler of response cache, or null
+     */
+    private void send(HttpExchange he, RequestHelper request, RestServiceHandler handler, Negotiation.Choice choice,
+            ResponseCache.Fill fill, Object result) throws IOException {
+        if (null != fill) {
+            final ResponseCache.Entry entry = result != null && null != choice ? toCacheEntry(handler, choice, result) : null;
+            fill.complete(entry);
+            if (null != entry) {
+                sendCached(he, handler, entry);
+                return;
+            }
+        }
+        final boolean tagged = isTagged(handler);
+        if (result != null && null != choice) {
+            if (choice.html && result instanceof ModelAndView && renderer != null) {
+                // Return text/html response
+                final ModelAndView mv = (ModelAndView)result;
+                mv.setReferer(request.getReferer());
+                renderer.render(he, mv, handler.getMethod().getAnnotations(), MediaType.TEXT_HTML_TYPE, request.getHeaders());
+            } else if (Streaming.isStreaming(result, choice)) {
+                // Write the result as it is produced, or the elements as NDJSON
+                Streaming.send(he, result, choice, chunkedThreshold, compressThreshold);
+            } else if (choice.json && result instanceof Response) {
+                // Send json response
+                final Response response = (Response)result;
+                response.send(he, chunkedThreshold, compressThreshold, tagged);
+            } else if (choice.json) {
+                // Return json response
+                final ResponseHeaderHelper header = HttpHandlerHelper.getHeaderHelper(he);
+                header.setContentType(MIME_TYPE.JSON);
+                final JsonSerializer serializer = handler instanceof MethodPattern
+                        ? ((MethodPattern)handler).getSerializer(result) : JsonSerializer.of(result.getClass());
+                ResponseWriter.send(he, HttpURLConnection.HTTP_OK, chunkedThreshold, compressThreshold, tagged,
+                        writer -> writer.json(result, serializer));
+            } else if (result instanceof byte[]) {
+                // Return binary response
+                final ResponseHeaderHelper header = HttpHandlerHelper.getHeaderHelper(he);
+                final byte[] rawResponse =  (byte[])result;
+                header.setContentType(choice.binary);
+                if (tagged) {
+                    Conditional.send(he, rawResponse, compressThreshold);
                 } else {
-                    // Return binary response
-                    final ResponseHeaderHelper header = HttpHandlerHelper.getHeaderHelper(he);
-                    final byte[] rawResponse =  (byte[])result;
-                    header.setContentType(responseMimeType(handler));
-                    he.sendResponseHeaders(HttpURLConnection.HTTP_OK, rawResponse.length);
-                    he.getResponseBody().write(rawResponse);
+                    Compression.send(he, HttpURLConnection.HTTP_OK, rawResponse, compressThreshold);
                 }
             } else {
-                he.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+                // Return text response, such as text/plain
+                HttpHandlerHelper.getHeaderHelper(he).setContentType(choice.binary);
+                ResponseWriter.send(he, HttpURLConnection.HTTP_OK, chunkedThreshold, compressThreshold, tagged,
+                        writer -> writer.write(result.toString()));
             }
-        } catch (ApplicationException err) {
-            Throwable cause = err.getCause();
-            if (cause == null) {
-                cause = err;
+        } else if (result != null) {
+            he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_ACCEPTABLE, -1);
+        } else {
+            he.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+        }
+    }
+
+    private boolean isTagged(RestServiceHandler handler) {
+        return handler instanceof MethodPattern && ((MethodPattern)handler).isTagged();
+    }
+
+    private ResponseCache responseCache(RestServiceHandler handler, HTTP_METHOD method) {
+        return HTTP_METHOD.GET == method && handler instanceof MethodPattern
+                ? ((MethodPattern)handler).getResponseCache() : null;
+    }
+
+    /**
+     * Serialize a result same as {@link #send(HttpExchange, RequestHelper, RestServiceHandler, Negotiation.Choice, ResponseCache.Fill, Object)}
+     *
+     * @return The serialized response, null if not cacheable
+     */
+    private ResponseCache.Entry toCacheEntry(RestServiceHandler handler, Negotiation.Choice choice, Object result) throws IOException {
+        if (choice.html && result instanceof ModelAndView && renderer != null) {
+            return null;
+        } else if (Streaming.isStreaming(result)) {
+            return null;
+        } else if (Streaming.isLines(result, choice)) {
+            final StringWriter out = new StringWriter();
+            Streaming.lines(((Iterable<?>)result).iterator(), out);
+            final Map<String, List<String>> headers = new HashMap<>();
+            headers.put("Content-Type", Collections.singletonList(Streaming.NDJSON));
+            return new ResponseCache.Entry(null, headers, out.toString().getBytes(StandardCharsets.UTF_8));
+        } else if (choice.json && result instanceof Response) {
+            return ((Response)result).toCacheEntry();
+        } else if (choice.json) {
+            final JsonSerializer serializer = handler instanceof MethodPattern
+                    ? ((MethodPattern)handler).getSerializer(result) : JsonSerializer.of(result.getClass());
+            final StringWriter out = new StringWriter();
+            serializer.write(result, out);
+            return new ResponseCache.Entry(MIME_TYPE.JSON, null, out.toString().getBytes(StandardCharsets.UTF_8));
+        } else if (result instanceof byte[]) {
+            return new ResponseCache.Entry(choice.binary, null, ((byte[])result).clone());
+        } else {
+            return new ResponseCache.Entry(choice.binary, null, result.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Send a cached response, with its ETag or as 304 Not Modified
+     */
+    private void sendCached(HttpExchange he, RestServiceHandler handler, ResponseCache.Entry entry) throws IOException {
+        final Headers headers = he.getResponseHeaders();
+        if (null != entry.type) {
+            HttpHandlerHelper.getHeaderHelper(he).setContentType(entry.type);
+        }
+        for (Map.Entry<String, List<String>> header : entry.headers.entrySet()) {
+            for (String value : header.getValue()) {
+                headers.add(header.getKey(), value);
             }
-            he.setAttribute(Throwable.class.getName(), cause);
-            LOGGER.log(Level.WARNING, String.format("[REST] - %s '%s' %d %s. On call '%s(...)'",
-                    request.getMethod(), request.getURI(), err.getStatus(), err.getMessage(), handler.toString()), cause);
-            he.sendResponseHeaders(err.getStatus(), -1);
+        }
+        final String etag = headers.getFirst(Conditional.HEADER_ETAG);
+        if (null == etag && isTagged(handler)) {
+            Conditional.send(he, entry.body, compressThreshold);
+        } else if (Conditional.notModified(he, etag)) {
+            Conditional.sendNotModified(he);
+        } else {
+            Compression.send(he, HttpURLConnection.HTTP_OK, entry.body, compressThreshold);
         }
     }
 
-    private boolean isPageFormRequest(RequestHelper request) {
-        final String contentType = request.getContentType();
-        return "POST".equals(request.getMethod())
-                && (!contentType.contains("json") || contentType.contains("x-www-form-urlencoded"));
+    /**
+     * @return The response writers acceptable by the client, null if none of @Produces is acceptable
+     */
+    private Negotiation.Choice negotiate(RestServiceHandler handler, RequestHelper request) {
+        final Negotiation negotiation;
+        if (handler instanceof MethodPattern) {
+            negotiation = ((MethodPattern)handler).getNegotiation();
+        } else {
+            negotiation = negotiations.computeIfAbsent(handler, h -> {
+                final Produces produces = h.getMethod().getAnnotation(Produces.class);
+                return new Negotiation(null != produces ? produces.value() : null);
+            });
+        }
+        return negotiation.negotiate(request.getHeaders().getFirst(HEADER_ACCEPT));
     }
 
-    private boolean isPageFormMapRequest(Object[] params, Method method) {
-        return params.length > 0 && params[0] == null
-                && method.getParameterCount() == 1
-                && Map.class.equals(method.getParameterTypes()[0]);
+    private void sendError(HttpExchange he, RequestHelper request, RestServiceHandler handler, ApplicationException err) throws IOException {
+        Throwable cause = err.getCause();
+        if (cause == null) {
+            cause = err;
+        }
+        he.setAttribute(Throwable.class.getName(), cause);
+        LOGGER.log(Level.WARNING, String.format("[REST] - %s '%s' %d %s. On call '%s(...)'",
+                request.getMethod(), request.getURI(), err.getStatus(), err.getMessage(), handler.toString()), cause);
+        if (he.getResponseCode() >= 0) {
+            // The headers were sent with a chunked body, the status can not be changed
+            he.close();
+            return;
+        }
+        he.sendResponseHeaders(err.getStatus(), -1);
     }
 
-    private boolean requestedMediaType(RestServiceHandler handler, MediaType mediaType) {
-        final Produces produces = handler.getMethod().getAnnotation(Produces.class);
-        boolean requested = false;
-        for (String type : produces.value()) {
-            requested = matchesType(type, mediaType);
-            if (requested)
-                break;
-        }
-        return requested;
-    }
-
-    private MIME_TYPE responseMimeType(RestServiceHandler handler) {
-        final Produces produces = handler.getMethod().getAnnotation(Produces.class);
-        String mimeType = null;
-        for (String type : produces.value()) {
-            if (MediaType.APPLICATION_OCTET_STREAM.equals(type)) {
-                return MIME_TYPE.DAT;
-            } else if (MediaType.TEXT_PLAIN.equals(type)) {
-                return MIME_TYPE.TXT;
-            } else if (MediaType.APPLICATION_XML.equals(type)) {
-                return MIME_TYPE.XML;
-            } else if (MediaType.APPLICATION_SVG_XML.equals(type)) {
-                return MIME_TYPE.SVG;
+    /**
+     * 异步结果完成时发送响应
+     * <p>
+     * The worker thread returns at once, the response is sent by the thread completes the result.
+     * When the exchange can not be suspended, the worker thread waits for the result.
+     */
+    private void complete(HttpExchange he, RequestHelper request, RestServiceHandler handler, Negotiation.Choice choice,
+            ResponseCache.Fill fill, CompletionStage<?> stage, Deadline deadline) throws IOException {
+        final long limit = null != deadline ? deadline.getTimeout() : 0L;
+        if (!(he instanceof Suspendable)) {
+            try {
+                final CompletableFuture<?> future = stage.toCompletableFuture();
+                send(he, request, handler, choice, fill, null != deadline
+                        ? future.get(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS) : future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sendError(he, request, handler, failure(e, limit));
+            } catch (ExecutionException | TimeoutException e) {
+                sendError(he, request, handler, failure(e, limit));
+            } catch (ApplicationException e) {
+                sendError(he, request, handler, e);
+            }
+            return;
+        }
+        final Suspendable exchange = (Suspendable)he;
+        exchange.suspend();
+        // Not complete the future of REST method by the timeout
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        stage.whenComplete((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
             } else {
-                mimeType = type;
+                result.complete(value);
             }
+        });
+        if (null != deadline && !result.isDone()) {
+            final ScheduledFuture<?> timer = TIMER.schedule(() -> {
+                        deadline.expire();
+                        result.completeExceptionally(new TimeoutException(limit + "ms"));
+                    }, deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+            result.whenComplete((value, error) -> timer.cancel(false));
         }
-        if (mimeType != null) {
+        // Not write the response on the thread of timer or of the completing method
+        result.whenComplete((value, error) -> respond(he, () -> {
             try {
-                return MIME_TYPE.valueOf(mimeType);
-            } catch (RuntimeException e) {
-                LOGGER.warning(String.format("[REST] - Unknow mime type '%s'", mimeType));
-                return MIME_TYPE.TXT;
+                if (error != null) {
+                    sendError(he, request, handler, failure(error, limit));
+                } else {
+                    send(he, request, handler, choice, fill, value);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, String.format("[REST] - %s '%s' asynchronous response error : %s",
+                        request.getMethod(), request.getURI(), e.getMessage()), e);
+                if (he.getResponseCode() < 0) {
+                    // The headers are not sent yet
+                    try {
+                        he.sendResponseHeaders(HttpURLConnection.HTTP_INTERNAL_ERROR, -1);
+                    } catch (IOException ignore) {
+                        // The connection is closed with the exchange
+                    }
+                }
+            } finally {
+                exchange.resume();
             }
-        } else {
-            return MIME_TYPE.TXT;
+        }));
+    }
+
+    /**
+     * Write an asynchronous response by the dispatcher, or by the executor of server
+     */
+    private void respond(HttpExchange he, Runnable task) {
+        Executor executor = dispatcher;
+        if (null == executor) {
+            final HttpContext context = he.getHttpContext();
+            executor = null != context && null != context.getServer() ? context.getServer().getExecutor() : null;
+        }
+        try {
+            (null != executor ? executor : RESPONDER).execute(task);
+        } catch (RejectedExecutionException e) {
+            // The executor was shut down
+            task.run();
         }
     }
 
-    private boolean matchesType(String type, MediaType mediaType) {
-        return type.contains(mediaType.getType()) && type.contains(mediaType.getSubtype());
+    private CompletionStage<Object> dispatch(RestServiceHandler handler, Object[] params, Deadline deadline) {
+        return CompletableFuture.supplyAsync(() -> call(handler, params, deadline, interruptOnDeadline), dispatcher)
+                .thenCompose(result -> result instanceof CompletionStage
+                        ? ((CompletionStage<?>)result).thenApply(value -> (Object)value)
+                        : CompletableFuture.completedFuture(result));
+    }
+
+    /**
+     * 在截止时间内调用REST方法，方法及其@Resource可以通过{@link Deadline#current()}取得截止时间
+     *
+     * @param interrupt true to interrupt the invoking thread when the deadline passed
+     */
+    private Object call(RestServiceHandler handler, Object[] params, Deadline deadline, boolean interrupt) {
+        if (null == deadline) {
+            return handler.invoke(params);
+        }
+        final Deadline previous = deadline.enter(interrupt);
+        try {
+            deadline.check();
+            return handler.invoke(params);
+        } finally {
+            deadline.exit(previous);
+        }
+    }
+
+    private static ApplicationException failure(Throwable error, long limit) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof ApplicationException) {
+            return (ApplicationException)cause;
+        }
+        if (cause instanceof TimeoutException) {
+            return new ApplicationException(String.format("Not completed in %dms", limit), cause, HttpURLConnection.HTTP_GATEWAY_TIMEOUT);
+        }
+        final Throwable found = ApplicationException.findCause(cause, 3, 0);
+        if (found instanceof ApplicationException) {
+            return (ApplicationException)found;
+        }
+        return new ApplicationException(cause, HttpURLConnection.HTTP_INTERNAL_ERROR);
+    }
+
+    private boolean isPageFormRequest(RequestHelper request) {
+        final String contentType = request.getContentType();
+        return "POST".equals(request.getMethod())
+                && (!contentType.contains("json") || contentType.contains("x-www-form-urlencoded"));
+    }
+
+    private boolean isPageFormMapRequest(Object[] params, Method method) {
+        return params.length > 0 && params[0] == null
+                && method.getParameterCount() == 1
+                && Map.class.equals(method.getParameterTypes()[0]);
     }
 }
@@ -0,0 +1,145 @@
+package net.tiny.ws.rs;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已解析路由的缓存 (Bounded cache of resolved routes)
+ * <p>
+ * Maps the HTTP method and the raw request URI to the hit {@link MethodPattern} and
+ * its extracted arguments. Only hits are cached. Lookups never lock, the entries are
+ * keyed by URI in one map per HTTP method, so no key is allocated on a lookup.
+ * When the cache is over the maximum size, one thread evicts the least recently used
+ * entries in a batch, while the other threads go on.
+ * A cache belongs to one {@link RouteTable}, and is dropped together with it.
+ */
+final class RouteCache {
+
+    private final int maximumSize;
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Entry>> methods = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    RouteCache(final int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("The size of route cache must be positive - " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * @param uri The raw request URI
+     * @param httpMethod The HTTP method of request
+     * @param args The map of parsed arguments, the cached arguments are put in it
+     * @return The cached method pattern, or null
+     */
+    MethodPattern get(final String uri, final String httpMethod, final Map<String, Object> args) {
+        final ConcurrentHashMap<String, Entry> entries = methods.get(httpMethod);
+        final Entry entry = entries == null ? null : entries.get(uri);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        entry.accessed = System.nanoTime();
+        if (null != args && !entry.args.isEmpty()) {
+            args.putAll(entry.args);
+        }
+        return entry.pattern;
+    }
+
+    void put(final String uri, final String httpMethod, final MethodPattern pattern, final Map<String, Object> args) {
+        final ConcurrentHashMap<String, Entry> entries =
+                methods.computeIfAbsent(httpMethod, m -> new ConcurrentHashMap<>());
+        final Map<String, Object> copied = args.isEmpty()
+                ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(args));
+        if (null == entries.putIfAbsent(uri, new Entry(pattern, copied))
+                && size.incrementAndGet() > maximumSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Remove the least recently used entries, an eighth of the maximum size at once.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final int excess = size.get() - maximumSize + Math.max(1, maximumSize / 8);
+            long[] stamps = new long[size.get()];
+            int count = 0;
+            for (ConcurrentHashMap<String, Entry> entries : methods.values()) {
+                for (Entry entry : entries.values()) {
+                    if (count == stamps.length) {
+                        stamps = Arrays.copyOf(stamps, count * 2 + 1);
+                    }
+                    stamps[count++] = entry.accessed;
+                }
+            }
+            if (count == 0 || excess <= 0) {
+                return;
+            }
+            Arrays.sort(stamps, 0, count);
+            final long threshold = stamps[Math.min(excess, count) - 1];
+            int removed = 0;
+            for (ConcurrentHashMap<String, Entry> entries : methods.values()) {
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    if (removed >= excess) {
+                        return;
+                    }
+                    if (e.getValue().accessed <= threshold && entries.remove(e.getKey(), e.getValue())) {
+                        size.decrementAndGet();
+                        evictions.increment();
+                        removed++;
+                    }
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size:%d/%d hits:%d misses:%d evictions:%d",
+                size(), maximumSize, hits(), misses(), evictions());
+    }
+
+    static final class Entry {
+        final MethodPattern pattern;
+        final Map<String, Object> args;
+        volatile long accessed = System.nanoTime();
+
+        Entry(MethodPattern pattern, Map<String, Object> args) {
+            this.pattern = pattern;
+            this.args = args;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package net.tiny.ws.rs;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 按HTTP方法分区的路由表 (Route table partitioned by HTTP method)
+ * <p>
+ * Each HTTP method has its own {@link RouteTree}, so a lookup only touches the routes of
+ * the requested verb. The routes without a HTTP method annotation accept any verb and
+ * are added to every partition in their original order.
+ * When a path is only defined under other verbs, {@link #allow(String, String)} returns the
+ * precomputed value of 'Allow' header for the response of 405 Method Not Allowed.
+ * The optional {@link RouteCache} is owned by the table, a new table always starts with an empty cache.
+ * <p>
+ * A table is never changed after built. {@link RestServiceFactory#setup()} builds a new table
+ * aside and publishes it by one volatile reference, the requests in flight go on with the old one.
+ */
+final class RouteTable {
+
+    /** Over this count of verbs, the 'Allow' header is not precomputed */
+    private static final int MAX_PRECOMPUTED_VERBS = 8;
+
+    private final String[] verbs;
+    private final RouteTree[] trees;
+    private final Map<String, RouteTree> partitions;
+    /** The routes accept any HTTP method */
+    private final RouteTree any;
+    /** The values of 'Allow' header, indexed by the bit mask of verbs */
+    private final String[] allows;
+    private final int size;
+    /** The cache of resolved routes, null if disabled */
+    private final RouteCache cache;
+    /** The sorted REST services of this table */
+    private final RestServiceWrapper[] services;
+
+    /**
+     * @param patterns All method patterns sorted in the priority of lookup
+     */
+    RouteTable(final List<MethodPattern> patterns) {
+        this(patterns, 0);
+    }
+
+    /**
+     * @param patterns All method patterns sorted in the priority of lookup
+     * @param cacheSize The maximum size of route cache, 0 is disabled
+     */
+    RouteTable(final List<MethodPattern> patterns, final int cacheSize) {
+        this(new RestServiceWrapper[0], patterns, cacheSize);
+    }
+
+    /**
+     * @param services The REST services sorted by path
+     * @param cacheSize The maximum size of route cache, 0 is disabled
+     */
+    RouteTable(final RestServiceWrapper[] services, final int cacheSize) {
+        this(services, patterns(services), cacheSize);
+    }
+
+    private RouteTable(final RestServiceWrapper[] services, final List<MethodPattern> patterns, final int cacheSize) {
+        this.services = services.clone();
+        final TreeSet<String> methods = new TreeSet<>();
+        final List<MethodPattern> wildcards = new ArrayList<>();
+        for (MethodPattern pattern : patterns) {
+            if (null != pattern.getHttpMethod()) {
+                methods.add(pattern.getHttpMethod());
+            } else {
+                wildcards.add(pattern);
+            }
+        }
+        this.verbs = methods.toArray(new String[methods.size()]);
+        this.trees = new RouteTree[verbs.length];
+        this.partitions = new HashMap<>();
+        for (int i = 0; i < verbs.length; i++) {
+            final List<MethodPattern> partition = new ArrayList<>();
+            for (MethodPattern pattern : patterns) {
+                if (null == pattern.getHttpMethod() || verbs[i].equals(pattern.getHttpMethod())) {
+                    partition.add(pattern);
+                }
+            }
+            trees[i] = new RouteTree(partition);
+            partitions.put(verbs[i], trees[i]);
+        }
+        this.any = new RouteTree(wildcards);
+        this.size = patterns.size();
+        if (verbs.length <= MAX_PRECOMPUTED_VERBS) {
+            allows = new String[1 << verbs.length];
+            for (int mask = 1; mask < allows.length; mask++) {
+                allows[mask] = join(mask);
+            }
+        } else {
+            allows = null;
+        }
+        this.cache = cacheSize > 0 ? new RouteCache(cacheSize) : null;
+    }
+
+    RouteTable() {
+        this(Collections.emptyList());
+    }
+
+    private RouteTable(final RouteTable table, final int cacheSize) {
+        this.verbs = table.verbs;
+        this.trees = table.trees;
+        this.partitions = table.partitions;
+        this.any = table.any;
+        this.allows = table.allows;
+        this.size = table.size;
+        this.services = table.services;
+        this.cache = cacheSize > 0 ? new RouteCache(cacheSize) : null;
+    }
+
+    private static List<MethodPattern> patterns(final RestServiceWrapper[] services) {
+        final List<MethodPattern> patterns = new ArrayList<>();
+        for (RestServiceWrapper wrapper : services) {
+            patterns.addAll(wrapper.getMethodPatterns());
+        }
+        return patterns;
+    }
+
+    /**
+     * @param cacheSize The maximum size of route cache, 0 is disabled
+     * @return The table shares the same routes with a new cache
+     */
+    RouteTable withCache(final int cacheSize) {
+        return new RouteTable(this, cacheSize);
+    }
+
+    RouteCache getCache() {
+        return cache;
+    }
+
+    RestServiceWrapper[] getServices() {
+        return services.clone();
+    }
+
+    int getServiceSize() {
+        return services.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 通过HTTP方法和URI检索匹配的REST方法
+     *
+     * @param uri The request URI
+     * @param httpMethod The HTTP method of request
+     * @param args The map of parsed arguments
+     * @return The hit method pattern, or null when not found
+     * @throws UnsupportedEncodingException
+     */
+    MethodPattern find(final String uri, final String httpMethod, final Map<String, Object> args) throws UnsupportedEncodingException {
+        RouteTree tree = partitions.get(httpMethod);
+        if (tree == null) {
+            tree = any;
+        }
+        if (null == cache || null == uri) {
+            return tree.find(uri, httpMethod, args);
+        }
+        MethodPattern pattern = cache.get(uri, httpMethod, args);
+        if (null != pattern || uri.isEmpty()) {
+            return pattern;
+        }
+        final UriTokenizer tokens = UriTokenizer.local(uri);
+        pattern = tree.find(tokens, httpMethod, null);
+        if (null != pattern) {
+            // The arguments are extracted only from a hit, a miss allocates nothing
+            final Map<String, Object> extracted = new HashMap<>();
+            pattern.extract(tokens, extracted);
+            cache.put(uri, httpMethod, pattern, extracted);
+            if (null != args) {
+                args.putAll(extracted);
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * 取得URI允许的HTTP方法
+     *
+     * @param uri The request URI
+     * @param httpMethod The HTTP method of request
+     * @return The value of 'Allow' header, or null if the URI was not defined under other methods
+     * @throws UnsupportedEncodingException
+     */
+    String allow(final String uri, final String httpMethod) throws UnsupportedEncodingException {
+        if (uri == null || uri.isEmpty()) {
+            return null;
+        }
+        final UriTokenizer tokens = UriTokenizer.local(uri);
+        int mask = 0;
+        for (int i = 0; i < verbs.length; i++) {
+            if (!verbs[i].equals(httpMethod) && null != trees[i].find(tokens, verbs[i], null)) {
+                mask |= 1 << i;
+            }
+        }
+        if (mask == 0) {
+            return null;
+        }
+        return allows != null ? allows[mask] : join(mask);
+    }
+
+    private String join(final int mask) {
+        final StringBuilder allow = new StringBuilder();
+        for (int i = 0; i < verbs.length; i++) {
+            if ((mask & (1 << i)) != 0) {
+                if (allow.length() > 0) {
+                    allow.append(", ");
+                }
+                allow.append(verbs[i]);
+            }
+        }
+        return allow.toString();
+    }
+
+    @Override
+    public String toString() {
+        if (null != cache) {
+            return String.format("%s - %s [%d] cache - %s", getClass().getSimpleName(), partitions.keySet(), size, cache);
+        }
+        return String.format("%s - %s [%d]", getClass().getSimpleName(), partitions.keySet(), size);
+    }
+}
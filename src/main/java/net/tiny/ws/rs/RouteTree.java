@@ -0,0 +1,241 @@
+package net.tiny.ws.rs;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * REST路由索引 (Segment level radix tree of method patterns)
+ * <p>
+ * Built once by {@link RestServiceFactory#setup()}. Every node is one path segment
+ * of the route templates and holds literal, <code>{param}</code> and <code>{param : regex}</code>
+ * children, so a lookup walks O(path depth) nodes whatever the number of routes.
+ * The nodes are keyed by the segments already compiled in {@link MethodPattern}.
+ * The candidates found in the tree are confirmed by {@link MethodPattern#validatePattern(UriTokenizer, String)}
+ * in the same order as the former linear scan, so the first registered route still wins.
+ * The request URI is tokenized once and shared by all candidates, only the hit route
+ * copies its arguments out of the URI.
+ */
+final class RouteTree {
+
+    private static final Comparator<Route> ORDER = (r1, r2) -> Integer.compare(r1.order, r2.order);
+
+    private final Node root = new Node(null);
+    private final int size;
+
+    /**
+     * @param patterns All method patterns sorted in the priority of lookup
+     */
+    RouteTree(final List<MethodPattern> patterns) {
+        int order = 0;
+        for (MethodPattern pattern : patterns) {
+            insert(new Route(pattern, order++));
+        }
+        this.size = order;
+        root.seal();
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 通过URI检索匹配的REST方法
+     *
+     * @param uri The request URI
+     * @param httpMethod The HTTP method of request
+     * @param args The map of parsed arguments
+     * @return The hit method pattern, or null when not found
+     * @throws UnsupportedEncodingException
+     */
+    MethodPattern find(final String uri, final String httpMethod, final Map<String, Object> args) throws UnsupportedEncodingException {
+        if (uri == null || uri.isEmpty() || size == 0) {
+            return null;
+        }
+        return find(UriTokenizer.local(uri), httpMethod, args);
+    }
+
+    /**
+     * @param tokens The tokenized request URI
+     * @param httpMethod The HTTP method of request
+     * @param args The map of parsed arguments
+     * @return The hit method pattern, or null when not found
+     * @throws UnsupportedEncodingException
+     */
+    MethodPattern find(final UriTokenizer tokens, final String httpMethod, final Map<String, Object> args) throws UnsupportedEncodingException {
+        if (size == 0) {
+            return null;
+        }
+        final Route route = search(root, tokens, 0, httpMethod, null);
+        if (route == null) {
+            return null;
+        }
+        if (null != args) {
+            // Extract the arguments only from the hit pattern
+            route.pattern.extract(tokens, args);
+        }
+        return route.pattern;
+    }
+
+    private Route search(final Node node, final UriTokenizer tokens, final int depth,
+            final String httpMethod, Route best) {
+        if (best != null && node.minOrder >= best.order) {
+            // A former route has been hit already
+            return best;
+        }
+        if (depth == tokens.size()) {
+            // URI exhausted, only the routes end here or omit the trailing path parameters can be matched
+            for (Route route : node.omitted) {
+                if (best != null && route.order >= best.order) {
+                    break;
+                }
+                if (route.pattern.validatePattern(tokens, httpMethod)) {
+                    return route;
+                }
+            }
+            return best;
+        }
+        final Node literal = node.literal(tokens, depth);
+        if (literal != null) {
+            best = search(literal, tokens, depth + 1, httpMethod, best);
+        }
+        for (Node regex : node.regexes) {
+            if (regex.segment.matchKey(tokens, depth)) {
+                best = search(regex, tokens, depth + 1, httpMethod, best);
+            }
+        }
+        if (node.param != null) {
+            best = search(node.param, tokens, depth + 1, httpMethod, best);
+        }
+        return best;
+    }
+
+    private void insert(final Route route) {
+        Node node = root;
+        for (MethodPattern.Segment segment : route.pattern.getSegments()) {
+            node = node.child(segment);
+        }
+        node.terminals.add(route);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s - [%d]", getClass().getSimpleName(), size);
+    }
+
+    static final class Route {
+        final MethodPattern pattern;
+        final int order;
+
+        Route(MethodPattern pattern, int order) {
+            this.pattern = pattern;
+            this.order = order;
+        }
+    }
+
+    static final class Node {
+        /** The segment of '{arg : [regex]}' node */
+        final MethodPattern.Segment segment;
+        final Map<String, Node> literals = new HashMap<>();
+        /** Open addressing table of literal children, probed by the region of URI */
+        String[] keys;
+        Node[] nodes;
+        final Map<String, Node> regexMap = new LinkedHashMap<>();
+        Node[] regexes;
+        Node param;
+        final List<Route> terminals = new ArrayList<>();
+        /** All routes end at this node or deeper, sorted by order */
+        Route[] descendants;
+        /** The routes end at this node, or deeper only by the path parameters (with default values), sorted by order */
+        Route[] omitted;
+        int minOrder = Integer.MAX_VALUE;
+
+        Node(MethodPattern.Segment segment) {
+            this.segment = segment;
+        }
+
+        Node literal(final UriTokenizer tokens, final int index) {
+            if (keys == null) {
+                return null;
+            }
+            final int hash = tokens.keyHash(index);
+            final int mask = keys.length - 1;
+            for (int i = spread(hash) & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (keys[i].hashCode() == hash && tokens.keyEquals(index, keys[i])) {
+                    return nodes[i];
+                }
+            }
+            return null;
+        }
+
+        Node child(final MethodPattern.Segment segment) {
+            final String literal = segment.literal();
+            if (null != literal) {
+                return literals.computeIfAbsent(literal, s -> new Node(null));
+            }
+            final Pattern regex = segment.regex();
+            if (null != regex) {
+                // '{arg : [regex]}' share the precompiled regex of MethodPattern
+                return regexMap.computeIfAbsent(regex.pattern(), s -> new Node(segment));
+            }
+            // '{arg}'
+            if (param == null) {
+                param = new Node(null);
+            }
+            return param;
+        }
+
+        void seal() {
+            final List<Route> all = new ArrayList<>(terminals);
+            final List<Route> tails = new ArrayList<>(terminals);
+            if (!literals.isEmpty()) {
+                int capacity = 2;
+                while (capacity < literals.size() * 2) {
+                    capacity <<= 1;
+                }
+                keys = new String[capacity];
+                nodes = new Node[capacity];
+                for (Map.Entry<String, Node> entry : literals.entrySet()) {
+                    int i = spread(entry.getKey().hashCode()) & (capacity - 1);
+                    while (keys[i] != null) {
+                        i = (i + 1) & (capacity - 1);
+                    }
+                    keys[i] = entry.getKey();
+                    nodes[i] = entry.getValue();
+                }
+            }
+            for (Node child : literals.values()) {
+                child.seal();
+                all.addAll(Arrays.asList(child.descendants));
+            }
+            regexes = regexMap.values().toArray(new Node[regexMap.size()]);
+            for (Node child : regexes) {
+                child.seal();
+                all.addAll(Arrays.asList(child.descendants));
+                tails.addAll(Arrays.asList(child.omitted));
+            }
+            if (param != null) {
+                param.seal();
+                all.addAll(Arrays.asList(param.descendants));
+                tails.addAll(Arrays.asList(param.omitted));
+            }
+            all.sort(ORDER);
+            tails.sort(ORDER);
+            omitted = tails.toArray(new Route[tails.size()]);
+            descendants = all.toArray(new Route[all.size()]);
+            if (descendants.length > 0) {
+                minOrder = descendants[0].order;
+            }
+        }
+
+        private static int spread(final int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package net.tiny.ws.rs;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * REST服务实例的提供者 (Provider of the service instance called by a method pattern)
+ * <p>
+ * A singleton provider always returns the registered instance.
+ * The other providers create instances by a constructor handle looked up once,
+ * and replay the injection plan of @Resource fields resolved by {@link RestServiceFactory#setup()}.
+ * A pool provider keeps the released instances in a bounded queue. When the pool is empty a new instance
+ * is created without waiting, and an instance released to a full pool is dropped.
+ */
+abstract class ServiceProvider implements Constants {
+
+    static final Injection[] NO_INJECTIONS = new Injection[0];
+
+    abstract Mode getMode();
+
+    /**
+     * @return The instance of service for a request
+     * @throws Exception if the instance can not be created
+     */
+    abstract Object acquire() throws Exception;
+
+    /**
+     * @param target The instance returned by {@link #acquire()}
+     */
+    void release(Object target) {
+    }
+
+    static ServiceProvider singleton(final Object service) {
+        return new Singleton(service);
+    }
+
+    /**
+     * @param serviceClass The class of service
+     * @param mode The mode of lifecycle
+     * @param poolSize The maximum count of idle instances in pool mode
+     * @param injections The injection plan of @Resource fields
+     */
+    static ServiceProvider of(final Class<?> serviceClass, final Mode mode, final int poolSize, final Injection[] injections) {
+        switch (mode) {
+        case pool:
+            return new Pool(serviceClass, injections, poolSize);
+        case instance:
+            return new Instance(serviceClass, injections);
+        default:
+            throw new IllegalArgumentException(String.format("'%s' has no instance of %s mode.", serviceClass.getName(), mode));
+        }
+    }
+
+    /**
+     * '@Resource' 字段的注入 (One @Resource field and the supplier of its value)
+     */
+    static final class Injection {
+        private final MethodHandle setter;
+        private final Supplier<?> resource;
+
+        Injection(final Field field, final Supplier<?> resource) throws IllegalAccessException {
+            field.setAccessible(true);
+            MethodHandle mh = MethodHandles.lookup().unreflectSetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            }
+            this.setter = mh.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            this.resource = resource;
+        }
+
+        void inject(final Object target) throws Throwable {
+            final Object value = resource.get();
+            if (null != value) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    static final class Singleton extends ServiceProvider {
+        private final Object service;
+
+        Singleton(final Object service) {
+            this.service = service;
+        }
+
+        @Override
+        Mode getMode() {
+            return Mode.singleton;
+        }
+
+        @Override
+        Object acquire() {
+            return service;
+        }
+    }
+
+    static class Instance extends ServiceProvider {
+        private final Class<?> serviceClass;
+        private final MethodHandle constructor;
+        private final Injection[] injections;
+
+        Instance(final Class<?> serviceClass, final Injection[] injections) {
+            this.serviceClass = serviceClass;
+            this.injections = injections;
+            MethodHandle mh = null;
+            try {
+                final Constructor<?> c = serviceClass.getDeclaredConstructor();
+                c.setAccessible(true);
+                mh = MethodHandles.lookup().unreflectConstructor(c).asType(MethodType.methodType(Object.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Not instantiable, the error is thrown on each request
+            }
+            this.constructor = mh;
+        }
+
+        @Override
+        Mode getMode() {
+            return Mode.instance;
+        }
+
+        @Override
+        Object acquire() throws Exception {
+            if (null == constructor) {
+                throw new InstantiationException(
+                        String.format("'%s' has no accessible default constructor.", serviceClass.getName()));
+            }
+            try {
+                final Object target = (Object) constructor.invokeExact();
+                for (Injection injection : injections) {
+                    injection.inject(target);
+                }
+                return target;
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new InvocationTargetException(e);
+            }
+        }
+    }
+
+    static final class Pool extends Instance {
+        private final ArrayBlockingQueue<Object> idle;
+
+        Pool(final Class<?> serviceClass, final Injection[] injections, final int poolSize) {
+            super(serviceClass, injections);
+            if (poolSize <= 0) {
+                throw new IllegalArgumentException("The size of pool must be positive - " + poolSize);
+            }
+            this.idle = new ArrayBlockingQueue<>(poolSize);
+        }
+
+        @Override
+        Mode getMode() {
+            return Mode.pool;
+        }
+
+        @Override
+        Object acquire() throws Exception {
+            final Object target = idle.poll();
+            return null != target ? target : super.acquire();
+        }
+
+        @Override
+        void release(final Object target) {
+            if (null != target) {
+                idle.offer(target);
+            }
+        }
+
+        int idle() {
+            return idle.size();
+        }
+    }
+}
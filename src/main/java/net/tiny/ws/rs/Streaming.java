@@ -0,0 +1,171 @@
+package net.tiny.ws.rs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.util.Iterator;
+import java.util.stream.BaseStream;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import net.tiny.ws.Constants.MIME_TYPE;
+import net.tiny.ws.HttpHandlerHelper;
+
+/**
+ * 流式结果 (The results written as they are produced, in constant memory)
+ * <p>
+ * {@link InputStream} and {@link StreamingOutput} are copied to the response body with chunked transfer.
+ * The elements of {@link Iterator} and {@link java.util.stream.Stream} are written one by one,
+ * as a JSON array, or as NDJSON (one JSON value per line) if 'application/x-ndjson' is negotiated.
+ * The elements of {@link Iterable} are written as NDJSON only if JSON is not acceptable.
+ * The results are closed after written.
+ */
+final class Streaming {
+
+    static final String NDJSON = "application/x-ndjson";
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private Streaming() {}
+
+    /**
+     * @return true if the result is written as it is produced
+     */
+    static boolean isStreaming(final Object result) {
+        return result instanceof InputStream
+                || result instanceof StreamingOutput
+                || result instanceof Iterator
+                || result instanceof BaseStream;
+    }
+
+    /**
+     * @return true if the result is streaming, or an {@link Iterable} written as NDJSON
+     */
+    static boolean isStreaming(final Object result, final Negotiation.Choice choice) {
+        return isStreaming(result) || isLines(result, choice);
+    }
+
+    /**
+     * @return true if the elements of result are written as NDJSON instead of a JSON array
+     */
+    static boolean isLines(final Object result, final Negotiation.Choice choice) {
+        return choice.ndjson && !choice.json && result instanceof Iterable;
+    }
+
+    /**
+     * Write the elements as NDJSON, one JSON value per line
+     */
+    static void lines(final Iterator<?> elements, final Writer out) throws IOException {
+        while (elements.hasNext()) {
+            JsonSerializer.writeElement(elements.next(), out);
+            out.write('\n');
+        }
+    }
+
+    /**
+     * @param threshold The maximum bytes of elements sent with 'Content-Length', chunked over it
+     * @param compressThreshold The minimum bytes of a body to compress, negative is disabled
+     */
+    static void send(final HttpExchange he, final Object result, final Negotiation.Choice choice,
+            final int threshold, final int compressThreshold) throws IOException {
+        if (result instanceof InputStream || result instanceof StreamingOutput) {
+            HttpHandlerHelper.getHeaderHelper(he).setContentType(choice.json ? MIME_TYPE.JSON : choice.binary);
+            final OutputStream out = open(he, compressThreshold);
+            try {
+                if (result instanceof InputStream) {
+                    try (InputStream in = (InputStream)result) {
+                        final byte[] buffer = new byte[BUFFER_SIZE];
+                        int len;
+                        while ((len = in.read(buffer)) >= 0) {
+                            out.write(buffer, 0, len);
+                        }
+                    }
+                } else {
+                    ((StreamingOutput)result).write(out);
+                }
+            } finally {
+                finish(out);
+            }
+            return;
+        }
+        final Iterator<?> elements;
+        if (result instanceof BaseStream) {
+            elements = ((BaseStream<?, ?>)result).iterator();
+        } else if (result instanceof Iterable) {
+            elements = ((Iterable<?>)result).iterator();
+        } else {
+            elements = (Iterator<?>)result;
+        }
+        try {
+            if (choice.json) {
+                HttpHandlerHelper.getHeaderHelper(he).setContentType(MIME_TYPE.JSON);
+                ResponseWriter.send(he, HttpURLConnection.HTTP_OK, threshold, compressThreshold, writer -> {
+                    writer.write('[');
+                    boolean first = true;
+                    while (elements.hasNext()) {
+                        if (!first) {
+                            writer.write(',');
+                        }
+                        first = false;
+                        writer.json(elements.next());
+                    }
+                    writer.write(']');
+                });
+            } else {
+                // One value per line, JSON values for NDJSON, or the texts
+                if (choice.ndjson) {
+                    he.getResponseHeaders().set("Content-Type", NDJSON);
+                } else {
+                    HttpHandlerHelper.getHeaderHelper(he).setContentType(choice.binary);
+                }
+                ResponseWriter.send(he, HttpURLConnection.HTTP_OK, threshold, compressThreshold, writer -> {
+                    if (choice.ndjson) {
+                        lines(elements, writer);
+                        return;
+                    }
+                    while (elements.hasNext()) {
+                        writer.write(String.valueOf(elements.next()));
+                        writer.write('\n');
+                    }
+                });
+            }
+        } finally {
+            if (result instanceof AutoCloseable) {
+                close((AutoCloseable)result);
+            }
+        }
+    }
+
+    /**
+     * Send the headers with chunked transfer, the body is compressed if accepted
+     */
+    private static OutputStream open(final HttpExchange he, final int compressThreshold) throws IOException {
+        final Compression.Encoding encoding = Compression.select(he, compressThreshold);
+        if (null != encoding) {
+            return Compression.open(he, HttpURLConnection.HTTP_OK, encoding);
+        }
+        he.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+        return he.getResponseBody();
+    }
+
+    private static void finish(final OutputStream out) throws IOException {
+        if (out instanceof Compression.CompressedOutputStream) {
+            out.close();
+        } else {
+            out.flush();
+        }
+    }
+
+    private static void close(final AutoCloseable closeable) throws IOException {
+        try {
+            closeable.close();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package net.tiny.ws.rs;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * 可挂起的交换 (The exchange can be suspended, implemented by {@link AsyncExchange} and {@link AsyncExchange.Https})
+ */
+interface Suspendable {
+
+    HttpExchange getExchange();
+
+    boolean isSuspended();
+
+    /**
+     * 挂起交换，处理方法返回后不关闭
+     */
+    void suspend();
+
+    /**
+     * 异步处理完成后关闭交换
+     */
+    void resume();
+
+    /**
+     * @param task The task to run after resumed
+     * @return true if the task is deferred, false if not suspended and the caller runs it
+     */
+    boolean onResume(Runnable task);
+}
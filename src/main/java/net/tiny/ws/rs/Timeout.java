@@ -0,0 +1,21 @@
+package net.tiny.ws.rs;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotation to indicate the timeout of a REST method
+ * <p>
+ * When the result is not completed in time, the response is 504 Gateway Timeout.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Timeout {
+
+    public long value();
+
+    public TimeUnit unit() default TimeUnit.MILLISECONDS;
+}
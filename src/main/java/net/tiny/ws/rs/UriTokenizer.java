@@ -0,0 +1,302 @@
+package net.tiny.ws.rs;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Arrays;
+
+/**
+ * 请求URI的分节器 (Index based tokenizer of a request URI)
+ * <p>
+ * The path of the URI is split once per request into segment offsets, the same segments
+ * as <code>uri.split("/")</code>, and the tokenizer is shared by all candidate routes.
+ * Matching only compares regions of the original string, nothing is copied
+ * until a route has matched and its values are extracted by {@link #value(int, int)}.
+ * <p>
+ * The query string is parsed at most once, when a route first asks for it, into a small
+ * open addressing table of parameter names. The names are case-sensitive as JAX-RS parameters.
+ * Only the first occurrence of a repeated parameter is kept, a parameter without '='
+ * has an empty value, and a pair without a name is skipped.
+ * <p>
+ * The route lookups use the tokenizer of the calling thread by {@link #local(String)},
+ * its arrays are reused by the next request, so an unmatched URI allocates nothing.
+ */
+final class UriTokenizer {
+
+    private static final ThreadLocal<UriTokenizer> LOCAL = new ThreadLocal<>();
+
+    private String uri;
+    private int queryStart;
+    private int count;
+    /** [start, key end, end] of each segment */
+    private int[] bounds;
+    /** [name start, name end, value start, value end] of each query parameter */
+    private int[] params;
+    /** Open addressing table of query parameters, the index of parameter + 1 */
+    private int[] slots;
+    private int paramCount;
+    /** The query string was parsed */
+    private boolean parsed;
+
+    UriTokenizer(final String uri) {
+        reset(uri);
+    }
+
+    /**
+     * @return The tokenizer of this thread, valid until the next call on this thread
+     */
+    static UriTokenizer local(final String uri) {
+        final UriTokenizer tokens = LOCAL.get();
+        if (null == tokens) {
+            final UriTokenizer created = new UriTokenizer(uri);
+            LOCAL.set(created);
+            return created;
+        }
+        return tokens.reset(uri);
+    }
+
+    /**
+     * Split another URI, the arrays are reused when large enough
+     */
+    UriTokenizer reset(final String uri) {
+        this.uri = uri;
+        this.parsed = false;
+        this.paramCount = 0;
+        final int length = uri.length();
+        final int mark = uri.indexOf('?');
+        final int pathEnd = mark < 0 ? length : mark;
+        this.queryStart = mark < 0 ? -1 : mark + 1;
+
+        int slashes = 0;
+        for (int i = 0; i < pathEnd; i++) {
+            if (uri.charAt(i) == '/') {
+                slashes++;
+            }
+        }
+        if (null == bounds || bounds.length < (slashes + 1) * 3) {
+            bounds = new int[(slashes + 1) * 3];
+        }
+        final int[] offsets = bounds;
+        int n = 0;
+        int start = 0;
+        for (int i = 0; i <= pathEnd; i++) {
+            if (i == pathEnd || uri.charAt(i) == '/') {
+                offsets[n * 3] = start;
+                offsets[n * 3 + 1] = indexOf(';', start, i);
+                offsets[n * 3 + 2] = i;
+                n++;
+                start = i + 1;
+            }
+        }
+        // Same as String#split, the trailing empty segments of a non-empty path are removed
+        if (pathEnd > 0) {
+            while (n > 0 && offsets[n * 3 - 1] == offsets[n * 3 - 3]) {
+                n--;
+            }
+        }
+        this.count = n;
+        return this;
+    }
+
+    String source() {
+        return uri;
+    }
+
+    /** @return The number of path segments */
+    int size() {
+        return count;
+    }
+
+    int start(final int index) {
+        return bounds[index * 3];
+    }
+
+    /** @return The end of segment key, the matrix parameters are not included */
+    int keyEnd(final int index) {
+        return bounds[index * 3 + 1];
+    }
+
+    int end(final int index) {
+        return bounds[index * 3 + 2];
+    }
+
+    boolean hasMatrix(final int index) {
+        return keyEnd(index) < end(index);
+    }
+
+    /** @return true if the query string follows the segment */
+    boolean hasQuery(final int index) {
+        return queryStart >= 0 && index == count - 1;
+    }
+
+    int queryStart() {
+        return queryStart;
+    }
+
+    int queryEnd() {
+        return uri.length();
+    }
+
+    /** @return The count of distinct query parameters */
+    int paramCount() {
+        parseQuery();
+        return paramCount;
+    }
+
+    int paramNameStart(final int param) {
+        return params[param * 4];
+    }
+
+    int paramNameEnd(final int param) {
+        return params[param * 4 + 1];
+    }
+
+    int paramValueStart(final int param) {
+        return params[param * 4 + 2];
+    }
+
+    int paramValueEnd(final int param) {
+        return params[param * 4 + 3];
+    }
+
+    /** @return true if the parameter has '=' */
+    boolean paramHasValue(final int param) {
+        return paramValueStart(param) > paramNameEnd(param);
+    }
+
+    /**
+     * @param name The name of query parameter
+     * @param hash The hash code of name by {@link #hash(CharSequence, int, int)}
+     * @return The index of query parameter, or -1
+     */
+    int findParam(final String name, final int hash) {
+        parseQuery();
+        if (paramCount == 0) {
+            return -1;
+        }
+        final int mask = slots.length - 1;
+        for (int i = hash & mask; slots[i] != 0; i = (i + 1) & mask) {
+            final int param = slots[i] - 1;
+            if (regionEquals(paramNameStart(param), paramNameEnd(param), name)) {
+                return param;
+            }
+        }
+        return -1;
+    }
+
+    private void parseQuery() {
+        if (parsed) {
+            return;
+        }
+        parsed = true;
+        if (queryStart < 0) {
+            return;
+        }
+        final int end = uri.length();
+        int pairs = 1;
+        for (int i = queryStart; i < end; i++) {
+            if (uri.charAt(i) == '&') {
+                pairs++;
+            }
+        }
+        int capacity = 2;
+        while (capacity < pairs * 2) {
+            capacity <<= 1;
+        }
+        if (null == slots || slots.length != capacity) {
+            slots = new int[capacity];
+        } else {
+            Arrays.fill(slots, 0);
+        }
+        if (null == params || params.length < pairs * 4) {
+            params = new int[pairs * 4];
+        }
+        final int[] table = slots;
+        final int[] ranges = params;
+        int count = 0;
+        for (int from = queryStart; from < end;) {
+            final int to = indexOf('&', from, end);
+            final int eq = indexOf('=', from, to);
+            if (eq > from) {
+                int i = hash(uri, from, eq) & (capacity - 1);
+                boolean repeated = false;
+                while (table[i] != 0) {
+                    final int param = (table[i] - 1) * 4;
+                    if (eq - from == ranges[param + 1] - ranges[param]
+                            && uri.regionMatches(from, uri, ranges[param], eq - from)) {
+                        // The first occurrence wins
+                        repeated = true;
+                        break;
+                    }
+                    i = (i + 1) & (capacity - 1);
+                }
+                if (!repeated) {
+                    ranges[count * 4] = from;
+                    ranges[count * 4 + 1] = eq;
+                    ranges[count * 4 + 2] = eq < to ? eq + 1 : eq;
+                    ranges[count * 4 + 3] = to;
+                    table[i] = ++count;
+                }
+            }
+            from = to + 1;
+        }
+        paramCount = count;
+    }
+
+    /** @return The hash code of a name */
+    static int hash(final CharSequence name, final int from, final int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + name.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    boolean keyEquals(final int index, final String text) {
+        final int start = start(index);
+        final int length = keyEnd(index) - start;
+        return length == text.length() && uri.regionMatches(start, text, 0, length);
+    }
+
+    /** @return The hash code of segment key, same as {@link String#hashCode()} */
+    int keyHash(final int index) {
+        int h = 0;
+        final int end = keyEnd(index);
+        for (int i = start(index); i < end; i++) {
+            h = 31 * h + uri.charAt(i);
+        }
+        return h;
+    }
+
+    boolean regionEquals(final int from, final int to, final String text) {
+        final int length = to - from;
+        return length == text.length() && uri.regionMatches(from, text, 0, length);
+    }
+
+    int indexOf(final char c, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if (uri.charAt(i) == c) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Copy and decode a region of URI. Only the value contains '%' or '+' will be decoded.
+     */
+    String value(final int from, final int to) throws UnsupportedEncodingException {
+        final String value = uri.substring(from, to);
+        for (int i = from; i < to; i++) {
+            final char c = uri.charAt(i);
+            if (c == '%' || c == '+') {
+                return URLDecoder.decode(value, "UTF-8");
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return uri;
+    }
+}
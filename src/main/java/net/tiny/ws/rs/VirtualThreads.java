@@ -0,0 +1,43 @@
+package net.tiny.ws.rs;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 虚拟线程的执行器 (Executor creates a virtual thread per task, on JDK 21 or later)
+ * <p>
+ * The executor is looked up by reflection, so the library still runs on Java 8.
+ * When the runtime has no virtual threads, {@link #executor()} returns null and
+ * the REST methods are invoked on the worker thread as before.
+ */
+final class VirtualThreads {
+
+    private static final Logger LOGGER = Logger.getLogger(VirtualThreads.class.getName());
+    private static final ExecutorService EXECUTOR = create();
+
+    private VirtualThreads() {
+    }
+
+    private static ExecutorService create() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.log(Level.INFO, String.format("[REST] Virtual threads are not supported on Java %s",
+                    System.getProperty("java.version")));
+            return null;
+        }
+    }
+
+    static boolean isSupported() {
+        return EXECUTOR != null;
+    }
+
+    /**
+     * @return The shared executor of virtual threads, or null if not supported
+     */
+    static ExecutorService executor() {
+        return EXECUTOR;
+    }
+}
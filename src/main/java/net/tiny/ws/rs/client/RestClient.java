@@ -27,6 +27,7 @@ import java.util.Base64;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -87,10 +88,39 @@ public class RestClient {
     }
 
     private final Builder builder;
+    /** The entities tagged by ETag per URL, revalidated by 'If-None-Match' */
+    private final Map<String, Validated> validated;
 
     private RestClient(Builder builder) {
         this.builder = builder;
         CookieHandler.setDefault(builder.cookieManager);
+        if (builder.etags > 0) {
+            final int max = builder.etags;
+            this.validated = Collections.synchronizedMap(new LinkedHashMap<String, Validated>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Validated> eldest) {
+                    return size() > max;
+                }
+            });
+        } else {
+            this.validated = null;
+        }
+    }
+
+    /**
+     * The entity of a GET response with its ETag
+     */
+    static final class Validated {
+        final String etag;
+        final String contentType;
+        final byte[] body;
+
+        Validated(String etag, String contentType, byte[] body) {
+            this.etag = etag;
+            this.contentType = contentType;
+            this.body = body;
+        }
     }
 
     public <T> T doGet(final URL url, Class<T> type) throws IOException {
@@ -151,6 +181,14 @@ public class RestClient {
 
         conn.setRequestMethod(httpMethod.name());
 
+        if (HTTP_METHOD.GET == httpMethod && null != validated) {
+            // Revalidate the cached entity
+            final Validated entry = validated.get(request.url.toString());
+            if (null != entry) {
+                request.header(true, "If-None-Match", entry.etag);
+            }
+        }
+
         // Set request all header
         for (String key : request.headers.keySet()) {
             for (String value : request.getHeaders(key)) {
@@ -536,6 +574,8 @@ public class RestClient {
         final int status;
         final Map<String, List<String>> headers;
         final ContentsHandler handler;
+        /** The cached entity of 304 Not Modified */
+        final Validated cached;
         //final Converter converter;
 
         private Response(Request req) throws IOException {
@@ -545,6 +585,12 @@ public class RestClient {
             status  = handler.getStatusCode();
             headers = handler.getResponseHeaders();
             Collections.unmodifiableMap(headers);
+            if (HttpURLConnection.HTTP_NOT_MODIFIED == status && null != validated
+                    && HTTP_METHOD.GET == request.method) {
+                cached = validated.get(request.url.toString());
+            } else {
+                cached = null;
+            }
         }
 
         public int getStatus() {
@@ -617,12 +663,22 @@ public class RestClient {
         }
 
         public String getEntityTag() {
-            //TODO
-            return null;
+            String value = getHeader("ETag");
+            if (null == value && null != cached) {
+                return cached.etag;
+            }
+            return value;
+        }
+
+        /**
+         * @return true if the entity is of the cache revalidated by 'If-None-Match'
+         */
+        public boolean isNotModified() {
+            return null != cached;
         }
 
         public boolean hasEntity() {
-            return (getContentLength() > 0 || getHeader("Content-Type") != null);
+            return (null != cached || getContentLength() > 0 || getHeader("Content-Type") != null);
         }
 
         public <T> T readEntity(Class<T> type) throws IOException {
@@ -635,7 +691,7 @@ public class RestClient {
             if (String.class.equals(type)) {
                 return type.cast(body);
             }
-            String mediaType = getHeader("Content-Type");
+            String mediaType = null != cached ? cached.contentType : getHeader("Content-Type");
             if (mediaType != null && mediaType.toLowerCase().startsWith("application/json")) {
                 /*
                 if (Reflections.isCollectionType(type)) {
@@ -655,9 +711,17 @@ public class RestClient {
             if (!hasEntity()) {
                 return null;
             }
+            if (null != cached) {
+                return new String(cached.body);
+            }
             ByteArrayOutputStream out = new ByteArrayOutputStream();
             int size = handler.cacheContents(out);
             out.close();
+            final String etag = getHeader("ETag");
+            if (null != etag && null != validated && HTTP_METHOD.GET == request.method
+                    && HttpURLConnection.HTTP_OK == status) {
+                validated.put(request.url.toString(), new Validated(etag, getHeader("Content-Type"), out.toByteArray()));
+            }
             if (size > 0) {
                 return new String(out.toByteArray());
             }
@@ -706,6 +770,7 @@ public class RestClient {
         String proxyBasicAuth = null;
         Authenticator proxyAuth = null;
         CookieManager cookieManager = new CookieManager();
+        int etags = 0;
 
         public Builder userAgent(String ua) {
             userAgent = ua;
@@ -739,6 +804,16 @@ public class RestClient {
             return this;
         }
 
+        /**
+         * Cache the entities of GET responses with ETag, and revalidate them by 'If-None-Match'
+         *
+         * @param size The maximum count of cached entities, 0 is disabled
+         */
+        public Builder etags(int size) {
+            etags = size;
+            return this;
+        }
+
         public RestClient build() {
             return new RestClient(this);
         }
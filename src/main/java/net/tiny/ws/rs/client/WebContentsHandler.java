@@ -7,6 +7,7 @@ import java.net.HttpURLConnection;
 import java.util.List;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 public abstract class WebContentsHandler {
 
@@ -56,11 +57,13 @@ public abstract class WebContentsHandler {
 	}
 
 	protected int setContents(InputStream in, OutputStream out) throws IOException {
-		// Cache contents data
-		if (isChunked()) {
-			return setChunkedContents(new ChunkedInputStream(in), out);
-		} else if (isCompressed()) {
+		// Cache contents data, the chunks were decoded by HttpURLConnection
+		if (isCompressed()) {
 			return setComprssedContents(new GZIPInputStream(in), out);
+		} else if (isDeflated()) {
+			return setComprssedContents(new InflaterInputStream(in), out);
+		} else if (isChunked()) {
+			return setChunkedContents(in, out);
 		} else {
 			contentLength = getContentLength();
 			int bufferSize = MAX_BUFFER_SIZE;
@@ -79,7 +82,7 @@ public abstract class WebContentsHandler {
 		}
 	}
 
-	private int setChunkedContents(ChunkedInputStream in, OutputStream out) throws IOException {
+	private int setChunkedContents(InputStream in, OutputStream out) throws IOException {
 		int total = 0;
 		byte buffer[] = new byte[chunkSize];
 		int len = 0;
@@ -91,7 +94,7 @@ public abstract class WebContentsHandler {
 		return total;
 	}
 
-	private int setComprssedContents(GZIPInputStream in, OutputStream out) throws IOException {
+	private int setComprssedContents(InputStream in, OutputStream out) throws IOException {
 		int total = 0;
 		// create a buffer of maximum size
 		byte buffer[] = new byte[MAX_BUFFER_SIZE];
@@ -119,6 +122,13 @@ public abstract class WebContentsHandler {
 		return value.equalsIgnoreCase("gzip");
 	}
 
+	protected boolean isDeflated() {
+		String value = getHeader("Content-Encoding");
+		if (value == null)
+			return false;
+		return value.equalsIgnoreCase("deflate");
+	}
+
 	protected int getContentLength() {
         String value = getHeader("Content-length");
         return value != null ? Integer.parseInt(value) : -1;
@@ -0,0 +1,229 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.SSLSession;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsExchange;
+
+public class AsyncExchangeTest {
+
+    @Test
+    public void testSuspendAndResume() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        ExecutorService workers = Executors.newSingleThreadExecutor();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        server.setExecutor(workers);
+        server.createContext("/async", he -> {
+            final AsyncExchange exchange = new AsyncExchange(he);
+            exchange.suspend();
+            // Completed by another thread after the handler returned
+            CompletableFuture.runAsync(() -> {
+                try {
+                    Thread.sleep(100L);
+                    final byte[] body = "done".getBytes(StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+                    exchange.getResponseBody().write(body);
+                } catch (Exception e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    exchange.resume();
+                }
+            });
+            // Same as the web service closes the exchange after its handler
+            exchange.getResponseBody().close();
+            exchange.close();
+            assertTrue(exchange.isSuspended());
+        });
+        server.start();
+        try {
+            final int port = server.getAddress().getPort();
+            for (int i = 0; i < 3; i++) {
+                URL url = new URL("http://localhost:" + port + "/async");
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+                try (InputStream in = connection.getInputStream()) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[64];
+                    int len;
+                    while ((len = in.read(buffer)) > 0) {
+                        out.write(buffer, 0, len);
+                    }
+                    assertEquals("done", new String(out.toByteArray(), StandardCharsets.UTF_8));
+                }
+                connection.disconnect();
+            }
+            assertNull(error.get());
+        } finally {
+            server.stop(0);
+            workers.shutdown();
+        }
+    }
+
+    @Test
+    public void testStreamsReplaced() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        final AtomicInteger written = new AtomicInteger();
+        server.createContext("/filtered", he -> {
+            final HttpExchange exchange = AsyncExchange.of(he);
+            // A filter replaces the response stream after the exchange was wrapped
+            exchange.setStreams(null, new FilterOutputStream(he.getResponseBody()) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    written.addAndGet(len);
+                    out.write(b, off, len);
+                }
+            });
+            final byte[] body = "filtered".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.getResponseBody().close();
+            exchange.close();
+        });
+        server.start();
+        try {
+            URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/filtered");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            assertEquals("filtered", new String(StreamingTest.readAll(connection.getInputStream()), StandardCharsets.UTF_8));
+            connection.disconnect();
+            assertEquals(8, written.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testHttpsExchange() throws Exception {
+        final SecureExchange https = new SecureExchange();
+        final HttpExchange exchange = AsyncExchange.of(https);
+        assertTrue(exchange instanceof HttpsExchange);
+        assertTrue(exchange instanceof Suspendable);
+        assertSame(exchange, AsyncExchange.of(exchange));
+        assertSame(https, ((Suspendable)exchange).getExchange());
+        assertNull(((HttpsExchange)exchange).getSSLSession());
+        assertEquals("/secure", exchange.getRequestURI().getPath());
+
+        // The close is deferred until resumed
+        ((Suspendable)exchange).suspend();
+        exchange.getResponseBody().close();
+        exchange.close();
+        assertEquals(0, https.closed);
+        ((Suspendable)exchange).resume();
+        assertEquals(1, https.closed);
+    }
+
+    static class SecureExchange extends HttpsExchange {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int closed;
+
+        @Override
+        public SSLSession getSSLSession() {
+            return null;
+        }
+
+        @Override
+        public Headers getRequestHeaders() {
+            return new Headers();
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return new Headers();
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return URI.create("/secure");
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return "GET";
+        }
+
+        @Override
+        public HttpContext getHttpContext() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+            closed++;
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            return null;
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return body;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) {
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return -1;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public String getProtocol() {
+            return "HTTP/1.1";
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return null;
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+        }
+
+        @Override
+        public void setStreams(InputStream i, OutputStream o) {
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return null;
+        }
+    }
+}
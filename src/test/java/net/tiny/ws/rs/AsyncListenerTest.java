@@ -0,0 +1,209 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncListenerTest {
+
+    static class Recorder implements RestServiceHandler.Listener {
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void called(String target, int id, String method, Object[] args) {
+            threads.add(Thread.currentThread().getName());
+            events.add(String.format("called %s#%d.%s%s", target, id, method, args == null ? "" : args.length));
+        }
+        @Override
+        public void error(Throwable err, String target, String method, Object[] args) {
+            events.add(String.format("error %s.%s %s", target, method, err.getMessage()));
+        }
+        @Override
+        public void param(String annotation, String type, String value) {
+            events.add(String.format("param %s %s=%s", annotation, type, value));
+        }
+        @Override
+        public void bound(String wrapper, String path) {
+            events.add(String.format("bound %s %s", wrapper, path));
+        }
+    }
+
+    @Test
+    public void testDrainInOrder() throws Exception {
+        Recorder recorder = new Recorder();
+        AsyncListener listener = new AsyncListener();
+        listener.setDelegate(recorder);
+        listener.setCapacity(10);
+        listener.param("@PathParam", "id", "1");
+        listener.called("Sample", 99, "get", new Object[] {"1"});
+        listener.error(new IllegalStateException("boom"), "Sample", "get", null);
+        listener.bound("wrapper", "/api");
+        listener.close();
+
+        assertEquals(4, listener.getDrained());
+        assertEquals(0, listener.getDropped());
+        assertEquals("param @PathParam id=1", recorder.events.get(0));
+        assertEquals("called Sample#99.get1", recorder.events.get(1));
+        assertEquals("error Sample.get boom", recorder.events.get(2));
+        assertEquals("bound wrapper /api", recorder.events.get(3));
+        // Replayed on the consumer thread
+        assertEquals("rest-listener", recorder.threads.get(0));
+
+        // Closed, the events are dropped
+        listener.called("Sample", 1, "get", null);
+        assertEquals(1, listener.getDropped());
+        assertEquals(4, recorder.events.size());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        Recorder recorder = new Recorder();
+        AsyncListener listener = new AsyncListener();
+        listener.setDelegate(recorder);
+        listener.setCapacity(1 << 16);
+        final int threads = 4;
+        final int count = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            executor.execute(() -> {
+                for (int i = 0; i < count; i++) {
+                    listener.called("T" + id, i, "run", null);
+                }
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        listener.close();
+        assertEquals(threads * count, listener.getDrained() + listener.getDropped());
+        assertEquals(listener.getDrained(), recorder.events.size());
+        System.out.println(listener);
+    }
+
+    static class BatchRecorder extends Recorder implements AsyncListener.Sink {
+        final List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void accept(AsyncListener.Event[] batch, int count) {
+            batches.add(count);
+            for (int i = 0; i < count; i++) {
+                final AsyncListener.Event event = batch[i];
+                threads.add(Thread.currentThread().getName());
+                events.add(event.getType() + " " + event.getTarget() + "#" + event.getId());
+            }
+        }
+
+        @Override
+        public void called(String target, int id, String method, Object[] args) {
+            fail("The sink receives the events");
+        }
+    }
+
+    @Test
+    public void testBatchSink() throws Exception {
+        BatchRecorder recorder = new BatchRecorder();
+        AsyncListener listener = new AsyncListener();
+        listener.setDelegate(recorder);
+        listener.setBatchSize(16);
+        for (int i = 0; i < 100; i++) {
+            listener.called("Sample", i, "get", null);
+        }
+        listener.close();
+
+        assertEquals(100, listener.getDrained());
+        assertEquals(100, recorder.events.size());
+        assertEquals("called Sample#0", recorder.events.get(0));
+        assertEquals("called Sample#99", recorder.events.get(99));
+        assertEquals("rest-listener", recorder.threads.get(0));
+        assertEquals(100, recorder.batches.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(recorder.batches.stream().allMatch(c -> c <= 16));
+    }
+
+    @Test
+    public void testMonitorSink() throws Exception {
+        // The default delegate logs the batches
+        AsyncListener listener = new AsyncListener();
+        listener.param("@PathParam", "id", "1");
+        listener.called("Sample", 1, "get", new Object[] {"1", 2});
+        listener.error(new IllegalStateException("boom"), "Sample", "get", null);
+        listener.bound("wrapper", "/api");
+        listener.close();
+        assertEquals(4, listener.getDrained());
+    }
+
+    @Test
+    public void testParkedWhenIdle() throws Exception {
+        Recorder recorder = new Recorder();
+        AsyncListener listener = new AsyncListener();
+        listener.setDelegate(recorder);
+        listener.start();
+        Thread.sleep(100L);
+        // Parked without timeout, not polling
+        assertEquals(Thread.State.WAITING, listener.getConsumer().getState());
+
+        listener.called("Sample", 1, "get", null);
+        long start = System.nanoTime();
+        while (recorder.events.isEmpty() && TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5L) {
+            Thread.sleep(1L);
+        }
+        assertEquals(1, recorder.events.size());
+        listener.close();
+        assertFalse(listener.getConsumer().isAlive());
+    }
+
+    @Test
+    public void testRingFull() throws Exception {
+        Recorder recorder = new Recorder() {
+            @Override
+            public void called(String target, int id, String method, Object[] args) {
+                try {
+                    // A slow delegate never blocks the producers
+                    Thread.sleep(50L);
+                } catch (InterruptedException e) {
+                }
+                super.called(target, id, method, args);
+            }
+        };
+        AsyncListener listener = new AsyncListener();
+        listener.setDelegate(recorder);
+        listener.setCapacity(4);
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            listener.called("Slow", i, "run", null);
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000L);
+        assertTrue(listener.getDropped() > 0);
+        listener.close();
+        assertEquals(100, listener.getDrained() + listener.getDropped());
+    }
+
+    @Test
+    public void testSampling() throws Exception {
+        Recorder recorder = new Recorder();
+        AsyncListener listener = new AsyncListener();
+        listener.setDelegate(recorder);
+        listener.setSampling(10);
+        for (int i = 0; i < 10000; i++) {
+            listener.called("Sample", i, "get", null);
+        }
+        // The errors are never sampled out
+        for (int i = 0; i < 10; i++) {
+            listener.error(new RuntimeException("e" + i), "Sample", "get", null);
+        }
+        listener.close();
+        long called = recorder.events.stream().filter(e -> e.startsWith("called")).count();
+        long errors = recorder.events.stream().filter(e -> e.startsWith("error")).count();
+        assertTrue(called > 500 && called < 1500, "sampled " + called);
+        assertEquals(10, errors);
+    }
+}
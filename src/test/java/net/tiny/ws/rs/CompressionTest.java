@@ -0,0 +1,200 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class CompressionTest {
+
+    static byte[] readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            out.write(buffer, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    static String text(int size) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append("{\"name\":\"item-").append(i).append("\",\"count\":").append(i).append("},");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testNegotiate() throws Exception {
+        assertEquals(Compression.Encoding.gzip, Compression.negotiate("gzip, deflate, br"));
+        assertEquals(Compression.Encoding.gzip, Compression.negotiate("deflate, gzip"));
+        assertEquals(Compression.Encoding.deflate, Compression.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(Compression.Encoding.deflate, Compression.negotiate("deflate"));
+        assertEquals(Compression.Encoding.gzip, Compression.negotiate("*"));
+        assertEquals(Compression.Encoding.deflate, Compression.negotiate("gzip;q=0, *;q=0.1"));
+        assertNull(Compression.negotiate("identity"));
+        assertNull(Compression.negotiate("br"));
+        assertNull(Compression.negotiate("gzip;q=0"));
+        assertNull(Compression.negotiate((com.sun.net.httpserver.Headers)null));
+    }
+
+    @Test
+    public void testIsCompressible() throws Exception {
+        assertTrue(Compression.isCompressible("application/json; charset=utf-8"));
+        assertTrue(Compression.isCompressible("text/html"));
+        assertTrue(Compression.isCompressible("application/xml"));
+        assertTrue(Compression.isCompressible("application/javascript"));
+        assertFalse(Compression.isCompressible("image/png"));
+        assertFalse(Compression.isCompressible("application/octet-stream"));
+        assertFalse(Compression.isCompressible(null));
+    }
+
+    @Test
+    public void testCompressedOutputStream() throws Exception {
+        final byte[] body = text(64 * 1024).getBytes(StandardCharsets.UTF_8);
+        for (int round = 0; round < 3; round++) {
+            // The pooled deflaters are reused after reset
+            ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+            try (OutputStream out = new Compression.CompressedOutputStream(gzip, Compression.Encoding.gzip)) {
+                out.write(body, 0, 100);
+                out.flush();
+                out.write(body, 100, body.length - 100);
+            }
+            assertTrue(gzip.size() < body.length / 4);
+            assertArrayEquals(body, readAll(new GZIPInputStream(new ByteArrayInputStream(gzip.toByteArray()))));
+
+            ByteArrayOutputStream deflate = new ByteArrayOutputStream();
+            try (OutputStream out = new Compression.CompressedOutputStream(deflate, Compression.Encoding.deflate)) {
+                out.write(body);
+            }
+            assertArrayEquals(body, readAll(new InflaterInputStream(new ByteArrayInputStream(deflate.toByteArray()))));
+        }
+    }
+
+    @Test
+    public void testSmallWrites() throws Exception {
+        final byte[] body = text(16 * 1024).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (OutputStream out = new Compression.CompressedOutputStream(gzip, Compression.Encoding.gzip)) {
+            for (int i = 0; i < 10; i++) {
+                out.write(body[i]);
+            }
+            // The collected bytes are deflated by flush
+            final int header = gzip.size();
+            out.flush();
+            assertTrue(gzip.size() > header);
+            int off = 10;
+            for (int len = 1; off + len <= body.length; off += len, len = (len * 3) % 1000 + 1) {
+                if (len % 2 == 0) {
+                    out.write(body, off, len);
+                } else {
+                    for (int i = 0; i < len; i++) {
+                        out.write(body[off + i]);
+                    }
+                }
+            }
+            out.write(body, off, body.length - off);
+        }
+        assertArrayEquals(body, readAll(new GZIPInputStream(new ByteArrayInputStream(gzip.toByteArray()))));
+    }
+
+    @Test
+    public void testSendCompressed() throws Exception {
+        final byte[] large = text(8 * 1024).getBytes(StandardCharsets.UTF_8);
+        final byte[] small = "{\"small\":true}".getBytes(StandardCharsets.UTF_8);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/json", he -> {
+            he.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            final byte[] body = he.getRequestURI().getQuery() != null ? small : large;
+            Compression.send(he, HttpURLConnection.HTTP_OK, body, Compression.DEFAULT_THRESHOLD);
+            he.close();
+        });
+        server.start();
+        try {
+            final String base = "http://localhost:" + server.getAddress().getPort() + "/json";
+            HttpURLConnection connection = (HttpURLConnection) new URL(base).openConnection();
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+            assertEquals("Accept-Encoding", connection.getHeaderField("Vary"));
+            try (InputStream in = new GZIPInputStream(connection.getInputStream())) {
+                assertArrayEquals(large, readAll(in));
+            }
+            connection.disconnect();
+
+            // Under the threshold
+            connection = (HttpURLConnection) new URL(base + "?small").openConnection();
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            assertNull(connection.getHeaderField("Content-Encoding"));
+            assertEquals("Accept-Encoding", connection.getHeaderField("Vary"));
+            assertEquals(small.length, connection.getContentLength());
+            try (InputStream in = connection.getInputStream()) {
+                assertArrayEquals(small, readAll(in));
+            }
+            connection.disconnect();
+
+            // Not accepted by the client
+            connection = (HttpURLConnection) new URL(base).openConnection();
+            connection.setRequestProperty("Accept-Encoding", "identity");
+            assertNull(connection.getHeaderField("Content-Encoding"));
+            assertEquals("Accept-Encoding", connection.getHeaderField("Vary"));
+            try (InputStream in = connection.getInputStream()) {
+                assertArrayEquals(large, readAll(in));
+            }
+            connection.disconnect();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testWriterCompressed() throws Exception {
+        final String large = text(8 * 1024);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/json", he -> {
+            he.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            final String body = he.getRequestURI().getQuery() != null ? large.substring(0, 512) : large;
+            // The chunked threshold is under the compression threshold
+            ResponseWriter.send(he, HttpURLConnection.HTTP_OK, 256, Compression.DEFAULT_THRESHOLD,
+                    writer -> writer.write(body));
+            he.close();
+        });
+        server.start();
+        try {
+            final String base = "http://localhost:" + server.getAddress().getPort() + "/json";
+            HttpURLConnection connection = (HttpURLConnection) new URL(base).openConnection();
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            assertEquals("chunked", connection.getHeaderField("Transfer-Encoding"));
+            assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+            assertEquals("Accept-Encoding", connection.getHeaderField("Vary"));
+            try (InputStream in = new GZIPInputStream(connection.getInputStream())) {
+                assertEquals(large, new String(readAll(in), StandardCharsets.UTF_8));
+            }
+            connection.disconnect();
+
+            // Buffered up to the compression threshold, sent with 'Content-Length'
+            connection = (HttpURLConnection) new URL(base + "?small").openConnection();
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            assertNull(connection.getHeaderField("Content-Encoding"));
+            assertEquals(512, connection.getContentLength());
+            assertEquals("Accept-Encoding", connection.getHeaderField("Vary"));
+            connection.disconnect();
+        } finally {
+            server.stop(0);
+        }
+    }
+}
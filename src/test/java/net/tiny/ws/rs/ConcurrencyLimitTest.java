@@ -0,0 +1,118 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.MediaType;
+
+import net.tiny.ws.rs.test.SampleAsyncService;
+
+public class ConcurrencyLimitTest {
+
+    @Test
+    public void testRejectWithoutQueue() throws Exception {
+        ConcurrencyLimit limit = new ConcurrencyLimit(2, 0, 0L, 3);
+        assertTrue(limit.acquire());
+        assertTrue(limit.acquire());
+        assertFalse(limit.acquire());
+        assertEquals(2, limit.active());
+        assertEquals(1L, limit.rejected());
+        assertEquals(3, limit.getRetryAfter());
+        limit.release();
+        assertTrue(limit.acquire());
+        assertEquals("active:2/2 queued:0/0 rejected:1", limit.toString());
+    }
+
+    @Test
+    public void testWaitInQueue() throws Exception {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(1, 1, 2000L, 1);
+        assertTrue(limit.acquire());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Boolean> waiting = executor.submit(limit::acquire);
+        while (limit.queued() == 0) {
+            Thread.sleep(1L);
+        }
+        // The queue is full
+        long start = System.nanoTime();
+        assertFalse(executor.submit(limit::acquire).get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000L);
+        // Woken by release
+        limit.release();
+        assertTrue(waiting.get(1L, TimeUnit.SECONDS));
+        assertEquals(1, limit.active());
+        assertEquals(0, limit.queued());
+        executor.shutdown();
+
+        // Timed out in queue
+        start = System.nanoTime();
+        ConcurrencyLimit timed = new ConcurrencyLimit(1, 1, 50L, 1);
+        assertTrue(timed.acquire());
+        assertFalse(timed.acquire());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50L);
+        assertEquals(1L, timed.rejected());
+    }
+
+    @Test
+    public void testConcurrentCalls() throws Exception {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(4, 64, 5000L, 1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 50; i++) {
+                    if (limit.acquire()) {
+                        peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.yield();
+                        running.decrementAndGet();
+                        limit.release();
+                    }
+                }
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(30L, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(peak.get() <= 4, "peak " + peak.get());
+        assertEquals(0, limit.active());
+        assertEquals(0L, limit.rejected());
+    }
+
+    @Test
+    public void testBulkheadAnnotation() throws Exception {
+        // @Bulkhead(value = 1, retryAfter = 2)
+        Method method = SampleAsyncService.class.getMethod("busy");
+        MethodPattern methodPattern = new MethodPattern("/api/v3/async", "/busy", "GET", MediaType.APPLICATION_JSON, SampleAsyncService.class, null, method);
+        ConcurrencyLimit limit = methodPattern.getConcurrencyLimit();
+        assertNotNull(limit);
+        assertEquals(2, limit.getRetryAfter());
+        assertEquals("active:0/1 queued:0/0 rejected:0", limit.toString());
+        // The settings of handler are not used
+        assertSame(limit, methodPattern.getConcurrencyLimit(8, 0, 0L, 1));
+    }
+
+    @Test
+    public void testDefaultLimit() throws Exception {
+        Method method = SampleAsyncService.class.getMethod("limited");
+        MethodPattern methodPattern = new MethodPattern("/api/v3/async", "/limited", "GET", MediaType.APPLICATION_JSON, SampleAsyncService.class, null, method);
+        assertNull(methodPattern.getConcurrencyLimit());
+        assertNull(methodPattern.getConcurrencyLimit(0, 0, 0L, 1));
+        // Kept by the route until the settings are changed
+        ConcurrencyLimit limit = methodPattern.getConcurrencyLimit(2, 4, 100L, 5);
+        assertEquals("active:0/2 queued:0/4 rejected:0", limit.toString());
+        assertSame(limit, methodPattern.getConcurrencyLimit(2, 4, 100L, 5));
+        ConcurrencyLimit changed = methodPattern.getConcurrencyLimit(2, 4, 100L, 1);
+        assertNotSame(limit, changed);
+        assertEquals(1, changed.getRetryAfter());
+    }
+}
@@ -0,0 +1,165 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpServer;
+
+import net.tiny.ws.rs.client.RestClient;
+
+public class ConditionalTest {
+
+    @Test
+    public void testEntityTag() throws Exception {
+        byte[] body = "{\"name\":\"apple\",\"count\":3}".getBytes(StandardCharsets.UTF_8);
+        String etag = Conditional.etag(body, 0, body.length, null);
+        assertEquals(18, etag.length());
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        assertEquals(etag, Conditional.etag(body.clone(), 0, body.length, null));
+        assertEquals(etag.substring(0, 17) + "-gzip\"", Conditional.etag(body, 0, body.length, Compression.Encoding.gzip));
+
+        // Each byte changes the hash, the tail under 8 bytes too
+        body[body.length - 1] = ']';
+        assertNotEquals(etag, Conditional.etag(body, 0, body.length, null));
+        assertNotEquals(Conditional.hash(body, 0, 3), Conditional.hash(body, 1, 3));
+        assertNotEquals(Conditional.hash(new byte[0], 0, 0), Conditional.hash(new byte[1], 0, 1));
+    }
+
+    @Test
+    public void testMatches() throws Exception {
+        String etag = "\"0123456789abcdef\"";
+        assertTrue(Conditional.matches(etag, etag));
+        assertTrue(Conditional.matches("\"aaa\", W/\"0123456789abcdef\"", etag));
+        assertTrue(Conditional.matches("\"0123456789abcdef-gzip\"", etag));
+        assertTrue(Conditional.matches("\"0123456789abcdef\"", "\"0123456789abcdef-deflate\""));
+        assertTrue(Conditional.matches("*", etag));
+        assertFalse(Conditional.matches("\"0123456789abcdee\"", etag));
+        assertFalse(Conditional.matches("", etag));
+    }
+
+    @Test
+    public void testNotModified() throws Exception {
+        final StringBuilder large = new StringBuilder();
+        for (int i = 0; large.length() < 40 * 1024; i++) {
+            large.append("item-").append(i).append(',');
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/tagged", he -> {
+            he.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            final String body = he.getRequestURI().getQuery() != null ? large.toString() : "{\"name\":\"apple\"}";
+            ResponseWriter.send(he, HttpURLConnection.HTTP_OK, 512, Compression.DEFAULT_THRESHOLD, true,
+                    writer -> writer.write(body));
+            he.close();
+        });
+        server.createContext("/modified", he -> {
+            Response.ok()
+                .header("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT")
+                .entity("{\"name\":\"apple\"}")
+                .build()
+                .send(he);
+            he.close();
+        });
+        server.start();
+        try {
+            final String base = "http://localhost:" + server.getAddress().getPort();
+            HttpURLConnection connection = (HttpURLConnection) new URL(base + "/tagged").openConnection();
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            final String etag = connection.getHeaderField("ETag");
+            assertNotNull(etag);
+            assertEquals(16, connection.getContentLength());
+            connection.disconnect();
+
+            connection = (HttpURLConnection) new URL(base + "/tagged").openConnection();
+            connection.setRequestProperty("If-None-Match", etag);
+            assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, connection.getResponseCode());
+            assertEquals(etag, connection.getHeaderField("ETag"));
+            connection.disconnect();
+
+            // Over the chunked threshold, the body is buffered to tag it
+            connection = (HttpURLConnection) new URL(base + "/tagged?large").openConnection();
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            final String gzipped = connection.getHeaderField("ETag");
+            assertTrue(gzipped.endsWith("-gzip\""));
+            assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+            connection.disconnect();
+
+            connection = (HttpURLConnection) new URL(base + "/tagged?large").openConnection();
+            connection.setRequestProperty("If-None-Match", gzipped);
+            assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, connection.getResponseCode());
+            connection.disconnect();
+
+            connection = (HttpURLConnection) new URL(base + "/modified").openConnection();
+            connection.setRequestProperty("If-Modified-Since", "Wed, 21 Oct 2015 07:28:00 GMT");
+            assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, connection.getResponseCode());
+            connection.disconnect();
+
+            connection = (HttpURLConnection) new URL(base + "/modified").openConnection();
+            connection.setRequestProperty("If-Modified-Since", "Tue, 20 Oct 2015 07:28:00 GMT");
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            connection.disconnect();
+
+            // The client revalidates its cached entity
+            RestClient client = new RestClient.Builder().etags(16).build();
+            RestClient.Response response = client.doGet(new URL(base + "/tagged"));
+            assertEquals(HttpURLConnection.HTTP_OK, response.getStatus());
+            assertEquals("{\"name\":\"apple\"}", response.getEntity());
+            assertEquals(etag, response.getEntityTag());
+            response.close();
+
+            response = client.doGet(new URL(base + "/tagged"));
+            assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, response.getStatus());
+            assertTrue(response.isNotModified());
+            assertEquals(etag, response.getEntityTag());
+            assertEquals("{\"name\":\"apple\"}", response.getEntity());
+            response.close();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testTaggedOverMax() throws Exception {
+        final StringBuilder huge = new StringBuilder();
+        while (huge.length() <= ResponseWriter.MAX_TAGGED) {
+            huge.append("0123456789abcdef");
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/huge", he -> {
+            he.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            ResponseWriter.send(he, HttpURLConnection.HTTP_OK, 512, -1, true,
+                    writer -> writer.write(huge.toString()));
+            he.close();
+        });
+        server.start();
+        try {
+            final String base = "http://localhost:" + server.getAddress().getPort();
+            HttpURLConnection connection = (HttpURLConnection) new URL(base + "/huge").openConnection();
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            // Too large to buffer, the ETag is dropped
+            assertNull(connection.getHeaderField("ETag"));
+            assertEquals("chunked", connection.getHeaderField("Transfer-Encoding"));
+            final ByteArrayOutputStream received = new ByteArrayOutputStream();
+            try (InputStream in = connection.getInputStream()) {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    received.write(buffer, 0, read);
+                }
+            }
+            final String body = new String(received.toByteArray(), StandardCharsets.UTF_8);
+            assertEquals(huge.length(), body.length());
+            assertEquals(huge.toString(), body);
+            connection.disconnect();
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class DeadlineTest {
+
+    @Test
+    public void testCurrentDeadline() throws Exception {
+        assertNull(Deadline.current());
+        Deadline outer = new Deadline(1000L);
+        Deadline inner = new Deadline(50L);
+        Deadline previous = outer.enter(false);
+        assertNull(previous);
+        assertSame(outer, Deadline.current());
+        assertSame(outer, inner.enter(false));
+        assertSame(inner, Deadline.current());
+        inner.exit(outer);
+        assertSame(outer, Deadline.current());
+        outer.exit(previous);
+        assertNull(Deadline.current());
+
+        assertEquals(1000L, outer.getTimeout());
+        long remaining = outer.remaining(TimeUnit.MILLISECONDS);
+        assertTrue(remaining > 0L && remaining <= 1000L);
+        assertFalse(outer.isExpired());
+        outer.check();
+    }
+
+    @Test
+    public void testExpired() throws Exception {
+        Deadline deadline = new Deadline(20L);
+        Thread.sleep(30L);
+        assertTrue(deadline.isExpired());
+        assertEquals(0L, deadline.remaining(TimeUnit.NANOSECONDS));
+        ApplicationException err = assertThrows(ApplicationException.class, deadline::check);
+        assertEquals(HttpURLConnection.HTTP_GATEWAY_TIMEOUT, err.getStatus());
+
+        deadline = new Deadline(10000L);
+        deadline.expire();
+        assertTrue(deadline.isExpired());
+        // Not entered, no thread to interrupt
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void testInterruptOnExpire() throws Exception {
+        final Deadline deadline = new Deadline(10000L);
+        final CountDownLatch entered = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Boolean> future = executor.submit(() -> {
+            final Deadline previous = deadline.enter(true);
+            try {
+                entered.countDown();
+                Thread.sleep(5000L);
+                return false;
+            } catch (InterruptedException e) {
+                return true;
+            } finally {
+                deadline.exit(previous);
+            }
+        });
+        entered.await();
+        deadline.expire();
+        assertTrue(future.get(1L, TimeUnit.SECONDS));
+        // The interrupt flag was cleared on exit, the pooled thread is reusable
+        assertFalse(executor.submit(() -> Thread.currentThread().isInterrupted()).get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testAbandonOnExpire() throws Exception {
+        final Deadline deadline = new Deadline(10000L);
+        final CountDownLatch entered = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Boolean> future = executor.submit(() -> {
+            final Deadline previous = deadline.enter(false);
+            try {
+                entered.countDown();
+                while (!Deadline.current().isExpired()) {
+                    Thread.sleep(1L);
+                }
+                return Thread.currentThread().isInterrupted();
+            } finally {
+                deadline.exit(previous);
+            }
+        });
+        entered.await();
+        deadline.expire();
+        assertFalse(future.get(1L, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,110 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.tiny.config.JsonParser;
+
+public class JsonBenchmarkTest {
+
+    interface Call {
+        int call(List<JsonSerializerTest.Item> items) throws Exception;
+    }
+
+    static int sink;
+
+    /**
+     * Not synchronized as StringWriter, same as the response writer
+     */
+    static final class CharSink extends Writer {
+        final char[] buffer = new char[64 * 1024];
+        int count;
+
+        @Override
+        public void write(int c) {
+            buffer[count++] = (char)c;
+        }
+
+        @Override
+        public void write(char[] chars, int off, int len) {
+            System.arraycopy(chars, off, buffer, count, len);
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            str.getChars(off, off + len, buffer, count);
+            count += len;
+        }
+
+        @Override
+        public Writer append(CharSequence csq, int start, int end) {
+            for (int i = start; i < end; i++) {
+                buffer[count++] = csq.charAt(i);
+            }
+            return this;
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+
+        @Override
+        public String toString() {
+            return new String(buffer, 0, count);
+        }
+    }
+
+    /**
+     * Run the warm up rounds then the measured rounds, and print the average nanoseconds of a response.
+     */
+    static long measure(String name, int exeCount, List<JsonSerializerTest.Item> items, Call call) throws Exception {
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < exeCount; i++) {
+                sink += call.call(items);
+            }
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            final long start = System.nanoTime();
+            for (int i = 0; i < exeCount; i++) {
+                sink += call.call(items);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.println(String.format("%-32s %10.2f 纳秒/次", name, (double)best / exeCount));
+        return best;
+    }
+
+    @Test
+    public void testSerializers() throws Exception {
+        final int exeCount = 2000;
+        final List<JsonSerializerTest.Item> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(new JsonSerializerTest.Item("item-" + i, i));
+        }
+        final JsonSerializer serializer = JsonSerializer.of(items.getClass());
+        final CharSink out = new CharSink();
+        serializer.write(items, out);
+        assertTrue(out.toString().startsWith("[{\"name\":\"item-0\",\"count\":0"));
+        assertEquals(JsonParser.marshal(items), out.toString());
+
+        System.out.println("JSON序列化测试(100件)，循环次数：" + exeCount);
+        System.out.println("----------------------------------------------------------------------------------");
+        measure("JsonParser.marshal + getBytes", exeCount, items,
+                list -> JsonParser.marshal(list).getBytes(StandardCharsets.UTF_8).length);
+        measure("JsonSerializer(ClassValue)", exeCount, items, list -> {
+            out.count = 0;
+            serializer.write(list, out);
+            return out.count;
+        });
+        System.out.println("----------------------------------------------------------------------------------");
+    }
+}
@@ -0,0 +1,146 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.tiny.config.JsonParser;
+
+public class JsonSerializerTest {
+
+    public enum Level {
+        LOW, HIGH
+    }
+
+    public static class Item {
+        private String name;
+        private int count;
+        private boolean active;
+        private Double price;
+        private Level level;
+        private List<String> tags;
+        private transient String secret = "hidden";
+
+        public Item() {}
+
+        public Item(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+    }
+
+    public static class SpecialItem extends Item {
+        private long id = 9L;
+        public String code = "S/1";
+    }
+
+    static String json(Object value) throws Exception {
+        StringWriter out = new StringWriter();
+        JsonSerializer.writeValue(value, out);
+        return out.toString();
+    }
+
+    @Test
+    public void testPlainValues() throws Exception {
+        assertEquals("null", json(null));
+        assertEquals("[1,2,3]", json(new int[] {1, 2, 3}));
+        assertEquals("[\"a\",null]", json(new String[] {"a", null}));
+        assertEquals("[1,null,3]", json(Arrays.asList(1, null, 3)));
+        assertEquals("[1.5,-3,true]", json(Arrays.asList(1.5d, -3L, true)));
+        assertSame(JsonSerializer.of(ArrayList.class), JsonSerializer.of(ArrayList.class));
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("key", "Public key");
+        map.put("values", Arrays.asList(true, false));
+        map.put("none", null);
+        assertEquals("{\"key\":\"Public key\",\"values\":[true,false],\"none\":null}", json(map));
+        assertEquals("{}", json(new LinkedHashMap<>()));
+
+        assertTrue(JsonSerializer.Cache.isPlain("Public key"));
+        assertFalse(JsonSerializer.Cache.isPlain("a/b"));
+        assertFalse(JsonSerializer.Cache.isPlain("日本"));
+    }
+
+    @Test
+    public void testMarshalParity() throws Exception {
+        Item item = new Item("apple", 3);
+        item.level = Level.LOW;
+        item.tags = new ArrayList<>(Arrays.asList("red", "fruit"));
+        item.price = 1.25d;
+        SpecialItem special = new SpecialItem();
+        ((Item)special).name = "pear";
+        ((Item)special).level = Level.HIGH;
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("key", "Public key");
+        map.put("values", Arrays.asList(true, false));
+        map.put("none", null);
+        Map<String, Object> mixed = new LinkedHashMap<>(map);
+        mixed.put("item", item);
+        mixed.put("date", new java.util.Date(0L));
+
+        // The same wire format as JsonParser, the beans are written by it
+        final Object[] values = {
+                "a\"b\\c\n\u0001日本", "plain", 12, -3L, 1.5d, Boolean.TRUE, Level.HIGH,
+                item, new Item(), special,
+                Arrays.asList(item, special), Arrays.asList(1, null, 3), Arrays.asList(Level.LOW, Level.HIGH),
+                new int[] {1, 2, 3}, new String[] {"a", null}, new String[] {"a/b", "<c>"},
+                map, mixed, new java.util.Date(0L), Arrays.asList(new java.util.Date(0L))
+        };
+        for (Object value : values) {
+            assertEquals(JsonParser.marshal(value), json(value), String.valueOf(value));
+        }
+    }
+
+    @Test
+    public void testMarshalFallback() throws Exception {
+        // The types of JDK are written by JsonParser as before
+        java.util.Date date = new java.util.Date(0L);
+        assertEquals(JsonParser.marshal(date), json(date));
+        assertSame(JsonSerializer.Cache.MARSHAL, JsonSerializer.of(java.util.Date.class));
+        assertSame(JsonSerializer.Cache.MARSHAL, JsonSerializer.of(Writer.class));
+        assertSame(JsonSerializer.Cache.MARSHAL, JsonSerializer.of(Level.class));
+        assertSame(JsonSerializer.Cache.CONTAINER, JsonSerializer.of(ArrayList.class));
+    }
+
+    @Test
+    public void testCompiledBean() throws Exception {
+        // Compiled once per class
+        JsonSerializer serializer = JsonSerializer.of(SpecialItem.class);
+        assertTrue(serializer instanceof JsonSerializer.Bean);
+        assertSame(serializer, JsonSerializer.of(SpecialItem.class));
+        // The superclass fields first, only the readable fields
+        assertEquals(4, ((JsonSerializer.Bean)serializer).size());
+        assertEquals(3, ((JsonSerializer.Bean)JsonSerializer.of(Item.class)).size());
+
+        Item item = new Item("apple", 3);
+        // Checked by the first value, then written by the compiled properties
+        for (int i = 0; i < 3; i++) {
+            assertEquals(JsonParser.marshal(item), json(item));
+        }
+        assertTrue(((JsonSerializer.Bean)JsonSerializer.of(Item.class)).isChecked());
+        SpecialItem special = new SpecialItem();
+        assertEquals(JsonParser.marshal(special), json(special));
+        assertEquals(JsonParser.marshal(Arrays.asList(special, item)), json(Arrays.asList(special, item)));
+        assertTrue(((JsonSerializer.Bean)serializer).isChecked());
+    }
+}
@@ -7,8 +7,10 @@ import net.tiny.ws.rs.test.SampleApiService;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.annotation.security.RolesAllowed;
@@ -16,6 +18,7 @@ import javax.ws.rs.BeanParam;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.MatrixParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -361,6 +364,40 @@ public class MethodPatternTest {
         assertEquals("[Item1, Item2, Item3]", args.get("order"));
     }
 
+    @Test
+    public void testQueryParamInAnyOrder() throws Exception {
+        Method method = SampleApiService.class.getMethod("query", int.class, int.class, String.class);
+        MethodPattern methodPattern = new MethodPattern("calc", "/query?{from=\\d+}&{to=\\d+}&{order}", "GET", MediaType.TEXT_PLAIN, SampleApiService.class, null, method);
+
+        Map<String, Object> args = new HashMap<String, Object>();
+        assertTrue(methodPattern.validatePattern("calc/query?order=asc&to=999&from=10", "GET", args));
+        assertEquals(3, args.size());
+        assertEquals("10", args.get("from"));
+        assertEquals("999", args.get("to"));
+        assertEquals("asc", args.get("order"));
+
+        // Omitted parameter
+        args.clear();
+        assertTrue(methodPattern.validatePattern("calc/query?to=999", "GET", args));
+        assertEquals(1, args.size());
+        assertEquals("999", args.get("to"));
+
+        // Repeated parameter, the first one wins
+        args.clear();
+        assertTrue(methodPattern.validatePattern("calc/query?from=1&from=abc&to=2", "GET", args));
+        assertEquals("1", args.get("from"));
+
+        // Valueless parameter
+        args.clear();
+        assertTrue(methodPattern.validatePattern("calc/query?order&to=2", "GET", args));
+        assertFalse(args.containsKey("order"));
+        assertFalse(methodPattern.validatePattern("calc/query?from&to=2", "GET"));
+
+        // Unknown parameter and constraint
+        assertFalse(methodPattern.validatePattern("calc/query?from=1&to=2&page=3", "GET"));
+        assertFalse(methodPattern.validatePattern("calc/query?to=abc&from=1", "GET"));
+    }
+
 
     class Example08 {
         @POST
@@ -380,4 +417,60 @@ public class MethodPatternTest {
         assertTrue(methodPattern.validatePattern("msg/ch1/reg?token=1a2b3c4d", "POST"));
     }
 
+    @Test
+    public void testCompileSegments() throws Exception {
+        Method method = Example08.class.getMethod("register", String.class, String.class, String.class);
+        MethodPattern methodPattern = new MethodPattern("msg", "{channel}/reg?{token=\\w+}", "POST", MediaType.APPLICATION_JSON, Example08.class, null, method);
+        List<MethodPattern.Segment> segments = methodPattern.getSegments();
+        assertEquals(3, segments.size());
+        assertEquals("msg", segments.get(0).literal());
+        assertNull(segments.get(1).literal());
+        assertNull(segments.get(1).regex());
+        assertEquals("reg", segments.get(2).literal());
+        assertEquals("reg?token", segments.get(2).toString());
+
+        MethodPattern.Segment segment = MethodPattern.compile("{id : \\d+}", Collections.emptySet());
+        assertNull(segment.literal());
+        assertEquals("\\d+", segment.regex().pattern());
+        Map<String, Object> args = new HashMap<String, Object>();
+        assertTrue(segment.match("123", args));
+        assertEquals("123", args.get("id"));
+        assertFalse(segment.match("abc", args));
+
+        segment = MethodPattern.compile("matrix;{msg};{attr=[a-z]+}", Collections.emptySet());
+        assertEquals("matrix", segment.literal());
+        args.clear();
+        assertTrue(segment.match("matrix;msg=HOGE;attr=fuga", args));
+        assertEquals("HOGE", args.get("msg"));
+        assertEquals("fuga", args.get("attr"));
+        assertFalse(segment.match("matrix;msg=HOGE;attr=123", null));
+        assertFalse(segment.match("other;msg=HOGE", null));
+    }
+
+    class Example09 {
+        @GET
+        @Cached(60L)
+        public String find(@QueryParam("name")String name) {
+            return name;
+        }
+
+        @GET
+        @Cached(60L)
+        public String user(@HeaderParam("Authorization")String authorization) {
+            return authorization;
+        }
+    }
+
+    @Test
+    public void testCachedParameters() throws Exception {
+        Method method = Example09.class.getMethod("find", String.class);
+        MethodPattern methodPattern = new MethodPattern("rest", "/find", "GET", MediaType.TEXT_PLAIN, Example09.class, null, method);
+        assertNotNull(methodPattern.getResponseCache());
+
+        // Not keyed by the headers
+        Method user = Example09.class.getMethod("user", String.class);
+        assertThrows(IllegalArgumentException.class,
+                () -> new MethodPattern("rest", "/user", "GET", MediaType.TEXT_PLAIN, Example09.class, null, user));
+    }
+
 }
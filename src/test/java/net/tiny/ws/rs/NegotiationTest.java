@@ -0,0 +1,118 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import net.tiny.ws.Constants.MIME_TYPE;
+
+public class NegotiationTest {
+
+    @Test
+    public void testParseAccept() throws Exception {
+        List<Negotiation.Range> ranges = new ArrayList<>();
+        Negotiation.parse("text/html, application/xhtml+xml;level=1, application/xml;q=0.9, */*;q=0.8, bad, image/*;q=x", ranges);
+        assertEquals(5, ranges.size());
+        assertEquals("text/html", ranges.get(0).toString());
+        assertEquals(1000, ranges.get(0).quality);
+        assertEquals(1000, ranges.get(1).quality);
+        assertEquals(900, ranges.get(2).quality);
+        assertEquals("*/*", ranges.get(3).toString());
+        assertEquals(800, ranges.get(3).quality);
+        // Invalid quality is same as absent
+        assertEquals("image/*", ranges.get(4).toString());
+        assertEquals(1000, ranges.get(4).quality);
+    }
+
+    @Test
+    public void testNegotiate() throws Exception {
+        Negotiation negotiation = new Negotiation(new String[] {MediaType.TEXT_HTML, MediaType.APPLICATION_JSON});
+        // No 'Accept' is same as '*/*', all produced types
+        Negotiation.Choice choice = negotiation.negotiate(null);
+        assertTrue(choice.html);
+        assertTrue(choice.json);
+        assertEquals("text/html", choice.type);
+        assertSame(choice, negotiation.negotiate("*/*"));
+
+        choice = negotiation.negotiate("application/json");
+        assertFalse(choice.html);
+        assertTrue(choice.json);
+        assertEquals("application/json", choice.type);
+
+        choice = negotiation.negotiate("text/html;q=0.5, application/json;q=0.9");
+        assertFalse(choice.html);
+        assertTrue(choice.json);
+
+        // The most specific range decides the quality
+        choice = negotiation.negotiate("text/*;q=0.1, text/html, */*;q=0.2");
+        assertTrue(choice.html);
+        assertFalse(choice.json);
+
+        assertNull(negotiation.negotiate("image/png"));
+        assertNull(negotiation.negotiate("application/json;q=0, text/html;q=0"));
+
+        // Cached per header value
+        assertSame(negotiation.negotiate("application/json"), negotiation.negotiate("application/json"));
+        assertEquals(3, negotiation.cached());
+    }
+
+    @Test
+    public void testBinaryTypes() throws Exception {
+        Negotiation negotiation = new Negotiation(new String[] {MediaType.APPLICATION_OCTET_STREAM, "text/plain; charset=utf-8"});
+        assertEquals(MIME_TYPE.DAT, negotiation.negotiate(null).binary);
+        assertEquals(MIME_TYPE.TXT, negotiation.negotiate("text/plain").binary);
+        assertFalse(negotiation.negotiate(null).json);
+
+        // 'application/vnd.api+json' is written as JSON
+        negotiation = new Negotiation(new String[] {"application/vnd.api+json"});
+        assertTrue(negotiation.negotiate("application/*").json);
+
+        // NDJSON only by its media type
+        negotiation = new Negotiation(new String[] {MediaType.APPLICATION_JSON, "application/x-ndjson"});
+        assertTrue(negotiation.negotiate(null).json);
+        assertFalse(negotiation.negotiate("application/json").ndjson);
+        assertTrue(negotiation.negotiate("application/x-ndjson").ndjson);
+        assertFalse(negotiation.negotiate("application/x-ndjson").json);
+    }
+
+    @Path("/negotiation")
+    public static class NoProducesService {
+        @GET
+        public String get() {
+            return "ok";
+        }
+
+        @GET
+        @Produces({MediaType.TEXT_PLAIN, MediaType.APPLICATION_JSON})
+        public String both() {
+            return "ok";
+        }
+    }
+
+    @Test
+    public void testMethodPattern() throws Exception {
+        // No @Produces, the default media type of service
+        Method method = NoProducesService.class.getMethod("get");
+        MethodPattern pattern = new MethodPattern("/negotiation", "get", "GET", MediaType.APPLICATION_JSON,
+                NoProducesService.class, new NoProducesService(), method);
+        assertTrue(pattern.acceptableMediaType(null));
+        assertTrue(pattern.acceptableMediaType("application/json, text/plain;q=0.5"));
+        assertFalse(pattern.acceptableMediaType("text/html"));
+
+        method = NoProducesService.class.getMethod("both");
+        pattern = new MethodPattern("/negotiation", "both", "GET", MediaType.APPLICATION_JSON,
+                NoProducesService.class, new NoProducesService(), method);
+        Negotiation.Choice choice = pattern.getNegotiation().negotiate("text/plain");
+        assertFalse(choice.json);
+        assertEquals(MIME_TYPE.TXT, choice.binary);
+        assertTrue(pattern.getNegotiation().negotiate("*/*").json);
+    }
+}
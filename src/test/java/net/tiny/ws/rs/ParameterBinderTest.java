@@ -0,0 +1,56 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ws.rs.core.MediaType;
+
+import net.tiny.ws.rs.test.SampleApiService;
+
+public class ParameterBinderTest {
+
+    @Test
+    public void testCompileBinders() throws Exception {
+        Method method = SampleApiService.class.getMethod("query", int.class, int.class, String.class);
+        ParameterBinder[] binders = ParameterBinder.compile(method);
+        assertEquals(3, binders.length);
+        for (ParameterBinder binder : binders) {
+            assertTrue(binder instanceof ParameterBinder.Argument);
+        }
+
+        Map<String, Object> args = new HashMap<>();
+        args.put("from", "10");
+        args.put("order", new String[] {"date", "name"});
+        assertEquals(10, binders[0].bind(null, args, null, null));
+        // @DefaultValue("999")
+        assertEquals(999, binders[1].bind(null, args, null, null));
+        assertSame(binders[1].bind(null, args, null, null), binders[1].bind(null, args, null, null));
+        assertEquals("date", binders[2].bind(null, args, null, null));
+    }
+
+    @Test
+    public void testBindArguments() throws Exception {
+        Method method = SampleApiService.class.getMethod("query", int.class, int.class, String.class);
+        MethodPattern pattern = new MethodPattern("/api/v1", "query?{from=\\d+}&{to=\\d+}&{order}", "GET",
+                MediaType.APPLICATION_JSON, SampleApiService.class, null, method);
+        Map<String, Object> args = new HashMap<>();
+        assertTrue(pattern.validatePattern("/api/v1/query?to=20", "GET", args));
+        Object[] params = pattern.bindArguments(null, args, null);
+        assertArrayEquals(new Object[] {100, 20, "name"}, params);
+        assertEquals("query is called, from : 100, to : 20, order by name", pattern.invoke(params));
+    }
+
+    @Test
+    public void testImmutableDefault() throws Exception {
+        assertTrue(ParameterBinder.immutable(int.class));
+        assertTrue(ParameterBinder.immutable(Long.class));
+        assertTrue(ParameterBinder.immutable(String.class));
+        assertFalse(ParameterBinder.immutable(MediaType.class));
+        assertFalse(ParameterBinder.immutable(java.util.concurrent.atomic.AtomicLong.class));
+        assertFalse(ParameterBinder.immutable(String[].class));
+    }
+}
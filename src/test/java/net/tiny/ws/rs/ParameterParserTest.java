@@ -0,0 +1,75 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.RetentionPolicy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public class ParameterParserTest {
+
+    @Test
+    public void testParseIntegral() throws Exception {
+        ParameterParser parser = ParameterParser.of(int.class);
+        assertSame(parser.getClass(), ParameterParser.of(Integer.class).getClass());
+        assertEquals(123, parser.parse("123"));
+        assertEquals(-45, parser.parse("-45"));
+        assertEquals(7, parser.parse("+7"));
+        assertEquals(Integer.MAX_VALUE, parser.parse(String.valueOf(Integer.MAX_VALUE)));
+        assertEquals(Integer.MIN_VALUE, parser.parse(String.valueOf(Integer.MIN_VALUE)));
+        // Parse the characters without string
+        assertEquals(2019, parser.parse(new StringBuilder("2019")));
+
+        assertThrows(NumberFormatException.class, () -> parser.parse(""));
+        assertThrows(NumberFormatException.class, () -> parser.parse("-"));
+        assertThrows(NumberFormatException.class, () -> parser.parse("12a"));
+        assertThrows(NumberFormatException.class, () -> parser.parse("2147483648"));
+        assertThrows(NumberFormatException.class, () -> parser.parse("-2147483649"));
+
+        ParameterParser longs = ParameterParser.of(long.class);
+        assertEquals(Long.MAX_VALUE, longs.parse(String.valueOf(Long.MAX_VALUE)));
+        assertEquals(Long.MIN_VALUE, longs.parse(String.valueOf(Long.MIN_VALUE)));
+        assertThrows(NumberFormatException.class, () -> longs.parse("9223372036854775808"));
+        assertEquals((short)-300, ParameterParser.of(short.class).parse("-300"));
+        assertThrows(NumberFormatException.class, () -> ParameterParser.of(byte.class).parse("128"));
+    }
+
+    @Test
+    public void testParseDecimalAndBoolean() throws Exception {
+        assertEquals(1.5d, ParameterParser.of(double.class).parse("1.5"));
+        assertEquals(-2.25f, ParameterParser.of(Float.class).parse("-2.25"));
+        assertEquals(new BigDecimal("3.14"), ParameterParser.of(BigDecimal.class).parse("3.14"));
+
+        ParameterParser parser = ParameterParser.of(boolean.class);
+        assertEquals(Boolean.TRUE, parser.parse("true"));
+        assertEquals(Boolean.TRUE, parser.parse("TRUE"));
+        assertEquals(Boolean.FALSE, parser.parse("yes"));
+        assertEquals(Boolean.FALSE, parser.parse(""));
+    }
+
+    @Test
+    public void testParseObjects() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        assertEquals(uuid, ParameterParser.of(UUID.class).parse(uuid.toString()));
+        assertEquals(uuid, ParameterParser.of(UUID.class).parse(uuid.toString().toUpperCase()));
+        assertEquals(UUID.fromString("1-2-3-4-5"), ParameterParser.of(UUID.class).parse("1-2-3-4-5"));
+        assertThrows(IllegalArgumentException.class,
+                () -> ParameterParser.of(UUID.class).parse("g0000000-0000-0000-0000-000000000000"));
+
+        assertEquals(RetentionPolicy.RUNTIME, ParameterParser.of(RetentionPolicy.class).parse("RUNTIME"));
+        assertThrows(IllegalArgumentException.class, () -> ParameterParser.of(RetentionPolicy.class).parse("runtime"));
+
+        assertEquals(LocalDate.of(2019, 3, 1), ParameterParser.of(LocalDate.class).parse("2019-03-01"));
+        assertEquals(LocalDateTime.of(2019, 3, 1, 12, 30), ParameterParser.of(LocalDateTime.class).parse("2019-03-01T12:30"));
+        assertEquals(Instant.EPOCH, ParameterParser.of(Instant.class).parse("1970-01-01T00:00:00Z"));
+        assertEquals(Duration.ofSeconds(90), ParameterParser.of(Duration.class).parse("PT1M30S"));
+
+        assertNull(ParameterParser.of(String.class));
+        assertNull(ParameterParser.of(StringBuilder.class));
+    }
+}
@@ -0,0 +1,139 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.MediaType;
+
+import net.tiny.ws.rs.test.SampleAsyncService;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testBurstAndRefill() throws Exception {
+        RateLimiter limiter = new RateLimiter(10, 1L, TimeUnit.SECONDS, 3, true);
+        assertEquals(2L, limiter.acquire("a"));
+        assertEquals(1L, limiter.acquire("a"));
+        assertEquals(0L, limiter.acquire("a"));
+        long wait = limiter.acquire("a");
+        assertTrue(wait < 0L);
+        // One token per 100ms
+        assertTrue(-wait <= TimeUnit.MILLISECONDS.toNanos(100L), "wait " + wait);
+        assertEquals(1L, limiter.rejected());
+        assertEquals(1L, RateLimiter.seconds(-wait));
+
+        // Other client has its own bucket
+        assertEquals(2L, limiter.acquire("b"));
+        assertEquals(2, limiter.clients());
+
+        Thread.sleep(110L);
+        assertTrue(limiter.acquire("a") >= 0L);
+        assertEquals("rate:10/1000ms burst:3 per client rejected:1", limiter.toString());
+    }
+
+    @Test
+    public void testStripedRate() throws Exception {
+        final RateLimiter limiter = new RateLimiter(100, 1L, TimeUnit.HOURS, 0, false);
+        assertFalse(limiter.isPerClient());
+        final AtomicInteger granted = new AtomicInteger();
+        final int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 100; i++) {
+                    if (limiter.acquire(null) >= 0L) {
+                        granted.incrementAndGet();
+                    }
+                }
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        executor.shutdown();
+        // The stripes share the burst, no refill in an hour
+        assertTrue(granted.get() <= 100, "granted " + granted.get());
+        assertTrue(granted.get() >= 100 - Runtime.getRuntime().availableProcessors(), "granted " + granted.get());
+        assertEquals(800L - granted.get(), limiter.rejected());
+    }
+
+    @Test
+    public void testStripedBurst() throws Exception {
+        // The remainder of burst is not lost by the stripes
+        final RateLimiter limiter = new RateLimiter(7, 1L, TimeUnit.HOURS, 0, false);
+        int granted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (limiter.acquire(null) >= 0L) {
+                granted++;
+            }
+        }
+        assertEquals(7, granted);
+        assertEquals(13L, limiter.rejected());
+    }
+
+    @Test
+    public void testEvictIdleClients() throws Exception {
+        RateLimiter limiter = new RateLimiter(1000, 1L, TimeUnit.MILLISECONDS, 1, true);
+        for (int i = 0; i < RateLimiter.MAX_CLIENTS; i++) {
+            limiter.acquire("client-" + i);
+        }
+        assertEquals(RateLimiter.MAX_CLIENTS, limiter.clients());
+        Thread.sleep(5L);
+        limiter.acquire("other");
+        assertEquals(1, limiter.clients());
+    }
+
+    @Test
+    public void testEvictActiveClients() throws Exception {
+        // No bucket is refilled in an hour
+        RateLimiter limiter = new RateLimiter(1, 1L, TimeUnit.HOURS, 1, true);
+        for (int i = 0; i < RateLimiter.MAX_CLIENTS; i++) {
+            assertEquals(0L, limiter.acquire("client-" + i));
+        }
+        assertEquals(RateLimiter.MAX_CLIENTS, limiter.clients());
+        // The least recently used buckets are evicted
+        assertEquals(0L, limiter.acquire("other"));
+        assertTrue(limiter.clients() <= RateLimiter.MAX_CLIENTS - RateLimiter.EVICTIONS + 1, "clients " + limiter.clients());
+        assertTrue(limiter.acquire("other") < 0L);
+        assertTrue(limiter.acquire("client-" + (RateLimiter.MAX_CLIENTS - 1)) < 0L);
+        for (int i = 0; i < RateLimiter.MAX_CLIENTS * 2; i++) {
+            limiter.acquire("new-" + i);
+            assertTrue(limiter.clients() <= RateLimiter.MAX_CLIENTS);
+        }
+    }
+
+    @Test
+    public void testRateLimitAnnotation() throws Exception {
+        // @RateLimit(value = 1, period = 1L, unit = TimeUnit.MINUTES, perClient = true)
+        Method method = SampleAsyncService.class.getMethod("limited");
+        MethodPattern methodPattern = new MethodPattern("/api/v3/async", "/limited", "GET", MediaType.APPLICATION_JSON, SampleAsyncService.class, null, method);
+        RateLimiter limiter = methodPattern.getRateLimiter();
+        assertNotNull(limiter);
+        assertTrue(limiter.isPerClient());
+        assertEquals(1, limiter.getLimit());
+        assertEquals(1, limiter.getBurst());
+        assertEquals("rate:1/60000ms burst:1 per client rejected:0", limiter.toString());
+        // The settings of handler are not used
+        assertSame(limiter, methodPattern.getRateLimiter(100, 0, false));
+    }
+
+    @Test
+    public void testDefaultRateLimit() throws Exception {
+        Method method = SampleAsyncService.class.getMethod("busy");
+        MethodPattern methodPattern = new MethodPattern("/api/v3/async", "/busy", "GET", MediaType.APPLICATION_JSON, SampleAsyncService.class, null, method);
+        assertNull(methodPattern.getRateLimiter());
+        assertNull(methodPattern.getRateLimiter(0, 0, false));
+        // Kept by the route until the settings are changed
+        RateLimiter limiter = methodPattern.getRateLimiter(5, 2, true);
+        assertEquals("rate:5/1000ms burst:2 per client rejected:0", limiter.toString());
+        assertSame(limiter, methodPattern.getRateLimiter(5, 2, true));
+        assertNotSame(limiter, methodPattern.getRateLimiter(5, 2, false));
+    }
+}
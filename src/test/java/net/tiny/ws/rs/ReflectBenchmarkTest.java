@@ -8,55 +8,161 @@ import net.tiny.ws.rs.test.TestApiService;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
+import javax.ws.rs.core.MediaType;
+
 public class ReflectBenchmarkTest {
-    @Test
-    public void testReflect() throws Throwable {
-        final int exeCount = 10000000;
-        final Class<?> c = TestApiService.class;
-        final Object j = c.newInstance();
-        Method m = c.getMethod("setId", String.class);
-        System.out.println("测试开始，循环次数：" + exeCount / 10000 + "万");
-        System.out.println("----------------------------------------------------------------------------------");
-        System.out.println("直接调用Method："); //30ms
-        long currTime = System.currentTimeMillis();
-        for (int i = 0; i < exeCount; i++) {
-            m.invoke(j, "test");
+
+    interface Call {
+        Object call(Object[] args) throws Throwable;
+    }
+
+    static int sink;
+
+    /**
+     * Run the warm up rounds then the measured rounds, and print the average nanoseconds of a call.
+     */
+    static long measure(String name, int exeCount, Call call) throws Throwable {
+        final Object[][] args = new Object[16][];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = new Object[] {"id" + i};
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < exeCount; i++) {
+                sink += call.call(args[i & 15]).hashCode();
+            }
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            final long start = System.nanoTime();
+            for (int i = 0; i < exeCount; i++) {
+                sink += call.call(args[i & 15]).hashCode();
+            }
+            best = Math.min(best, System.nanoTime() - start);
         }
-        System.out.println("执行结束，耗时" + (System.currentTimeMillis() - currTime)
-                + "豪秒");
+        System.out.println(String.format("%-32s %8.2f 纳秒/次", name, (double)best / exeCount));
+        return best;
+    }
+
+    @Test
+    public void testDispatch() throws Throwable {
+        final int exeCount = 1000000;
+        final TestApiService service = new TestApiService();
+        final Method m = TestApiService.class.getMethod("getId", String.class);
+        final MethodInvoker reflection = new MethodInvoker.Reflection(m);
+        final MethodInvoker handle = new MethodInvoker.Handle(m);
+        final MethodInvoker lambda = MethodInvoker.of(m);
+        assertTrue(lambda instanceof MethodInvoker.Lambda);
+        final MethodHandle methodHandle = MethodHandles.lookup()
+                .findVirtual(TestApiService.class, "getId", MethodType.methodType(String.class, String.class));
+        final MethodPattern pattern = new MethodPattern("/api/v2", "test/get/{id}", "GET",
+                MediaType.APPLICATION_JSON, TestApiService.class, service, m);
+        assertEquals("Id is test", pattern.invoke(new Object[] {"test"}));
+
+        System.out.println("调用测试，循环次数：" + exeCount / 10000 + "万");
         System.out.println("----------------------------------------------------------------------------------");
-        System.out.println("每次构造Method再执行："); //3000ms
-        currTime = System.currentTimeMillis();
-        for (int i = 0; i < exeCount; i++) {
-            m = c.getMethod("setId", String.class);
-            m.invoke(j, "test");
-        }
-        System.out.println("执行结束，耗时" + (System.currentTimeMillis() - currTime)
-                + "豪秒");
+        measure("直接调用", exeCount, args -> service.getId((String)args[0]));
+        measure("方法句柄调用(invokeExact)", exeCount, args -> (String)methodHandle.invokeExact(service, (String)args[0]));
+        measure("Method.invoke", exeCount, args -> m.invoke(service, args));
+        measure("MethodInvoker(反射)", exeCount, args -> reflection.invoke(service, args));
+        measure("MethodInvoker(方法句柄)", exeCount, args -> handle.invoke(service, args));
+        measure("MethodInvoker(LambdaMetafactory)", exeCount, args -> lambda.invoke(service, args));
+        measure("MethodPattern.invoke", exeCount, args -> pattern.invoke(args));
         System.out.println("----------------------------------------------------------------------------------");
-        final TestApiService service = new TestApiService();
-        System.out.println("直接调用：");  //20ms
-        currTime = System.currentTimeMillis();
-        for (int i = 0; i < exeCount; i++) {
-            service.setId("test");
+    }
+
+    public static class Example01 {
+        public int add(int a, int b) {
+            return a + b;
         }
-        System.out.println("执行结束，耗时" + (System.currentTimeMillis() - currTime)
-                + "豪秒");
 
-        System.out.println("----------------------------------------------------------------------------------");
-        System.out.println("方法句柄调用：");//100ms
-        currTime = System.currentTimeMillis();
-        MethodHandles.Lookup lookkup=MethodHandles.lookup();
-        MethodType mt = MethodType.methodType(void.class, String.class);
-        MethodHandle methodHandle=lookkup.findVirtual(TestApiService.class, "setId", mt);
-        assertNotNull(methodHandle);
-        for (int i = 0; i < exeCount; i++) {
-            methodHandle.invokeExact(service, "test");
-        }
-        System.out.println("执行结束，耗时" + (System.currentTimeMillis() - currTime)
-                + "豪秒");
+        public static long twice(long a) {
+            return a * 2L;
+        }
+
+        public void fail(String msg) {
+            throw new IllegalStateException(msg);
+        }
+
+        public String join(String... values) {
+            return String.join(",", values);
+        }
+
+        public Integer length(String value) {
+            return value.length();
+        }
+    }
+
+    @Test
+    public void testInvokers() throws Throwable {
+        final Example01 target = new Example01();
+        assertTrue(MethodInvoker.of(Example01.class.getMethod("add", int.class, int.class)) instanceof MethodInvoker.Lambda);
+        assertTrue(MethodInvoker.of(Example01.class.getMethod("fail", String.class)) instanceof MethodInvoker.Handle);
+        for (int reflect = 0; reflect < 3; reflect++) {
+            MethodInvoker add = invoker(Example01.class.getMethod("add", int.class, int.class), reflect);
+            assertEquals(3, add.invoke(target, new Object[] {1, 2}));
+
+            MethodInvoker twice = invoker(Example01.class.getMethod("twice", long.class), reflect);
+            assertEquals(8L, twice.invoke(null, new Object[] {4L}));
+
+            MethodInvoker join = invoker(Example01.class.getMethod("join", String[].class), reflect);
+            assertEquals("a,b", join.invoke(target, new Object[] {new String[] {"a", "b"}}));
+
+            MethodInvoker fail = invoker(Example01.class.getMethod("fail", String.class), reflect);
+            try {
+                fail.invoke(target, new Object[] {"error"});
+                fail("Must throw InvocationTargetException");
+            } catch (InvocationTargetException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+                assertEquals("error", e.getCause().getMessage());
+            }
+            try {
+                add.invoke(target, new Object[] {1});
+                fail("Must throw IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+            }
+
+            // The arguments not adapted to the parameter types
+            try {
+                add.invoke(target, new Object[] {1, null});
+                fail("Must throw IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+            }
+            try {
+                add.invoke(target, new Object[] {1, "2"});
+                fail("Must throw IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+            }
+            try {
+                add.invoke("target", new Object[] {1, 2});
+                fail("Must throw IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+            }
+            // Widened as the reflection
+            assertEquals(6L, twice.invoke(null, new Object[] {3}));
 
+            // The same exceptions thrown by the target method
+            MethodInvoker length = invoker(Example01.class.getMethod("length", String.class), reflect);
+            assertEquals(3, length.invoke(target, new Object[] {"abc"}));
+            try {
+                length.invoke(target, new Object[] {null});
+                fail("Must throw InvocationTargetException");
+            } catch (InvocationTargetException e) {
+                assertTrue(e.getCause() instanceof NullPointerException);
+            }
+        }
+    }
+
+    static MethodInvoker invoker(Method method, int type) throws Throwable {
+        switch (type) {
+        case 0:
+            return new MethodInvoker.Reflection(method);
+        case 1:
+            return new MethodInvoker.Handle(method);
+        default:
+            return MethodInvoker.of(method);
+        }
     }
 }
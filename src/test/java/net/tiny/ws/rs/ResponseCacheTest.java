@@ -0,0 +1,114 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import net.tiny.ws.Constants.MIME_TYPE;
+
+public class ResponseCacheTest {
+
+    static ResponseCache.Entry entry(int size) {
+        return new ResponseCache.Entry(MIME_TYPE.JSON, null, new byte[size]);
+    }
+
+    @Test
+    public void testKey() throws Exception {
+        assertEquals("/api/items?a=1&b=2|application/json",
+                ResponseCache.key(new URI("/api/items?b=2&a=1"), "application/json"));
+        assertEquals(ResponseCache.key(new URI("/api/items?a=1&&b=2"), "text/plain"),
+                ResponseCache.key(new URI("/api/items?b=2&a=1"), "text/plain"));
+        assertEquals("/api/items", ResponseCache.key(new URI("/api/items?"), null));
+        assertNotEquals(ResponseCache.key(new URI("/api/items?a=1"), "text/plain"),
+                ResponseCache.key(new URI("/api/items?a=1"), "application/json"));
+    }
+
+    @Test
+    public void testExpiredAndStale() throws Exception {
+        ResponseCache cache = new ResponseCache(TimeUnit.MILLISECONDS.toNanos(50L),
+                TimeUnit.MILLISECONDS.toNanos(100L), 1024L * 1024L);
+        assertNull(cache.get("k"));
+        cache.put("k", entry(10));
+        ResponseCache.Entry entry = cache.get("k");
+        assertTrue(entry.isFresh());
+
+        Thread.sleep(60L);
+        entry = cache.get("k");
+        assertNotNull(entry);
+        assertFalse(entry.isFresh());
+        // Only one request revalidates, the others get the stale response
+        assertTrue(entry.revalidate());
+        assertFalse(entry.revalidate());
+
+        // Revalidation failed, the next request revalidates it
+        cache.fill("k", entry).complete(null);
+        assertTrue(entry.revalidate());
+        cache.fill("k", entry).complete(entry(20));
+        ResponseCache.Entry refreshed = cache.get("k");
+        assertNotSame(entry, refreshed);
+        assertTrue(refreshed.isFresh());
+
+        Thread.sleep(200L);
+        // Over the stale time
+        assertNull(cache.get("k"));
+        assertEquals(0, cache.size());
+        assertEquals(0L, cache.bytes());
+        assertEquals(3L, cache.hits());
+        assertEquals(2L, cache.misses());
+    }
+
+    @Test
+    public void testMaximumBytes() throws Exception {
+        ResponseCache cache = new ResponseCache(TimeUnit.MINUTES.toNanos(1L), 0L, 10_000L);
+        for (int i = 0; i < 100; i++) {
+            cache.get("k" + i);
+            cache.put("k" + i, entry(936));
+            assertTrue(cache.bytes() <= 10_000L, cache.toString());
+        }
+        assertTrue(cache.size() <= 10);
+        assertTrue(cache.evictions() > 0L);
+        // Larger than the cache
+        cache.put("large", entry(20_000));
+        assertNull(cache.get("large"));
+    }
+
+    @Test
+    public void testAdmission() throws Exception {
+        ResponseCache cache = new ResponseCache(TimeUnit.MINUTES.toNanos(1L), 0L, 10_000L);
+        // The hot entries used many times
+        for (int i = 0; i < 8; i++) {
+            for (int n = 0; n < 10; n++) {
+                cache.get("hot" + i);
+            }
+            cache.put("hot" + i, entry(1136));
+        }
+        // A scan of cold entries used once does not flush the hot entries
+        for (int i = 0; i < 50; i++) {
+            cache.get("cold" + i);
+            cache.put("cold" + i, entry(1136));
+        }
+        for (int i = 0; i < 8; i++) {
+            assertNotNull(cache.get("hot" + i), "hot" + i);
+        }
+        assertTrue(cache.rejections() > 0L);
+        assertTrue(cache.bytes() <= 10_000L);
+    }
+
+    @Test
+    public void testFrequencySketch() throws Exception {
+        ResponseCache.FrequencySketch sketch = new ResponseCache.FrequencySketch(64);
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(42);
+        }
+        // 4-bit counters
+        assertEquals(15, sketch.frequency(42));
+        assertEquals(0, sketch.frequency(43));
+        // Halved after 10 times of width additions
+        for (int i = 0; i < 640; i++) {
+            sketch.increment(i * 31);
+        }
+        assertTrue(sketch.frequency(42) < 15);
+    }
+}
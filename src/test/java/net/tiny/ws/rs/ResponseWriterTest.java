@@ -0,0 +1,122 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import net.tiny.config.JsonParser;
+
+public class ResponseWriterTest {
+
+    @Test
+    public void testFixedLength() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpExchange he = mock(HttpExchange.class);
+        when(he.getResponseBody()).thenReturn(out);
+
+        final String text = "{\"name\":\"日本語 😀 é\"}";
+        final byte[] expected = text.getBytes(StandardCharsets.UTF_8);
+        ResponseWriter.send(he, HttpURLConnection.HTTP_OK, 1024, writer -> writer.write(text));
+        verify(he).sendResponseHeaders(eq(HttpURLConnection.HTTP_OK), eq((long)expected.length));
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    @Test
+    public void testChunked() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpExchange he = mock(HttpExchange.class);
+        when(he.getResponseBody()).thenReturn(out);
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("数据").append(i).append(',');
+        }
+        final String text = sb.toString();
+        ResponseWriter.send(he, HttpURLConnection.HTTP_OK, 256, writer -> {
+            writer.write(text);
+            assertTrue(writer.isChunked());
+        });
+        verify(he).sendResponseHeaders(eq(HttpURLConnection.HTTP_OK), eq(0L));
+        assertEquals(text, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testEmptyBody() throws Exception {
+        HttpExchange he = mock(HttpExchange.class);
+        ResponseWriter.send(he, HttpURLConnection.HTTP_NO_CONTENT, 256, writer -> {});
+        verify(he).sendResponseHeaders(eq(HttpURLConnection.HTTP_NO_CONTENT), eq(-1L));
+        verify(he, never()).getResponseBody();
+    }
+
+    @Test
+    public void testFailedBeforeSent() throws Exception {
+        HttpExchange he = mock(HttpExchange.class);
+        assertThrows(IOException.class, () -> ResponseWriter.send(he, HttpURLConnection.HTTP_OK, 256, writer -> {
+            writer.write("{\"partial\":");
+            throw new IOException("failed");
+        }));
+        // The error response can be sent by the caller
+        verify(he, never()).sendResponseHeaders(anyInt(), anyLong());
+    }
+
+    @Test
+    public void testJsonElements() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpExchange he = mock(HttpExchange.class);
+        when(he.getResponseBody()).thenReturn(out);
+
+        List<Object> list = Arrays.asList(1, null, 3);
+        ResponseWriter.send(he, HttpURLConnection.HTTP_OK, 256, writer -> writer.json(list));
+        assertEquals("[1,null,3]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testJsonBeans() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpExchange he = mock(HttpExchange.class);
+        when(he.getResponseBody()).thenReturn(out);
+
+        final List<JsonSerializerTest.Item> items = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            items.add(new JsonSerializerTest.Item("item-" + i, i));
+        }
+        ResponseWriter.send(he, HttpURLConnection.HTTP_OK, 256, writer -> {
+            final List<JsonSerializerTest.Item> list = new AbstractList<JsonSerializerTest.Item>() {
+                @Override
+                public JsonSerializerTest.Item get(int index) {
+                    if (index == size() - 1) {
+                        // The former elements were sent before the last one is written
+                        assertTrue(writer.isChunked());
+                    }
+                    return items.get(index);
+                }
+
+                @Override
+                public int size() {
+                    return items.size();
+                }
+            };
+            writer.json(list, JsonSerializer.of(list.getClass()));
+        });
+        verify(he).sendResponseHeaders(eq(HttpURLConnection.HTTP_OK), eq(0L));
+        assertEquals(JsonParser.marshal(items), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
@@ -9,6 +9,9 @@ import net.tiny.ws.rs.test.TestApiService;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class RestServiceFactoryTest {
 
@@ -72,5 +75,46 @@ public class RestServiceFactoryTest {
         final Map<String, Object> args = new HashMap<>();
         RestServiceHandler handler = factory.getRestServiceHandler("/api/v1/test/unkonw/123", "GET", args);
         assertNull(handler);
+        for (int i = 0; i < 10; i++) {
+            assertNull(factory.getRestServiceHandler("/api/v1/test/unkonw/" + i, "GET", args));
+        }
+        assertEquals(11L, factory.getUnmatchedCount());
+    }
+
+    @Test
+    public void testLookupWhileReloading() throws Exception {
+        final RestApplication application = new RestApplication();
+        application.setScan(".*/classes/, .*/test-classes/, .*/tiny-.*[.]jar,");
+        RestServiceLocator context = new RestServiceLocator();
+        context.bind("application", application, true);
+
+        final RestServiceFactory factory = new RestServiceFactory("/api", context, null);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicInteger lookups = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    final Map<String, Object> args = new HashMap<>();
+                    assertNotNull(factory.getRestServiceHandler("/api/v1/add/123/456", "GET", args));
+                    assertEquals(2, args.size());
+                    lookups.incrementAndGet();
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20; i++) {
+            // Rebuild the route table
+            factory.setServiceContext(context);
+        }
+        while (lookups.get() < 100 && failure.get() == null) {
+            Thread.yield();
+        }
+        running.set(false);
+        reader.join();
+        assertNull(failure.get());
+        assertTrue(factory.getWrapperServices().length > 0);
     }
 }
@@ -107,6 +107,10 @@ public class RestServiceWrapperTest {
         assertEquals(-8, restService.hit("/rest/xyz/abc/222", "GET").getHit());
         assertEquals(15,  restService.hit("/rest/aaa/abc", "GET").getHit());
         assertEquals(15,  restService.hit("/rest/add/111/222", "POST").getHit());
+        // The misses are shared results
+        assertSame(restService.hit("/rest/xyz/abc/222", "GET"), restService.hit("/rest/xyz/abc/222", "GET"));
+        assertSame(Hitting.miss(Hitting.MAX_MISS), Hitting.miss(Integer.MAX_VALUE));
+        assertFalse(Hitting.miss(-8).hit());
 
         assertTrue(restService.matches("/rest"));
         assertFalse(restService.matches("/api"));
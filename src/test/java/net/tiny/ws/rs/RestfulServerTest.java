@@ -9,6 +9,10 @@ import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.LogManager;
 
 import org.junit.jupiter.api.AfterAll;
@@ -116,6 +120,190 @@ public class RestfulServerTest {
         connection.disconnect();
     }
 
+    @Test
+    public void testAsyncResult() throws Exception {
+        URL url = new URL("http://localhost:" + port +"/api/v3/async/hello/tiny");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("GET");
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        assertEquals("application/json; charset=utf-8", connection.getHeaderField("Content-Type"));
+        BufferedInputStream bis = new BufferedInputStream(connection.getInputStream());
+        byte[] contents = getContent(connection.getContentLength(), bis);
+        bis.close();
+        assertTrue(new String(contents).contains("Hello tiny"));
+        connection.disconnect();
+
+        // @Timeout(100)
+        url = new URL("http://localhost:" + port +"/api/v3/async/slow");
+        connection = (HttpURLConnection) url.openConnection();
+        long start = System.currentTimeMillis();
+        assertEquals(HttpURLConnection.HTTP_GATEWAY_TIMEOUT, connection.getResponseCode());
+        assertTrue(System.currentTimeMillis() - start < 2000L);
+        connection.disconnect();
+
+        url = new URL("http://localhost:" + port +"/api/v3/async/conflict");
+        connection = (HttpURLConnection) url.openConnection();
+        assertEquals(HttpURLConnection.HTTP_CONFLICT, connection.getResponseCode());
+        connection.disconnect();
+    }
+
+    @Test
+    public void testBulkheadRejected() throws Exception {
+        final URL url = new URL("http://localhost:" + port +"/api/v3/async/busy");
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Future<Integer> first = executor.submit(() -> {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            try {
+                return connection.getResponseCode();
+            } finally {
+                connection.disconnect();
+            }
+        });
+        Thread.sleep(100L);
+        // @Bulkhead(value = 1, retryAfter = 2)
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        assertEquals(HttpURLConnection.HTTP_UNAVAILABLE, connection.getResponseCode());
+        assertEquals("2", connection.getHeaderField("Retry-After"));
+        connection.disconnect();
+        assertEquals(HttpURLConnection.HTTP_OK, first.get(5L, TimeUnit.SECONDS).intValue());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testCachedResponse() throws Exception {
+        // @Cached(1min), the query parameters are sorted in the key
+        URL url = new URL("http://localhost:" + port +"/api/v3/async/cached?a=x&b=y");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        BufferedInputStream bis = new BufferedInputStream(connection.getInputStream());
+        final String first = new String(getContent(connection.getContentLength(), bis));
+        bis.close();
+        connection.disconnect();
+
+        url = new URL("http://localhost:" + port +"/api/v3/async/cached?b=y&a=x");
+        connection = (HttpURLConnection) url.openConnection();
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        bis = new BufferedInputStream(connection.getInputStream());
+        assertEquals(first, new String(getContent(connection.getContentLength(), bis)));
+        bis.close();
+        connection.disconnect();
+
+        url = new URL("http://localhost:" + port +"/api/v3/async/cached?a=z&b=y");
+        connection = (HttpURLConnection) url.openConnection();
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        bis = new BufferedInputStream(connection.getInputStream());
+        assertNotEquals(first, new String(getContent(connection.getContentLength(), bis)));
+        bis.close();
+        connection.disconnect();
+    }
+
+    @Test
+    public void testNdjsonList() throws Exception {
+        // A List result negotiated as NDJSON, one JSON value per line
+        final URL url = new URL("http://localhost:" + port +"/api/v3/async/rows");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Accept", "application/x-ndjson");
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        assertEquals("application/x-ndjson", connection.getHeaderField("Content-Type"));
+        BufferedInputStream bis = new BufferedInputStream(connection.getInputStream());
+        final String first = new String(getContent(connection.getContentLength(), bis));
+        bis.close();
+        connection.disconnect();
+        assertEquals("\"row1\"\n\"row2\"\n\"row1\"\n", first);
+
+        // @Cached(1min), the second response is sent from the cache
+        connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Accept", "application/x-ndjson");
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        assertEquals("application/x-ndjson", connection.getHeaderField("Content-Type"));
+        bis = new BufferedInputStream(connection.getInputStream());
+        assertEquals(first, new String(getContent(connection.getContentLength(), bis)));
+        bis.close();
+        connection.disconnect();
+
+        // A JSON array when JSON is acceptable
+        connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Accept", "application/json");
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        bis = new BufferedInputStream(connection.getInputStream());
+        assertEquals("[\"row1\",\"row2\",\"row2\"]", new String(getContent(connection.getContentLength(), bis)));
+        bis.close();
+        connection.disconnect();
+    }
+
+    @Test
+    public void testFailedAfterChunked() throws Exception {
+        // The status was sent before the body failed, the response is ended
+        final URL url = new URL("http://localhost:" + port +"/api/v3/async/broken");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        assertEquals("chunked", connection.getHeaderField("Transfer-Encoding"));
+        String body;
+        try (InputStream in = connection.getInputStream()) {
+            body = new String(getContent(1024, in));
+        } catch (IOException e) {
+            body = "";
+        }
+        assertFalse(body.endsWith("]"));
+        connection.disconnect();
+    }
+
+    @Test
+    public void testRateLimited() throws Exception {
+        // @RateLimit(value = 1, period = 1L, unit = TimeUnit.MINUTES, perClient = true)
+        final URL url = new URL("http://localhost:" + port +"/api/v3/async/limited");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        assertEquals("1", connection.getHeaderField("RateLimit-Limit"));
+        assertEquals("0", connection.getHeaderField("RateLimit-Remaining"));
+        connection.disconnect();
+
+        connection = (HttpURLConnection) url.openConnection();
+        assertEquals(429, connection.getResponseCode());
+        assertEquals("0", connection.getHeaderField("RateLimit-Remaining"));
+        assertNotNull(connection.getHeaderField("RateLimit-Reset"));
+        assertEquals(connection.getHeaderField("RateLimit-Reset"), connection.getHeaderField("Retry-After"));
+        connection.disconnect();
+    }
+
+    @Test
+    public void testDeadlineExceeded() throws Exception {
+        // @Timeout(100ms) on a blocking method
+        final URL url = new URL("http://localhost:" + port +"/api/v3/async/deadline");
+        final long start = System.currentTimeMillis();
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        assertEquals(HttpURLConnection.HTTP_GATEWAY_TIMEOUT, connection.getResponseCode());
+        assertTrue(System.currentTimeMillis() - start < 1000L);
+        connection.disconnect();
+    }
+
+    @Test
+    public void testBulkheadAfterDeadline() throws Exception {
+        // @Timeout(100ms) @Bulkhead(value = 1, retryAfter = 1)
+        final URL url = new URL("http://localhost:" + port +"/api/v3/async/overdue");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        assertEquals(HttpURLConnection.HTTP_GATEWAY_TIMEOUT, connection.getResponseCode());
+        connection.disconnect();
+        // The permit is held until the method returns
+        connection = (HttpURLConnection) url.openConnection();
+        assertEquals(HttpURLConnection.HTTP_UNAVAILABLE, connection.getResponseCode());
+        connection.disconnect();
+    }
+
+    @Test
+    public void testInterruptedByDeadline() throws Exception {
+        // @Timeout(100ms) @Bulkhead(value = 1, retryAfter = 1)
+        final URL url = new URL("http://localhost:" + port +"/api/v3/async/interrupted");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        assertEquals(HttpURLConnection.HTTP_GATEWAY_TIMEOUT, connection.getResponseCode());
+        connection.disconnect();
+        Thread.sleep(100L);
+        // The blocking method was interrupted, its permit is released
+        connection = (HttpURLConnection) url.openConnection();
+        assertEquals(HttpURLConnection.HTTP_GATEWAY_TIMEOUT, connection.getResponseCode());
+        connection.disconnect();
+    }
+
     byte[] getContent(int contentLength, InputStream in) throws IOException {
         ByteArrayOutputStream contentBuffer = new ByteArrayOutputStream();
         byte readBuf[] = new byte[contentLength];
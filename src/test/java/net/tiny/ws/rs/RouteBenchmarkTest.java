@@ -0,0 +1,75 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.MediaType;
+
+import net.tiny.ws.rs.test.TestApiService;
+
+public class RouteBenchmarkTest {
+
+    static List<MethodPattern> routes(int size) throws Exception {
+        final Method method = TestApiService.class.getMethod("getId", String.class);
+        final TestApiService service = new TestApiService();
+        final List<MethodPattern> patterns = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            patterns.add(new MethodPattern("/api/v" + (i % 10), String.format("res%04d/{id}", i), "GET",
+                    MediaType.APPLICATION_JSON, TestApiService.class, service, method));
+        }
+        patterns.sort(null);
+        return patterns;
+    }
+
+    static MethodPattern linear(List<MethodPattern> patterns, String uri, Map<String, Object> args) throws Exception {
+        for (MethodPattern pattern : patterns) {
+            if (pattern.hit(uri, "GET", args) == 0) {
+                return pattern;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testLinearAndTreeLookup() throws Exception {
+        final int exeCount = 20000;
+        System.out.println("路由检索测试，循环次数：" + exeCount);
+        System.out.println("----------------------------------------------------------------------------------");
+        for (int size : new int[] {10, 100, 1000}) {
+            final List<MethodPattern> patterns = routes(size);
+            final RouteTree tree = new RouteTree(patterns);
+            final String[] uris = new String[size];
+            for (int i = 0; i < size; i++) {
+                uris[i] = String.format("/api/v%d/res%04d/%d", i % 10, i, i);
+            }
+            final Map<String, Object> args = new HashMap<>();
+            // Warm up
+            for (int i = 0; i < exeCount; i++) {
+                final String uri = uris[i % size];
+                assertSame(linear(patterns, uri, args), tree.find(uri, "GET", args));
+            }
+
+            long currTime = System.currentTimeMillis();
+            for (int i = 0; i < exeCount; i++) {
+                args.clear();
+                linear(patterns, uris[i % size], args);
+            }
+            final long linearTime = System.currentTimeMillis() - currTime;
+
+            currTime = System.currentTimeMillis();
+            for (int i = 0; i < exeCount; i++) {
+                args.clear();
+                tree.find(uris[i % size], "GET", args);
+            }
+            final long treeTime = System.currentTimeMillis() - currTime;
+            System.out.println(String.format("路由数:%4d  线性检索:%5d毫秒  索引检索:%5d毫秒", size, linearTime, treeTime));
+        }
+        System.out.println("----------------------------------------------------------------------------------");
+    }
+}
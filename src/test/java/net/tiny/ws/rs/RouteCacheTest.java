@@ -0,0 +1,77 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.tiny.ws.rs.test.SampleApiService;
+
+public class RouteCacheTest {
+
+    static List<MethodPattern> patterns() {
+        return new ArrayList<>(new RestServiceWrapper(new SampleApiService(), null).getMethodPatterns());
+    }
+
+    @Test
+    public void testCachedArguments() throws Exception {
+        RouteTable table = new RouteTable(patterns(), 100);
+        RouteCache cache = table.getCache();
+        assertNotNull(cache);
+
+        Map<String, Object> args = new HashMap<>();
+        MethodPattern pattern = table.find("/api/v1/add/1/2", "GET", args);
+        assertEquals("add", pattern.getMethod().getName());
+        assertEquals("1", args.get("a"));
+        assertEquals("2", args.get("b"));
+        assertEquals(0L, cache.hits());
+        assertEquals(1L, cache.misses());
+        assertEquals(1, cache.size());
+
+        args.clear();
+        args.put("form", "value");
+        assertSame(pattern, table.find("/api/v1/add/1/2", "GET", args));
+        assertEquals(3, args.size());
+        assertEquals("1", args.get("a"));
+        assertEquals("2", args.get("b"));
+        assertEquals(1L, cache.hits());
+
+        // Not cached other method and unmatched URI
+        assertNull(table.find("/api/v1/add/1/2", "POST", null));
+        assertNull(table.find("/api/v1/unknow", "GET", null));
+        assertEquals(1, cache.size());
+        assertEquals(3L, cache.misses());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        RouteTable table = new RouteTable(patterns(), 16);
+        RouteCache cache = table.getCache();
+        table.find("/api/v1/add/0/0", "GET", null);
+        for (int i = 1; i < 100; i++) {
+            // Keep the first URI as recently used
+            table.find("/api/v1/add/0/0", "GET", null);
+            table.find("/api/v1/add/" + i + "/" + i, "GET", null);
+        }
+        assertTrue(cache.size() <= 16, "size " + cache.size());
+        assertTrue(cache.evictions() > 0);
+        final long hits = cache.hits();
+        table.find("/api/v1/add/0/0", "GET", null);
+        assertEquals(hits + 1, cache.hits());
+    }
+
+    @Test
+    public void testInvalidateWithTable() throws Exception {
+        RouteTable table = new RouteTable(patterns(), 100);
+        table.find("/api/v1/add/1/2", "GET", null);
+        assertEquals(1, table.getCache().size());
+        RouteTable swapped = table.withCache(100);
+        assertEquals(table.size(), swapped.size());
+        assertEquals(0, swapped.getCache().size());
+        assertNull(table.withCache(0).getCache());
+        assertNull(new RouteTable(patterns()).getCache());
+    }
+}
@@ -0,0 +1,107 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.OPTIONS;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import net.tiny.ws.rs.test.SampleApiService;
+
+public class RouteTableTest {
+
+    @Path("/api/v4")
+    @Produces(MediaType.APPLICATION_JSON)
+    public static class Example01 {
+
+        @GET
+        @Path("item/{id}")
+        public String get(@PathParam("id") String id) {
+            return "get " + id;
+        }
+
+        @PUT
+        @Path("item/{id}")
+        public String put(@PathParam("id") String id) {
+            return "put " + id;
+        }
+
+        @DELETE
+        @Path("item/{id}")
+        public String delete(@PathParam("id") String id) {
+            return "delete " + id;
+        }
+
+        @HEAD
+        @Path("status")
+        public void head() {
+        }
+
+        @OPTIONS
+        @Path("status")
+        public void options() {
+        }
+    }
+
+    static RouteTable build(Object... services) {
+        final List<MethodPattern> patterns = new ArrayList<>();
+        for (Object service : services) {
+            patterns.addAll(new RestServiceWrapper(service, null).getMethodPatterns());
+        }
+        return new RouteTable(patterns);
+    }
+
+    @Test
+    public void testParseHttpMethods() throws Exception {
+        RestServiceWrapper wrapper = new RestServiceWrapper(new Example01(), null);
+        Map<String, String> verbs = new HashMap<>();
+        for (MethodPattern pattern : wrapper.getMethodPatterns()) {
+            verbs.put(pattern.getMethod().getName(), pattern.getHttpMethod());
+        }
+        assertEquals("GET", verbs.get("get"));
+        assertEquals("PUT", verbs.get("put"));
+        assertEquals("DELETE", verbs.get("delete"));
+        assertEquals("HEAD", verbs.get("head"));
+        assertEquals("OPTIONS", verbs.get("options"));
+    }
+
+    @Test
+    public void testFindByHttpMethod() throws Exception {
+        RouteTable table = build(new SampleApiService(), new Example01());
+        assertEquals(14, table.size());
+
+        Map<String, Object> args = new HashMap<>();
+        assertEquals("get", table.find("/api/v4/item/1", "GET", args).getMethod().getName());
+        assertEquals("1", args.get("id"));
+        assertEquals("put", table.find("/api/v4/item/1", "PUT", null).getMethod().getName());
+        assertEquals("delete", table.find("/api/v4/item/1", "DELETE", null).getMethod().getName());
+        assertEquals("head", table.find("/api/v4/status", "HEAD", null).getMethod().getName());
+        assertEquals("options", table.find("/api/v4/status", "OPTIONS", null).getMethod().getName());
+        assertNull(table.find("/api/v4/item/1", "POST", null));
+        assertNull(table.find("/api/v4/item/1", "PATCH", null));
+        assertEquals("add", table.find("/api/v1/add/1/2", "GET", null).getMethod().getName());
+    }
+
+    @Test
+    public void testAllowedMethods() throws Exception {
+        RouteTable table = build(new SampleApiService(), new Example01());
+        assertEquals("DELETE, GET, PUT", table.allow("/api/v4/item/1", "POST"));
+        assertEquals("DELETE, PUT", table.allow("/api/v4/item/1", "GET"));
+        assertEquals("HEAD, OPTIONS", table.allow("/api/v4/status", "GET"));
+        assertEquals("GET", table.allow("/api/v1/add/1/2", "POST"));
+        assertNull(table.allow("/api/v4/unknown", "GET"));
+        assertNull(new RouteTable().allow("/api/v4/item/1", "GET"));
+    }
+}
@@ -0,0 +1,137 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import net.tiny.ws.rs.test.SampleApiService;
+import net.tiny.ws.rs.test.TestApiService;
+
+public class RouteTreeTest {
+
+    @Path("/api/v3")
+    @Produces(MediaType.APPLICATION_JSON)
+    public static class Example01 {
+
+        @GET
+        @Path("user/{id : \\d+}")
+        public String user(@PathParam("id") long id) {
+            return "user " + id;
+        }
+
+        @GET
+        @Path("user/{name : [a-z]+}")
+        public String name(@PathParam("name") String name) {
+            return "name " + name;
+        }
+
+        @GET
+        @Path("user/me")
+        public String me() {
+            return "me";
+        }
+
+        @POST
+        @Path("user/{id}/edit")
+        public String edit(@PathParam("id") String id) {
+            return "edit " + id;
+        }
+    }
+
+    static RouteTree build(Object... services) {
+        final List<MethodPattern> patterns = new ArrayList<>();
+        for (Object service : services) {
+            patterns.addAll(new RestServiceWrapper(service, null).getMethodPatterns());
+        }
+        return new RouteTree(patterns);
+    }
+
+    @Test
+    public void testFindLiteralAndParam() throws Exception {
+        RouteTree tree = build(new SampleApiService(), new TestApiService(), new Example01());
+        assertEquals(16, tree.size());
+
+        Map<String, Object> args = new HashMap<>();
+        MethodPattern pattern = tree.find("/api/v1/add/123/456", "GET", args);
+        assertNotNull(pattern);
+        assertEquals("add", pattern.getMethod().getName());
+        assertEquals(2, args.size());
+        assertEquals("123", args.get("a"));
+        assertEquals("456", args.get("b"));
+
+        args.clear();
+        pattern = tree.find("/api/v2/test/get/abc", "GET", args);
+        assertNotNull(pattern);
+        assertEquals("getId", pattern.getMethod().getName());
+        assertEquals("abc", args.get("id"));
+
+        assertNull(tree.find("/api/v1/unknow/123", "GET", null));
+        assertNull(tree.find("/api/v9/add/123/456", "GET", null));
+        assertNull(tree.find("/api/v1/add/123/456/789", "GET", null));
+        assertNull(tree.find("/api/v1/add/123/456", "POST", null));
+        assertNull(tree.find("", "GET", null));
+    }
+
+    @Test
+    public void testFindRegexAndLiteral() throws Exception {
+        RouteTree tree = build(new Example01());
+        Map<String, Object> args = new HashMap<>();
+        assertEquals("user", tree.find("/api/v3/user/123", "GET", args).getMethod().getName());
+        assertEquals("123", args.get("id"));
+
+        args.clear();
+        assertEquals("name", tree.find("/api/v3/user/abc", "GET", args).getMethod().getName());
+        assertEquals("abc", args.get("name"));
+
+        assertEquals("me", tree.find("/api/v3/user/me", "GET", null).getMethod().getName());
+        assertNull(tree.find("/api/v3/user/ABC", "GET", null));
+
+        args.clear();
+        assertEquals("edit", tree.find("/api/v3/user/A01/edit", "POST", args).getMethod().getName());
+        assertEquals("A01", args.get("id"));
+        assertNull(tree.find("/api/v3/user/A01/edit", "GET", null));
+    }
+
+    @Test
+    public void testFindQueryParam() throws Exception {
+        RouteTree tree = build(new SampleApiService());
+        Map<String, Object> args = new HashMap<>();
+        MethodPattern pattern = tree.find("/api/v1/query?from=10&to=999&order=%5BItem1%2C+Item2%2C+Item3%5D", "GET", args);
+        assertNotNull(pattern);
+        assertEquals("query", pattern.getMethod().getName());
+        assertEquals(3, args.size());
+        assertEquals("10", args.get("from"));
+        assertEquals("999", args.get("to"));
+        assertEquals("[Item1, Item2, Item3]", args.get("order"));
+
+        assertNull(tree.find("/api/v1/query?from=abc", "GET", null));
+        // The names of query parameters are case-sensitive
+        assertNull(tree.find("/api/v1/query?FROM=10", "GET", null));
+    }
+
+    @Test
+    public void testFindWithDefaultValues() throws Exception {
+        RouteTree tree = build(new SampleApiService());
+        Map<String, Object> args = new HashMap<>();
+        // The last path parameter was omitted
+        MethodPattern pattern = tree.find("/api/v1/add/123", "GET", args);
+        assertNotNull(pattern);
+        assertEquals("add", pattern.getMethod().getName());
+        assertEquals(1, args.size());
+        assertEquals("123", args.get("a"));
+
+        // The URI ends at a literal segment, the deeper literal routes are not matched
+        assertNull(tree.find("/api/v1", "GET", null));
+    }
+}
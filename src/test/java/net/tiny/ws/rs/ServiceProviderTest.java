@@ -0,0 +1,161 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+public class ServiceProviderTest {
+
+    static final AtomicInteger CREATED = new AtomicInteger();
+
+    @Test
+    public void testInstanceMode() throws Exception {
+        RestServiceWrapper wrapper = new RestServiceWrapper(new PerRequest(), null);
+        assertEquals(Constants.Mode.instance, wrapper.getMode());
+        MethodPattern pattern = wrapper.getMethodPatterns().get(0);
+        assertEquals(Constants.Mode.instance, pattern.getMode());
+
+        Map<String, Object> args = new HashMap<>();
+        assertTrue(pattern.validatePattern("/provider/instance/a", "GET", args));
+        Object first = pattern.invoke(pattern.bindArguments(null, args, null));
+        Object second = pattern.invoke(pattern.bindArguments(null, args, null));
+        assertNotEquals(first, second);
+        assertTrue(first.toString().endsWith("a null"));
+
+        // Replay the injection plan on each new instance
+        wrapper.setInjections(new ServiceProvider.Injection[] {
+                new ServiceProvider.Injection(PerRequest.class.getDeclaredField("name"), () -> "injected")});
+        pattern = wrapper.getMethodPatterns().get(0);
+        assertTrue(pattern.invoke(pattern.bindArguments(null, args, null)).toString().endsWith("a injected"));
+    }
+
+    @Test
+    public void testPoolMode() throws Exception {
+        RestServiceWrapper wrapper = new RestServiceWrapper(new Pooled(), null);
+        assertEquals(Constants.Mode.pool, wrapper.getMode());
+        MethodPattern pattern = wrapper.getMethodPatterns().get(0);
+        assertEquals(Constants.Mode.pool, pattern.getMode());
+
+        Map<String, Object> args = new HashMap<>();
+        assertTrue(pattern.validatePattern("/provider/pool/b", "GET", args));
+        Object first = pattern.invoke(pattern.bindArguments(null, args, null));
+        Object second = pattern.invoke(pattern.bindArguments(null, args, null));
+        // The released instance is reused
+        assertEquals(first, second);
+
+        ServiceProvider.Pool pool = (ServiceProvider.Pool)ServiceProvider.of(Pooled.class, Constants.Mode.pool, 2,
+                ServiceProvider.NO_INJECTIONS);
+        Object a = pool.acquire();
+        Object b = pool.acquire();
+        Object c = pool.acquire();
+        assertNotSame(a, b);
+        pool.release(a);
+        pool.release(b);
+        pool.release(c);
+        // The pool is bounded, the third instance is dropped
+        assertEquals(2, pool.idle());
+        assertSame(a, pool.acquire());
+    }
+
+    @Test
+    public void testPoolModeAsync() throws Exception {
+        RestServiceWrapper wrapper = new RestServiceWrapper(new PooledAsync(), null);
+        MethodPattern pattern = wrapper.getMethodPatterns().get(0);
+        Map<String, Object> args = new HashMap<>();
+        assertTrue(pattern.validatePattern("/provider/async", "GET", args));
+        CompletionStage<?> first = (CompletionStage<?>)pattern.invoke(pattern.bindArguments(null, args, null));
+        CompletionStage<?> second = (CompletionStage<?>)pattern.invoke(pattern.bindArguments(null, args, null));
+        // Not released while its result is running
+        PooledAsync.PENDING.complete("done");
+        assertNotEquals(first.toCompletableFuture().get(), second.toCompletableFuture().get());
+
+        // Released when completed, the pooled instances are reused
+        final int created = CREATED.get();
+        for (int i = 0; i < 4; i++) {
+            ((CompletionStage<?>)pattern.invoke(pattern.bindArguments(null, args, null))).toCompletableFuture().get();
+        }
+        assertEquals(created, CREATED.get());
+    }
+
+    @Test
+    public void testSingletonMode() throws Exception {
+        Shared service = new Shared();
+        RestServiceWrapper wrapper = new RestServiceWrapper(service, null);
+        MethodPattern pattern = wrapper.getMethodPatterns().get(0);
+        assertEquals(Constants.Mode.singleton, pattern.getMode());
+        assertSame(service, pattern.getTarget());
+        // Without provider the plan is ignored
+        wrapper.setInjections(ServiceProvider.NO_INJECTIONS);
+        assertSame(service, pattern.getTarget());
+    }
+
+    @Test
+    public void testNotInstantiable() throws Exception {
+        ServiceProvider provider = ServiceProvider.of(NoDefault.class, Constants.Mode.instance, 0,
+                ServiceProvider.NO_INJECTIONS);
+        assertThrows(InstantiationException.class, () -> provider.acquire());
+        assertThrows(IllegalArgumentException.class,
+                () -> ServiceProvider.of(NoDefault.class, Constants.Mode.singleton, 0, ServiceProvider.NO_INJECTIONS));
+    }
+
+    @Path("/provider/instance")
+    @Lifecycle(Constants.Mode.instance)
+    public static class PerRequest {
+        private final int id = CREATED.incrementAndGet();
+        @Resource
+        private String name;
+
+        @GET
+        @Path("{value}")
+        public String get(@PathParam("value") String value) {
+            return id + " " + value + " " + name;
+        }
+    }
+
+    @Path("/provider/pool")
+    @Lifecycle(value = Constants.Mode.pool, poolSize = 2)
+    public static class Pooled {
+        private final int id = CREATED.incrementAndGet();
+
+        @GET
+        @Path("{value}")
+        public String get(@PathParam("value") String value) {
+            return id + " " + value;
+        }
+    }
+
+    @Path("/provider/async")
+    @Lifecycle(value = Constants.Mode.pool, poolSize = 2)
+    public static class PooledAsync {
+        static final CompletableFuture<String> PENDING = new CompletableFuture<>();
+        private final int id = CREATED.incrementAndGet();
+
+        @GET
+        public CompletionStage<String> get() {
+            return PENDING.thenApply(value -> id + " " + value);
+        }
+    }
+
+    @Path("/provider/shared")
+    public static class Shared {
+        @GET
+        public String get() {
+            return "shared";
+        }
+    }
+
+    public static class NoDefault {
+        public NoDefault(String name) {
+        }
+    }
+}
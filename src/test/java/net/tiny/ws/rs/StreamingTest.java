@@ -0,0 +1,132 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class StreamingTest {
+
+    static byte[] readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            out.write(buffer, 0, len);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testIsStreaming() throws Exception {
+        assertTrue(Streaming.isStreaming(new ByteArrayInputStream(new byte[0])));
+        assertTrue(Streaming.isStreaming((StreamingOutput) out -> {}));
+        assertTrue(Streaming.isStreaming(Arrays.asList(1, 2).iterator()));
+        assertTrue(Streaming.isStreaming(IntStream.range(0, 2).boxed()));
+        assertTrue(Streaming.isStreaming(IntStream.range(0, 2)));
+        assertFalse(Streaming.isStreaming(Arrays.asList(1, 2)));
+        assertFalse(Streaming.isStreaming(new byte[0]));
+    }
+
+    @Test
+    public void testSendStreams() throws Exception {
+        final Negotiation negotiation = new Negotiation(
+                new String[] {MediaType.APPLICATION_JSON, Streaming.NDJSON, MediaType.APPLICATION_OCTET_STREAM});
+        final byte[] binary = new byte[100_000];
+        for (int i = 0; i < binary.length; i++) {
+            binary[i] = (byte)(i % 251);
+        }
+        final AtomicBoolean closed = new AtomicBoolean();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/stream", he -> {
+            final Negotiation.Choice choice = negotiation.negotiate(he.getRequestHeaders().getFirst("Accept"));
+            final String query = he.getRequestURI().getQuery();
+            final Object result;
+            if ("input".equals(query)) {
+                result = new ByteArrayInputStream(binary);
+            } else if ("output".equals(query)) {
+                he.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                result = (StreamingOutput) out -> {
+                    for (int i = 0; i < 1000; i++) {
+                        out.write(("{\"row\":" + i + "}\n").getBytes(StandardCharsets.UTF_8));
+                    }
+                };
+            } else if ("iterator".equals(query)) {
+                result = Arrays.asList("a", "b", "c").iterator();
+            } else {
+                result = IntStream.range(0, 10_000).boxed().onClose(() -> closed.set(true));
+            }
+            Streaming.send(he, result, choice, ResponseWriter.BUFFER_SIZE, Compression.DEFAULT_THRESHOLD);
+            he.close();
+        });
+        server.start();
+        try {
+            final String base = "http://localhost:" + server.getAddress().getPort() + "/stream?";
+            HttpURLConnection connection = (HttpURLConnection) new URL(base + "input").openConnection();
+            connection.setRequestProperty("Accept", MediaType.APPLICATION_OCTET_STREAM);
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            assertEquals("chunked", connection.getHeaderField("Transfer-Encoding"));
+            // Not compressible
+            assertNull(connection.getHeaderField("Content-Encoding"));
+            assertArrayEquals(binary, readAll(connection.getInputStream()));
+            connection.disconnect();
+
+            connection = (HttpURLConnection) new URL(base + "output").openConnection();
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+            String text = new String(readAll(new GZIPInputStream(connection.getInputStream())), StandardCharsets.UTF_8);
+            assertTrue(text.startsWith("{\"row\":0}\n{\"row\":1}\n"));
+            assertTrue(text.endsWith("{\"row\":999}\n"));
+            connection.disconnect();
+
+            // Small, sent with 'Content-Length'
+            connection = (HttpURLConnection) new URL(base + "iterator").openConnection();
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            assertEquals(13, connection.getContentLength());
+            assertEquals("[\"a\",\"b\",\"c\"]", new String(readAll(connection.getInputStream()), StandardCharsets.UTF_8));
+            connection.disconnect();
+
+            // Over the buffer, a JSON array with chunked transfer
+            connection = (HttpURLConnection) new URL(base + "stream").openConnection();
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            assertEquals("chunked", connection.getHeaderField("Transfer-Encoding"));
+            text = new String(readAll(connection.getInputStream()), StandardCharsets.UTF_8);
+            assertTrue(text.startsWith("[0,1,2,"));
+            assertTrue(text.endsWith(",9998,9999]"));
+            connection.disconnect();
+            assertTrue(closed.get());
+
+            closed.set(false);
+            connection = (HttpURLConnection) new URL(base + "stream").openConnection();
+            connection.setRequestProperty("Accept", Streaming.NDJSON);
+            assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            assertEquals(Streaming.NDJSON, connection.getHeaderField("Content-Type"));
+            text = new String(readAll(connection.getInputStream()), StandardCharsets.UTF_8);
+            assertTrue(text.startsWith("0\n1\n2\n"));
+            assertTrue(text.endsWith("\n9999\n"));
+            assertEquals(10_000, text.split("\n").length);
+            connection.disconnect();
+            assertTrue(closed.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class UriTokenizerTest {
+
+    @Test
+    public void testSegments() throws Exception {
+        String uri = "/api/v1/add/123/456";
+        UriTokenizer tokens = new UriTokenizer(uri);
+        String[] segments = uri.split("/");
+        assertEquals(segments.length, tokens.size());
+        for (int i = 0; i < segments.length; i++) {
+            assertEquals(segments[i], tokens.value(tokens.start(i), tokens.end(i)));
+            assertTrue(tokens.keyEquals(i, segments[i]));
+            assertEquals(segments[i].hashCode(), tokens.keyHash(i));
+            assertFalse(tokens.hasQuery(i));
+        }
+        assertEquals(0, new UriTokenizer("/").size());
+        assertEquals(3, new UriTokenizer("/api/v1/").size());
+        assertEquals(1, new UriTokenizer("").size());
+    }
+
+    @Test
+    public void testQueryAndMatrix() throws Exception {
+        UriTokenizer tokens = new UriTokenizer("/api/v1/query?from=10&to=a/b");
+        assertEquals(4, tokens.size());
+        assertTrue(tokens.keyEquals(3, "query"));
+        assertTrue(tokens.hasQuery(3));
+        assertFalse(tokens.hasQuery(2));
+        assertEquals("from=10&to=a/b", tokens.value(tokens.queryStart(), tokens.queryEnd()));
+
+        tokens = new UriTokenizer("/api/v1/matrix;msg=a;attr=b");
+        assertTrue(tokens.keyEquals(3, "matrix"));
+        assertTrue(tokens.hasMatrix(3));
+        assertEquals("msg=a;attr=b", tokens.value(tokens.keyEnd(3) + 1, tokens.end(3)));
+    }
+
+    @Test
+    public void testQueryParams() throws Exception {
+        UriTokenizer tokens = new UriTokenizer("/q?b=2&&a=1&flag&A=3&=x");
+        // The names are case-sensitive, 'A' is not a repeat of 'a'
+        assertEquals(4, tokens.paramCount());
+        int a = tokens.findParam("a", UriTokenizer.hash("a", 0, 1));
+        assertTrue(a >= 0);
+        assertEquals("1", tokens.value(tokens.paramValueStart(a), tokens.paramValueEnd(a)));
+        int upper = tokens.findParam("A", UriTokenizer.hash("A", 0, 1));
+        assertEquals("3", tokens.value(tokens.paramValueStart(upper), tokens.paramValueEnd(upper)));
+        assertEquals(-1, tokens.findParam("FLAG", UriTokenizer.hash("FLAG", 0, 4)));
+        int flag = tokens.findParam("flag", UriTokenizer.hash("flag", 0, 4));
+        assertTrue(flag >= 0);
+        assertFalse(tokens.paramHasValue(flag));
+        assertEquals("", tokens.value(tokens.paramValueStart(flag), tokens.paramValueEnd(flag)));
+        assertEquals(-1, tokens.findParam("c", UriTokenizer.hash("c", 0, 1)));
+        assertEquals(0, new UriTokenizer("/q").paramCount());
+        assertEquals(0, new UriTokenizer("/q?").paramCount());
+    }
+
+    @Test
+    public void testLocalReused() throws Exception {
+        UriTokenizer tokens = UriTokenizer.local("/api/v1/query?from=10&to=20&order=asc");
+        assertEquals(3, tokens.paramCount());
+        assertSame(tokens, UriTokenizer.local("/q?a=1"));
+        // The former segments and parameters are not left
+        assertEquals(2, tokens.size());
+        assertTrue(tokens.keyEquals(1, "q"));
+        assertEquals(1, tokens.paramCount());
+        assertEquals(-1, tokens.findParam("from", UriTokenizer.hash("from", 0, 4)));
+        assertTrue(tokens.findParam("a", UriTokenizer.hash("a", 0, 1)) >= 0);
+
+        tokens = UriTokenizer.local("/api/v1/add/123/456/789");
+        assertEquals(7, tokens.size());
+        assertEquals("789", tokens.value(tokens.start(6), tokens.end(6)));
+        assertEquals(0, tokens.paramCount());
+    }
+
+    @Test
+    public void testLazyDecode() throws Exception {
+        UriTokenizer tokens = new UriTokenizer("/api/%5BItem1%2C+Item2%5D/plain");
+        assertEquals("[Item1, Item2]", tokens.value(tokens.start(2), tokens.end(2)));
+        assertEquals("plain", tokens.value(tokens.start(3), tokens.end(3)));
+    }
+}
@@ -0,0 +1,86 @@
+package net.tiny.ws.rs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpServer;
+
+import net.tiny.ws.rs.test.SampleBlockingService;
+
+/**
+ * Blocking REST methods on a small worker pool, dispatched by {@link RestfulHttpHandler#setVirtualThreads(boolean)}.
+ */
+public class VirtualThreadsLoadTest {
+
+    static final int WORKERS = 2;
+    static final int CLIENTS = 16;
+
+    @Test
+    public void testBlockingRequests() throws Exception {
+        RestApplication application = new RestApplication();
+        application.setPattern("net.tiny.ws.rs.test.*, !java.*, !javax.*, !com.sun.*, !org.junit.*,");
+        RestServiceLocator context = new RestServiceLocator();
+        context.bind("application", application, true);
+
+        final RestfulHttpHandler rest = new RestfulHttpHandler();
+        rest.path("/api");
+        rest.setContext(context);
+        rest.setVirtualThreads(true);
+        if (!VirtualThreads.isSupported()) {
+            // Invoked on the worker threads before Java 21
+            assertFalse(rest.isVirtualThreads());
+            return;
+        }
+        assertTrue(rest.isVirtualThreads());
+
+        final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), CLIENTS);
+        final ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+        server.setExecutor(workers);
+        server.createContext("/api", he -> {
+            final AsyncExchange exchange = new AsyncExchange(he);
+            rest.handle(exchange);
+            exchange.close();
+        });
+        server.start();
+        final ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            final URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/api/v3/blocking");
+            // All the requests block at once, more than the worker threads
+            SampleBlockingService.arrivals = new CountDownLatch(CLIENTS);
+            final List<Future<String>> responses = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                responses.add(clients.submit(() -> {
+                    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                    assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+                    try (BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                        return reader.readLine();
+                    } finally {
+                        connection.disconnect();
+                    }
+                }));
+            }
+            for (Future<String> response : responses) {
+                assertTrue(response.get(30L, TimeUnit.SECONDS).contains("Arrived"));
+            }
+        } finally {
+            clients.shutdown();
+            server.stop(0);
+            workers.shutdown();
+        }
+    }
+}
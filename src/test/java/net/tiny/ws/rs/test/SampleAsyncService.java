@@ -0,0 +1,158 @@
+package net.tiny.ws.rs.test;
+
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+import net.tiny.ws.rs.ApplicationException;
+import net.tiny.ws.rs.Bulkhead;
+import net.tiny.ws.rs.Cached;
+import net.tiny.ws.rs.Deadline;
+import net.tiny.ws.rs.RateLimit;
+import net.tiny.ws.rs.Timeout;
+
+@Path("/api/v3/async")
+public class SampleAsyncService {
+
+    private final AtomicInteger cachedCalls = new AtomicInteger();
+    private final AtomicInteger rowsCalls = new AtomicInteger();
+
+    @GET
+    @Path("hello/{name}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public CompletableFuture<String> hello(@PathParam("name") String name) {
+        return CompletableFuture.supplyAsync(() -> {
+            sleep(50L);
+            return "Hello " + name;
+        });
+    }
+
+    @GET
+    @Path("slow")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Timeout(value = 100L, unit = TimeUnit.MILLISECONDS)
+    public CompletionStage<String> slow() {
+        return CompletableFuture.supplyAsync(() -> {
+            sleep(2000L);
+            return "Too late";
+        });
+    }
+
+    @GET
+    @Path("conflict")
+    @Produces(MediaType.APPLICATION_JSON)
+    public CompletionStage<String> conflict() {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(new ApplicationException(HttpURLConnection.HTTP_CONFLICT));
+        return future;
+    }
+
+    @GET
+    @Path("busy")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Bulkhead(value = 1, retryAfter = 2)
+    public String busy() {
+        sleep(500L);
+        return "Done";
+    }
+
+    @GET
+    @Path("cached")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Cached(value = 1L, unit = TimeUnit.MINUTES)
+    public String cached(@QueryParam("a") String a, @QueryParam("b") String b) {
+        return a + b + cachedCalls.incrementAndGet();
+    }
+
+    @GET
+    @Path("rows")
+    @Produces({MediaType.APPLICATION_JSON, "application/x-ndjson"})
+    @Cached(value = 1L, unit = TimeUnit.MINUTES)
+    public List<String> rows() {
+        return Arrays.asList("row1", "row2", "row" + rowsCalls.incrementAndGet());
+    }
+
+    @GET
+    @Path("limited")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RateLimit(value = 1, period = 1L, unit = TimeUnit.MINUTES, perClient = true)
+    public String limited() {
+        return "Done";
+    }
+
+    @GET
+    @Path("deadline")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Timeout(value = 100L, unit = TimeUnit.MILLISECONDS)
+    public String deadline() {
+        // Blocking method, the response is sent by the deadline
+        while (!Deadline.current().isExpired()) {
+            sleep(10L);
+        }
+        sleep(1000L);
+        return "Too late";
+    }
+
+    @GET
+    @Path("overdue")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Timeout(value = 100L, unit = TimeUnit.MILLISECONDS)
+    @Bulkhead(value = 1, retryAfter = 1)
+    public String overdue() {
+        // Not stopped by the interrupt, still running after the response was sent by the deadline
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1L);
+        while (end - System.nanoTime() > 0L) {
+            try {
+                Thread.sleep(10L);
+            } catch (InterruptedException ignore) {
+                // Run to the end
+            }
+        }
+        return "Too late";
+    }
+
+    @GET
+    @Path("interrupted")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Timeout(value = 100L, unit = TimeUnit.MILLISECONDS)
+    @Bulkhead(value = 1, retryAfter = 1)
+    public String interrupted() {
+        // Interrupted by the deadline on the worker thread
+        sleep(1000L);
+        return "Too late";
+    }
+
+    @GET
+    @Path("broken")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Iterator<String> broken() {
+        // Failed after the chunked headers were sent
+        return IntStream.range(0, 100_000).mapToObj(i -> {
+            if (i == 50_000) {
+                throw new ApplicationException(HttpURLConnection.HTTP_INTERNAL_ERROR);
+            }
+            return "row" + i;
+        }).iterator();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package net.tiny.ws.rs.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+@Path("/api/v3/blocking")
+public class SampleBlockingService {
+
+    /** Counted down by each request, opened when all the requests are invoked at the same time */
+    public static volatile CountDownLatch arrivals = new CountDownLatch(0);
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public String await() throws InterruptedException {
+        // Blocking until the other requests arrive
+        final CountDownLatch latch = arrivals;
+        latch.countDown();
+        return latch.await(2L, TimeUnit.SECONDS) ? "Arrived" : "Timeout";
+    }
+}